@@ -0,0 +1,303 @@
+/*
+ * TCSS 305 - Road Rage
+ */
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import logic.ArrayRoadRage;
+import logic.PropertyChangeEnabledRoadRageControls;
+import logic.RoadRage;
+import logic.TickMode;
+import view.util.FileLoader;
+
+/**
+ * Runs the Road Rage simulation without a display, as fast as possible, and reports
+ * its throughput, tick latency and memory use.
+ *
+ * Usage: RoadRageBatch [--map=FILE] [--ticks=N] [--warmup=N] [--engine=objects|arrays]
+ * [--mode=SEQUENTIAL|SYNCHRONOUS|PARTITIONED] [--threads=N] [--seed=N] [--listeners]
+ * [--chunks=N]
+ *
+ * With --chunks, the objects engine keeps the terrain of a binary map in chunks read
+ * as needed, holding at most N chunks without vehicles in memory. The arrays engine
+ * always ticks sequentially on one thread, so --mode, --threads and --chunks are only
+ * accepted with the objects engine.
+ */
+public final class RoadRageBatch {
+
+    /**
+     * The default city map file.
+     */
+    private static final String DEFAULT_MAP = "city_map1.txt";
+
+    /**
+     * The default number of measured ticks.
+     */
+    private static final int DEFAULT_TICKS = 10_000;
+
+    /**
+     * The default number of warmup ticks run before measuring.
+     */
+    private static final int DEFAULT_WARMUP = 1_000;
+
+    /**
+     * The number of nanoseconds in a second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * The number of nanoseconds in a microsecond.
+     */
+    private static final double NANOS_PER_MICRO = 1e3;
+
+    /**
+     * The number of bytes in a megabyte.
+     */
+    private static final double BYTES_PER_MEGABYTE = 1024.0 * 1024.0;
+
+    /**
+     * The latency percentiles to report.
+     */
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    /**
+     * The usage message.
+     */
+    private static final String USAGE = "Usage: RoadRageBatch [--map=FILE] [--ticks=N] "
+        + "[--warmup=N] [--engine=objects|arrays] "
+        + "[--mode=SEQUENTIAL|SYNCHRONOUS|PARTITIONED] [--threads=N] [--seed=N] "
+        + "[--listeners] [--chunks=N]";
+
+    /**
+     * Private constructor to prevent construction of instances.
+     */
+    private RoadRageBatch() {
+        // do nothing
+    }
+
+    /**
+     * Runs the simulation and prints the report.
+     *
+     * @param theArgs the command line options, see the class comment
+     */
+    public static void main(final String... theArgs) {
+        String map = DEFAULT_MAP;
+        int ticks = DEFAULT_TICKS;
+        int warmup = DEFAULT_WARMUP;
+        String engine = "objects";
+        TickMode mode = TickMode.SEQUENTIAL;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Long seed = null;
+        boolean listeners = false;
+        int chunks = 0;
+        boolean paged = false;
+        boolean objectsOptions = false;
+
+        try {
+            for (final String arg : theArgs) {
+                final String value = arg.substring(arg.indexOf('=') + 1);
+                if (arg.startsWith("--map=")) {
+                    map = value;
+                } else if (arg.startsWith("--ticks=")) {
+                    ticks = Integer.parseInt(value);
+                } else if (arg.startsWith("--warmup=")) {
+                    warmup = Integer.parseInt(value);
+                } else if (arg.startsWith("--engine=")) {
+                    engine = value;
+                } else if (arg.startsWith("--mode=")) {
+                    mode = TickMode.valueOf(value);
+                    objectsOptions = true;
+                } else if (arg.startsWith("--threads=")) {
+                    threads = Integer.parseInt(value);
+                    objectsOptions = true;
+                } else if (arg.startsWith("--seed=")) {
+                    seed = Long.parseLong(value);
+                } else if (arg.startsWith("--chunks=")) {
+                    chunks = Integer.parseInt(value);
+                    paged = true;
+                    objectsOptions = true;
+                } else if ("--listeners".equals(arg)) {
+                    listeners = true;
+                } else {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+            if (ticks <= 0 || threads <= 0 || warmup < 0 || paged && chunks <= 0) {
+                throw new IllegalArgumentException("--ticks, --threads and --chunks must be "
+                                                   + "positive, --warmup at least 0");
+            }
+            if (!"objects".equals(engine) && !"arrays".equals(engine)) {
+                throw new IllegalArgumentException("Unknown engine " + engine);
+            }
+            if ("arrays".equals(engine) && objectsOptions) {
+                throw new IllegalArgumentException("--mode, --threads and --chunks only "
+                                                   + "apply to --engine=objects");
+            }
+        } catch (final IllegalArgumentException iae) {
+            System.err.println(iae.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+
+        final PropertyChangeEnabledRoadRageControls roadRage;
+        final int vehicles;
+        final long usedSeed;
+        try {
+            if ("arrays".equals(engine)) {
+                final ArrayRoadRage arrays = FileLoader.readArrayCity(map);
+                if (seed != null) {
+                    arrays.setSeed(seed);
+                }
+                vehicles = arrays.getVehicleCount();
+                usedSeed = arrays.getSeed();
+                roadRage = arrays;
+            } else {
+                final RoadRage objects;
+                if (chunks > 0) {
+                    objects = FileLoader.readPagedCity(map, chunks);
+                } else {
+                    objects = FileLoader.readCity(map);
+                }
+                if (seed != null) {
+                    objects.setSeed(seed);
+                }
+                objects.setTickMode(mode);
+                objects.setPool(new ForkJoinPool(threads));
+                vehicles = objects.getVehicleCount();
+                usedSeed = objects.getSeed();
+                roadRage = objects;
+            }
+        } catch (final IOException ioe) {
+            System.err.println("Could not read city map file " + map + ": "
+                               + ioe.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        if (listeners) {
+            roadRage.addPropertyChangeListener(theEvent -> theEvent.getNewValue());
+        }
+
+        final boolean arrays = "arrays".equals(engine);
+        System.out.printf("map %s (%d x %d), %d vehicles, engine %s, mode %s, %s threads, "
+                          + "seed %d%n", map, roadRage.getWidth(), roadRage.getHeight(),
+                          vehicles, engine, arrays ? "n/a" : mode,
+                          arrays ? "n/a" : Integer.toString(threads), usedSeed);
+
+        roadRage.start();
+        for (int i = 0; i < warmup; i++) {
+            roadRage.advance();
+        }
+
+        final long gcCountBefore = gcCount();
+        final long gcTimeBefore = gcTime();
+        final long[] latencies = new long[ticks];
+        final long start = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            final long tickStart = System.nanoTime();
+            roadRage.advance();
+            latencies[i] = System.nanoTime() - tickStart;
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        report(ticks, vehicles, elapsed, latencies);
+        System.out.printf("gc: %d collections, %d ms%n", gcCount() - gcCountBefore,
+                          gcTime() - gcTimeBefore);
+    }
+
+    /**
+     * Prints the throughput, latency and heap report.
+     *
+     * @param theTicks the number of measured ticks
+     * @param theVehicles the number of vehicles
+     * @param theElapsed the total nanoseconds of the measured ticks
+     * @param theLatencies the nanoseconds of each measured tick
+     */
+    private static void report(final int theTicks, final int theVehicles,
+                               final long theElapsed, final long[] theLatencies) {
+        final double seconds = theElapsed / NANOS_PER_SECOND;
+        System.out.printf("%d ticks in %.3f s: %.1f ticks/s, %.0f vehicle moves/s%n",
+                          theTicks, seconds, theTicks / seconds,
+                          (double) theTicks * theVehicles / seconds);
+
+        Arrays.sort(theLatencies);
+        final StringBuilder latency = new StringBuilder("tick latency (us):");
+        for (final double percentile : PERCENTILES) {
+            latency.append(String.format(" p%s=%.1f", formatPercentile(percentile),
+                                         percentile(theLatencies, percentile)
+                                             / NANOS_PER_MICRO));
+        }
+        if (theLatencies.length > 0) {
+            latency.append(String.format(" max=%.1f",
+                                         theLatencies[theLatencies.length - 1]
+                                             / NANOS_PER_MICRO));
+        }
+        System.out.println(latency);
+
+        final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        System.out.printf("heap: %.1f MB used, %.1f MB committed, %.1f MB max%n",
+                          heap.getUsed() / BYTES_PER_MEGABYTE,
+                          heap.getCommitted() / BYTES_PER_MEGABYTE,
+                          heap.getMax() / BYTES_PER_MEGABYTE);
+    }
+
+    /**
+     * Returns a percentile of sorted values, using the nearest rank.
+     *
+     * @param theSorted the values, in ascending order
+     * @param thePercentile the percentile, between 0 and 100
+     * @return the value at that percentile, or 0 if there are no values
+     */
+    private static long percentile(final long[] theSorted, final double thePercentile) {
+        long result = 0;
+        if (theSorted.length > 0) {
+            final int rank = (int) Math.ceil(thePercentile / 100 * theSorted.length);
+            result = theSorted[Math.max(0, Math.min(rank, theSorted.length) - 1)];
+        }
+        return result;
+    }
+
+    /**
+     * Formats a percentile without a trailing ".0".
+     *
+     * @param thePercentile the percentile
+     * @return the formatted percentile
+     */
+    private static String formatPercentile(final double thePercentile) {
+        String result = Double.toString(thePercentile);
+        if (thePercentile == Math.rint(thePercentile)) {
+            result = Long.toString((long) thePercentile);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the total number of garbage collections so far.
+     *
+     * @return the number of collections
+     */
+    private static long gcCount() {
+        long result = 0;
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result += Math.max(0, gc.getCollectionCount());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the total time spent in garbage collection so far.
+     *
+     * @return the collection time in milliseconds
+     */
+    private static long gcTime() {
+        long result = 0;
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result += Math.max(0, gc.getCollectionTime());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * TCSS 305 - Road Rage
+ */
+
+import ensemble.EnsembleRun;
+import ensemble.RunningStats;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import logic.CityMap;
+import view.util.FileLoader;
+
+/**
+ * Runs the same city many times with different seeds, in parallel, and reports the
+ * mean and 95% confidence interval of each metric over the runs. The map is read
+ * once and its grid is shared by every run.
+ *
+ * Usage: RoadRageEnsemble [--map=FILE] [--runs=N] [--ticks=N] [--threads=N] [--seed=N]
+ */
+public final class RoadRageEnsemble {
+
+    /**
+     * The default city map file.
+     */
+    private static final String DEFAULT_MAP = "city_map1.txt";
+
+    /**
+     * The default number of runs.
+     */
+    private static final int DEFAULT_RUNS = 100;
+
+    /**
+     * The default number of ticks per run.
+     */
+    private static final int DEFAULT_TICKS = 1_000;
+
+    /**
+     * The number of nanoseconds in a second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * The format of each line of the report.
+     */
+    private static final String FORMAT = "%-20s %12s %12s %12s %12s %12s%n";
+
+    /**
+     * The usage message.
+     */
+    private static final String USAGE = "Usage: RoadRageEnsemble [--map=FILE] [--runs=N] "
+        + "[--ticks=N] [--threads=N] [--seed=N]";
+
+    /**
+     * Private constructor to prevent construction of instances.
+     */
+    private RoadRageEnsemble() {
+        // do nothing
+    }
+
+    /**
+     * Runs the ensemble and prints the report.
+     *
+     * @param theArgs the command line options, see the class comment
+     * @throws InterruptedException if interrupted while waiting for the runs
+     * @throws ExecutionException if a run fails
+     */
+    public static void main(final String... theArgs)
+        throws InterruptedException, ExecutionException {
+        String map = DEFAULT_MAP;
+        int runs = DEFAULT_RUNS;
+        int ticks = DEFAULT_TICKS;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = new SplittableRandom().nextLong();
+
+        try {
+            for (final String arg : theArgs) {
+                final String value = arg.substring(arg.indexOf('=') + 1);
+                if (arg.startsWith("--map=")) {
+                    map = value;
+                } else if (arg.startsWith("--runs=")) {
+                    runs = Integer.parseInt(value);
+                } else if (arg.startsWith("--ticks=")) {
+                    ticks = Integer.parseInt(value);
+                } else if (arg.startsWith("--threads=")) {
+                    threads = Integer.parseInt(value);
+                } else if (arg.startsWith("--seed=")) {
+                    seed = Long.parseLong(value);
+                } else {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+            if (runs <= 0 || ticks <= 0 || threads <= 0) {
+                throw new IllegalArgumentException("--runs, --ticks and --threads must be "
+                                                   + "positive");
+            }
+        } catch (final IllegalArgumentException iae) {
+            System.err.println(iae.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+
+        final CityMap city;
+        try {
+            city = FileLoader.readCityMap(map);
+        } catch (final IOException ioe) {
+            System.err.println("Could not read city map file " + map + ": "
+                               + ioe.getMessage());
+            System.exit(1);
+            return;
+        }
+        System.out.printf("map %s (%d x %d), %d vehicles, %d runs of %d ticks, "
+                          + "%d threads, seed %d%n", map, city.getWidth(), city.getHeight(),
+                          city.getVehicleCount(), runs, ticks, threads, seed);
+
+        final List<RunningStats> stats = new ArrayList<>();
+        for (int m = 0; m < EnsembleRun.METRICS.size(); m++) {
+            stats.add(new RunningStats());
+        }
+
+        final long start = System.nanoTime();
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            // the seed of each run depends only on the master seed and its number
+            final SplittableRandom seeds = new SplittableRandom(seed);
+            final List<Future<double[]>> results = new ArrayList<>(runs);
+            for (int r = 0; r < runs; r++) {
+                results.add(pool.submit(new EnsembleRun(city, seeds.nextLong(), ticks)));
+            }
+            // results are added in run order, so the report does not depend on timing
+            for (final Future<double[]> result : results) {
+                final double[] metrics = result.get();
+                for (int m = 0; m < metrics.length; m++) {
+                    stats.get(m).add(metrics[m]);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        final double seconds = (System.nanoTime() - start) / NANOS_PER_SECOND;
+
+        System.out.printf("%d runs in %.3f s: %.1f runs/s%n", runs, seconds, runs / seconds);
+        System.out.printf(FORMAT, "metric", "mean", "95% ci", "std dev", "min", "max");
+        for (int m = 0; m < EnsembleRun.METRICS.size(); m++) {
+            final RunningStats stat = stats.get(m);
+            System.out.printf(FORMAT, EnsembleRun.METRICS.get(m), format(stat.getMean()),
+                              "+- " + format(stat.getConfidence95()),
+                              format(stat.getStandardDeviation()), format(stat.getMin()),
+                              format(stat.getMax()));
+        }
+    }
+
+    /**
+     * Formats a value for the report.
+     *
+     * @param theValue the value
+     * @return the value with two decimal places
+     */
+    private static String format(final double theValue) {
+        return String.format("%.2f", theValue);
+    }
+}
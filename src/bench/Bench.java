@@ -0,0 +1,209 @@
+/*
+ * TCSS 305 - Road Rage
+ */
+
+package bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.function.IntSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * A small microbenchmark harness. Each benchmark is warmed up, then timed over
+ * several fixed-length iterations, and reported as nanoseconds per operation with
+ * its error, bytes allocated per operation and garbage collections.
+ *
+ * Bytes per operation only count allocation on the calling thread, so work handed to
+ * a thread pool is not included.
+ */
+final class Bench {
+
+    /**
+     * The number of warmup iterations.
+     */
+    private static final int WARMUP_ITERATIONS = 5;
+
+    /**
+     * The number of measured iterations.
+     */
+    private static final int ITERATIONS = 10;
+
+    /**
+     * The length of each iteration in nanoseconds.
+     */
+    private static final long ITERATION_NANOS = 200_000_000L;
+
+    /**
+     * The shortest time a batch of operations should take, in nanoseconds, so that
+     * reading the clock does not skew the result.
+     */
+    private static final long MIN_BATCH_NANOS = 1_000_000L;
+
+    /**
+     * The Student's t value for a 99.9% confidence interval with ITERATIONS - 1
+     * degrees of freedom.
+     */
+    private static final double T_999 = 4.781;
+
+    /**
+     * The format of each line of the report.
+     */
+    private static final String FORMAT = "%-44s %14s %12s %12s %6s%n";
+
+    /**
+     * The allocation counter of this JVM, or null if it has none.
+     */
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    /**
+     * Only benchmarks whose names match this pattern are run.
+     */
+    private final Pattern myFilter;
+
+    /**
+     * Every result is added here so that the JIT cannot drop the work.
+     */
+    private volatile int mySink;
+
+    /**
+     * Creates a harness that runs the benchmarks matching a filter.
+     *
+     * @param theFilter a regular expression found in the names of the benchmarks to run
+     */
+    Bench(final String theFilter) {
+        myFilter = Pattern.compile(theFilter);
+        System.out.printf(FORMAT, "benchmark", "ns/op", "error", "B/op", "gc");
+    }
+
+    /**
+     * Runs and reports one benchmark, if its name matches the filter.
+     *
+     * @param theName the name of the benchmark
+     * @param theOperation the operation to measure, returning any value it computed
+     */
+    void run(final String theName, final IntSupplier theOperation) {
+        if (!myFilter.matcher(theName).find()) {
+            return;
+        }
+
+        int batch = 1;
+        long nanos = batch(theOperation, batch);
+        while (nanos < MIN_BATCH_NANOS) {
+            batch *= 2;
+            nanos = batch(theOperation, batch);
+        }
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration(theOperation, batch, new long[2]);
+        }
+
+        final double[] perOp = new double[ITERATIONS];
+        final long[] totals = new long[2];
+        final long gcBefore = gcCount();
+        for (int i = 0; i < ITERATIONS; i++) {
+            perOp[i] = iteration(theOperation, batch, totals);
+        }
+        final long gcs = gcCount() - gcBefore;
+
+        double mean = 0;
+        for (final double value : perOp) {
+            mean += value / ITERATIONS;
+        }
+        double variance = 0;
+        for (final double value : perOp) {
+            variance += (value - mean) * (value - mean) / (ITERATIONS - 1);
+        }
+        final double error = T_999 * Math.sqrt(variance / ITERATIONS);
+
+        String bytes = "n/a";
+        if (THREADS != null) {
+            bytes = String.format("%.1f", (double) totals[1] / totals[0]);
+        }
+        System.out.printf(FORMAT, theName, String.format("%.1f", mean),
+                          String.format("+- %.1f", error), bytes, gcs);
+    }
+
+    /**
+     * Runs one measured iteration.
+     *
+     * @param theOperation the operation to measure
+     * @param theBatch the number of operations between reading the clock
+     * @param theTotals the operation count and allocated bytes, which are added to
+     * @return the nanoseconds per operation of the iteration
+     */
+    private double iteration(final IntSupplier theOperation, final int theBatch,
+                             final long[] theTotals) {
+        final long bytesBefore = allocatedBytes();
+        long operations = 0;
+        long nanos = 0;
+        while (nanos < ITERATION_NANOS) {
+            nanos += batch(theOperation, theBatch);
+            operations += theBatch;
+        }
+        theTotals[0] += operations;
+        theTotals[1] += allocatedBytes() - bytesBefore;
+        return (double) nanos / operations;
+    }
+
+    /**
+     * Runs a batch of operations.
+     *
+     * @param theOperation the operation to run
+     * @param theBatch the number of times to run it
+     * @return the nanoseconds the batch took
+     */
+    private long batch(final IntSupplier theOperation, final int theBatch) {
+        int sink = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < theBatch; i++) {
+            sink += theOperation.getAsInt();
+        }
+        final long result = System.nanoTime() - start;
+        mySink += sink;
+        return result;
+    }
+
+    /**
+     * Returns the bytes allocated by the calling thread so far.
+     *
+     * @return the allocated bytes, or 0 if they cannot be measured
+     */
+    private static long allocatedBytes() {
+        long result = 0;
+        if (THREADS != null) {
+            result = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the total number of garbage collections so far.
+     *
+     * @return the number of collections
+     */
+    private static long gcCount() {
+        long result = 0;
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result += Math.max(0, gc.getCollectionCount());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the allocation counter of this JVM.
+     *
+     * @return the counter, or null if this JVM cannot count allocated bytes
+     */
+    private static com.sun.management.ThreadMXBean threads() {
+        com.sun.management.ThreadMXBean result = null;
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            result = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (!result.isThreadAllocatedMemorySupported()) {
+                result = null;
+            } else {
+                result.setThreadAllocatedMemoryEnabled(true);
+            }
+        }
+        return result;
+    }
+}
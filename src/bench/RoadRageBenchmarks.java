@@ -0,0 +1,326 @@
+/*
+ * TCSS 305 - Road Rage
+ */
+
+package bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import logic.ArrayRoadRage;
+import logic.RoadRage;
+import logic.RoadRageControls;
+import logic.TickMode;
+import model.Direction;
+import model.Light;
+import model.Terrain;
+import model.Vehicle;
+import model.VehicleType;
+import view.util.FileLoader;
+
+/**
+ * Microbenchmarks of the hot paths of a tick: advancing the simulation at several
+ * fleet sizes and densities, building neighbor maps, choosing directions and testing
+ * terrain for each vehicle type, resolving collisions, and parsing map files.
+ *
+ * Usage: java bench.RoadRageBenchmarks [regex], where only the benchmarks whose names
+ * contain a match of the regex are run.
+ */
+public final class RoadRageBenchmarks {
+
+    /**
+     * The city map the benchmarks are built from.
+     */
+    private static final String CITY_FILE = "city_map1.txt";
+
+    /**
+     * The seed of the fleets and of the random choices of the simulations, so that
+     * every run measures the same work.
+     */
+    private static final long SEED = 305;
+
+    /**
+     * Every vehicle type, copied once so that the measured loops do not allocate.
+     */
+    private static final VehicleType[] TYPES = VehicleType.values();
+
+    /**
+     * Every terrain, copied once so that the measured loops do not allocate.
+     */
+    private static final Terrain[] TERRAINS = Terrain.values();
+
+    /**
+     * Every light color, copied once so that the measured loops do not allocate.
+     */
+    private static final Light[] LIGHTS = Light.values();
+
+    /**
+     * Every direction, copied once so that the measured loops do not allocate.
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * The fleet sizes of the advance benchmarks, each paired with the number of
+     * copies of the city map across and down. Pairs with the same fleet size differ
+     * only in density.
+     */
+    private static final int[][] FLEETS = {
+        {100, 1}, {1_000, 1}, {1_000, 4}, {10_000, 16},
+    };
+
+    /**
+     * The fleet size of the neighbor and parsing benchmarks.
+     */
+    private static final int LARGE_FLEET = 10_000;
+
+    /**
+     * The number of copies of the city map across and down in the neighbor and
+     * parsing benchmarks.
+     */
+    private static final int LARGE_TILES = 16;
+
+    /**
+     * The number of cars packed onto a single city map in the collision benchmark.
+     */
+    private static final int CRASH_FLEET = 500;
+
+    /**
+     * Private constructor to prevent construction of instances.
+     */
+    private RoadRageBenchmarks() {
+        // do nothing
+    }
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param theArgs an optional regex selecting the benchmarks to run
+     * @throws IOException if the city map cannot be read
+     */
+    public static void main(final String... theArgs) throws IOException {
+        final Bench bench = new Bench(theArgs.length > 0 ? theArgs[0] : "");
+        final List<String> city = Files.readAllLines(Paths.get(CITY_FILE));
+
+        for (final int[] fleet : FLEETS) {
+            final Terrain[][] grid = grid(city, fleet[1]);
+            final List<Vehicle> vehicles = fleet(grid, fleet[0], null);
+            final String name = "/n=" + fleet[0] + "/tiles=" + fleet[1];
+
+            final RoadRage objects = new RoadRage(grid, copy(vehicles));
+            objects.setSeed(SEED);
+            objects.start();
+            bench.run("advance/objects" + name, () -> advance(objects));
+
+            final ArrayRoadRage arrays = new ArrayRoadRage(grid, copy(vehicles));
+            arrays.setSeed(SEED);
+            arrays.start();
+            bench.run("advance/arrays" + name, () -> advance(arrays));
+        }
+
+        final Terrain[][] large = grid(city, LARGE_TILES);
+        final List<Vehicle> largeFleet = fleet(large, LARGE_FLEET, null);
+        for (final TickMode mode : new TickMode[] {TickMode.SYNCHRONOUS, TickMode.PARTITIONED}) {
+            final RoadRage parallel = new RoadRage(large, copy(largeFleet));
+            parallel.setTickMode(mode);
+            parallel.setSeed(SEED);
+            parallel.start();
+            bench.run("advance/" + mode.name().toLowerCase() + "/n=" + LARGE_FLEET
+                      + "/tiles=" + LARGE_TILES, () -> advance(parallel));
+        }
+
+        final Terrain[][] small = grid(city, 1);
+        final RoadRage crash = new RoadRage(small, fleet(small, CRASH_FLEET,
+                                                         VehicleType.CAR));
+        crash.setSeed(SEED);
+        crash.start();
+        bench.run("collisions/cars=" + CRASH_FLEET, () -> advance(crash));
+
+        final RoadRage neighbors = new RoadRage(large, copy(largeFleet));
+        final int[] next = new int[1];
+        bench.run("neighbors", () -> {
+            final Vehicle v = largeFleet.get(next[0]++ % largeFleet.size());
+            return neighbors.getNeighbors(v).size();
+        });
+
+        final List<Map<Direction, Terrain>> maps = neighborMaps(small);
+        for (final VehicleType type : TYPES) {
+            final Vehicle v = type.create(0, 0, Direction.NORTH);
+            v.setSeed(SEED);
+            bench.run("chooseDirection/" + type.getImageName(), () -> {
+                return v.chooseDirection(maps.get(next[0]++ % maps.size())).ordinal();
+            });
+            bench.run("canPass/" + type.getImageName(), () -> canPassAll(v));
+        }
+
+        final File largeFile = File.createTempFile("city_map", ".txt");
+        largeFile.deleteOnExit();
+        write(largeFile, city, LARGE_TILES, largeFleet);
+        bench.run("parse/" + CITY_FILE, () -> parse(CITY_FILE));
+        bench.run("parse/n=" + LARGE_FLEET + "/tiles=" + LARGE_TILES,
+            () -> parse(largeFile.getPath()));
+    }
+
+    /**
+     * Advances a simulation by one tick.
+     *
+     * @param theRoadRage the simulation
+     * @return the width of the map, as a result for the harness
+     */
+    private static int advance(final RoadRageControls theRoadRage) {
+        theRoadRage.advance();
+        return theRoadRage.getWidth();
+    }
+
+    /**
+     * Tests a vehicle against every combination of terrain and light.
+     *
+     * @param theVehicle the vehicle
+     * @return the number of combinations it can pass
+     */
+    private static int canPassAll(final Vehicle theVehicle) {
+        int result = 0;
+        for (final Terrain terrain : TERRAINS) {
+            for (final Light light : LIGHTS) {
+                if (theVehicle.canPass(terrain, light)) {
+                    result++;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Parses a city map file.
+     *
+     * @param theFileName the name of the file
+     * @return the number of vehicles read
+     */
+    private static int parse(final String theFileName) {
+        try {
+            return FileLoader.readCity(theFileName).getVehicleCount();
+        } catch (final IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+    }
+
+    /**
+     * Builds a grid from copies of a city map.
+     *
+     * @param theCity the lines of the city map file
+     * @param theTiles the number of copies across and down
+     * @return the grid
+     */
+    private static Terrain[][] grid(final List<String> theCity, final int theTiles) {
+        final String[] size = theCity.get(0).trim().split("\\s+");
+        final int height = Integer.parseInt(size[0]);
+        final int width = Integer.parseInt(size[1]);
+        final Terrain[][] result = new Terrain[height * theTiles][width * theTiles];
+        for (int y = 0; y < result.length; y++) {
+            for (int x = 0; x < result[y].length; x++) {
+                result[y][x] = Terrain.valueOf(theCity.get(1 + y % height).charAt(x % width));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Builds a fleet of vehicles on squares they can drive on, with a fixed seed.
+     *
+     * @param theGrid the grid
+     * @param theSize the number of vehicles
+     * @param theType the type of every vehicle, or null for a mix of all types
+     * @return the vehicles
+     */
+    private static List<Vehicle> fleet(final Terrain[][] theGrid, final int theSize,
+                                       final VehicleType theType) {
+        final Random random = new Random(SEED);
+        final List<Vehicle> result = new ArrayList<>(theSize);
+        while (result.size() < theSize) {
+            final int y = random.nextInt(theGrid.length);
+            final int x = random.nextInt(theGrid[y].length);
+            VehicleType type = theType;
+            if (type == null) {
+                type = TYPES[random.nextInt(TYPES.length)];
+            }
+            final Vehicle v = type.create(x, y, DIRECTIONS[random.nextInt(DIRECTIONS.length)]);
+            if (v.canPass(theGrid[y][x], Light.GREEN)) {
+                result.add(v);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns fresh copies of vehicles, so that each simulation starts from the same
+     * fleet.
+     *
+     * @param theVehicles the vehicles
+     * @return the copies
+     */
+    private static List<Vehicle> copy(final List<Vehicle> theVehicles) {
+        final List<Vehicle> result = new ArrayList<>(theVehicles.size());
+        for (final Vehicle v : theVehicles) {
+            result.add(VehicleType.of(v).create(v.getX(), v.getY(), v.getDirection()));
+        }
+        return result;
+    }
+
+    /**
+     * Builds the neighbor map of every square of a grid.
+     *
+     * @param theGrid the grid
+     * @return the neighbor maps
+     */
+    private static List<Map<Direction, Terrain>> neighborMaps(final Terrain[][] theGrid) {
+        final List<Map<Direction, Terrain>> result = new ArrayList<>();
+        for (int y = 0; y < theGrid.length; y++) {
+            for (int x = 0; x < theGrid[y].length; x++) {
+                final Map<Direction, Terrain> neighbors = new EnumMap<>(Direction.class);
+                for (final Direction dir : DIRECTIONS) {
+                    final int ny = y + dir.dy();
+                    final int nx = x + dir.dx();
+                    if (0 <= ny && ny < theGrid.length && 0 <= nx && nx < theGrid[ny].length) {
+                        neighbors.put(dir, theGrid[ny][nx]);
+                    }
+                }
+                result.add(Collections.unmodifiableMap(neighbors));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes a city map file made of copies of a city map, with the given vehicles.
+     *
+     * @param theFile the file to write
+     * @param theCity the lines of the city map file
+     * @param theTiles the number of copies across and down
+     * @param theVehicles the vehicles
+     * @throws IOException if the file cannot be written
+     */
+    private static void write(final File theFile, final List<String> theCity,
+                              final int theTiles, final List<Vehicle> theVehicles)
+        throws IOException {
+        final String[] size = theCity.get(0).trim().split("\\s+");
+        final int height = Integer.parseInt(size[0]);
+        try (PrintWriter out = new PrintWriter(theFile, "UTF-8")) {
+            out.println(height * theTiles + " " + Integer.parseInt(size[1]) * theTiles);
+            for (int y = 0; y < height * theTiles; y++) {
+                out.println(theCity.get(1 + y % height).repeat(theTiles));
+            }
+            out.println(theVehicles.size());
+            for (final Vehicle v : theVehicles) {
+                out.println(VehicleType.of(v).letter() + " " + v.getX() + " " + v.getY()
+                            + " " + v.getDirection().letter());
+            }
+        }
+    }
+}
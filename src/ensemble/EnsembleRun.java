@@ -0,0 +1,140 @@
+/*
+ * TCSS 305 - Road Rage
+ */
+
+package ensemble;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import logic.CityMap;
+import logic.RoadRage;
+import model.Vehicle;
+import model.VehicleType;
+
+/**
+ * One run of an ensemble: a fresh simulation of a city map, seeded and advanced for a
+ * number of ticks while its metrics are measured.
+ */
+public final class EnsembleRun implements Callable<double[]> {
+
+    /**
+     * The index of the collision count among the metrics.
+     */
+    private static final int COLLISIONS = 0;
+
+    /**
+     * The index of the first death count among the metrics, one per vehicle type.
+     */
+    private static final int DEATHS = 1;
+
+    /**
+     * The index of the mean number of occupied squares among the metrics.
+     */
+    private static final int OCCUPIED = DEATHS + VehicleType.values().length;
+
+    /**
+     * The index of the most vehicles seen on one square among the metrics.
+     */
+    private static final int PEAK_LOAD = OCCUPIED + 1;
+
+    /**
+     * The names of the metrics, in the order call() returns them.
+     */
+    public static final List<String> METRICS = metrics();
+
+    /**
+     * The city map to simulate.
+     */
+    private final CityMap myMap;
+
+    /**
+     * The master seed of the simulation.
+     */
+    private final long mySeed;
+
+    /**
+     * The number of ticks to run.
+     */
+    private final int myTicks;
+
+    /**
+     * Creates a run of a city map.
+     *
+     * @param theMap the city map to simulate
+     * @param theSeed the master seed of the simulation
+     * @param theTicks the number of ticks to run
+     */
+    public EnsembleRun(final CityMap theMap, final long theSeed, final int theTicks) {
+        myMap = theMap;
+        mySeed = theSeed;
+        myTicks = theTicks;
+    }
+
+    /**
+     * Runs the simulation and returns its metrics.
+     *
+     * @return the value of each metric, in the order of METRICS
+     */
+    @Override
+    public double[] call() {
+        final List<Vehicle> vehicles = myMap.createVehicles();
+        final RoadRage roadRage = myMap.createRoadRage(vehicles);
+        roadRage.setSeed(mySeed);
+        roadRage.start();
+
+        final int[] types = new int[vehicles.size()];
+        final boolean[] alive = new boolean[vehicles.size()];
+        for (int i = 0; i < vehicles.size(); i++) {
+            types[i] = VehicleType.of(vehicles.get(i)).ordinal();
+            alive[i] = vehicles.get(i).isAlive();
+        }
+        final int width = myMap.getWidth();
+        final int height = myMap.getHeight();
+        final int[] load = new int[width * height];
+
+        final double[] result = new double[METRICS.size()];
+        long occupied = 0;
+        for (int tick = 0; tick < myTicks; tick++) {
+            roadRage.advance();
+            for (int i = 0; i < vehicles.size(); i++) {
+                final Vehicle v = vehicles.get(i);
+                if (alive[i] && !v.isAlive()) {
+                    result[DEATHS + types[i]]++;
+                }
+                alive[i] = v.isAlive();
+                if (0 <= v.getX() && v.getX() < width && 0 <= v.getY() && v.getY() < height) {
+                    final int square = v.getY() * width + v.getX();
+                    load[square]++;
+                    if (load[square] == 1) {
+                        occupied++;
+                    }
+                    result[PEAK_LOAD] = Math.max(result[PEAK_LOAD], load[square]);
+                }
+            }
+            for (final Vehicle v : vehicles) {
+                if (0 <= v.getX() && v.getX() < width && 0 <= v.getY() && v.getY() < height) {
+                    load[v.getY() * width + v.getX()] = 0;
+                }
+            }
+        }
+        result[COLLISIONS] = roadRage.getCollisionCount();
+        result[OCCUPIED] = (double) occupied / Math.max(1, myTicks);
+        return result;
+    }
+
+    /**
+     * Returns the names of the metrics.
+     *
+     * @return the names, in the order call() returns the metrics
+     */
+    private static List<String> metrics() {
+        final String[] result = new String[VehicleType.values().length + 3];
+        result[COLLISIONS] = "collisions";
+        for (final VehicleType type : VehicleType.values()) {
+            result[DEATHS + type.ordinal()] = "deaths " + type.getImageName();
+        }
+        result[OCCUPIED] = "occupied squares";
+        result[PEAK_LOAD] = "peak square load";
+        return List.of(result);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * TCSS 305 - Road Rage
+ */
+
+package ensemble;
+
+/**
+ * A streaming accumulator of the mean, variance and range of a series of values,
+ * using Welford's method so that no values are stored and large series stay
+ * accurate.
+ */
+public final class RunningStats {
+
+    /**
+     * The standard normal quantile for a two sided 95% confidence interval.
+     */
+    private static final double Z_95 = 1.959964;
+
+    /**
+     * The number of values added.
+     */
+    private long myCount;
+
+    /**
+     * The mean of the values added.
+     */
+    private double myMean;
+
+    /**
+     * The sum of the squared differences from the mean.
+     */
+    private double mySquares;
+
+    /**
+     * The smallest value added.
+     */
+    private double myMin = Double.POSITIVE_INFINITY;
+
+    /**
+     * The largest value added.
+     */
+    private double myMax = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Adds a value to the series.
+     *
+     * @param theValue the value
+     */
+    public void add(final double theValue) {
+        myCount++;
+        final double delta = theValue - myMean;
+        myMean += delta / myCount;
+        mySquares += delta * (theValue - myMean);
+        myMin = Math.min(myMin, theValue);
+        myMax = Math.max(myMax, theValue);
+    }
+
+    /**
+     * Returns the number of values added.
+     *
+     * @return the number of values
+     */
+    public long getCount() {
+        return myCount;
+    }
+
+    /**
+     * Returns the mean of the values added.
+     *
+     * @return the mean, or 0 if no values were added
+     */
+    public double getMean() {
+        return myMean;
+    }
+
+    /**
+     * Returns the sample variance of the values added.
+     *
+     * @return the variance, or 0 if fewer than two values were added
+     */
+    public double getVariance() {
+        double result = 0;
+        if (myCount > 1) {
+            result = mySquares / (myCount - 1);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the sample standard deviation of the values added.
+     *
+     * @return the standard deviation
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Returns the half width of the 95% confidence interval of the mean, using the
+     * normal approximation, which is close once there are a few dozen values.
+     *
+     * @return the half width, or 0 if fewer than two values were added
+     */
+    public double getConfidence95() {
+        double result = 0;
+        if (myCount > 1) {
+            result = Z_95 * getStandardDeviation() / Math.sqrt(myCount);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the smallest value added.
+     *
+     * @return the smallest value, or positive infinity if no values were added
+     */
+    public double getMin() {
+        return myMin;
+    }
+
+    /**
+     * Returns the largest value added.
+     *
+     * @return the largest value, or negative infinity if no values were added
+     */
+    public double getMax() {
+        return myMax;
+    }
+}
@@ -0,0 +1,1033 @@
+package logic;
+
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import model.Direction;
+import model.Light;
+import model.Terrain;
+import model.Vehicle;
+import model.VehicleType;
+
+/**
+ * An implementation of the RoadRage simulation that stores the fleet as parallel
+ * primitive arrays instead of one object per vehicle. Vehicle behavior runs as the
+ * static functions in VehicleKernels, and a tick follows the same rules as
+ * RoadRage.advance().
+ *
+ * Listeners receive lightweight Vehicle views of the arrays, so the GUI works with
+ * either implementation.
+ *
+ * Besides the fleet it starts with, vehicles can be spawned at source squares at a
+ * steady rate and retired at sink squares, for long runs under a constant load. A
+ * retired vehicle leaves its slot of the arrays free, off the map and with no type,
+ * and the next vehicle spawned takes the slot, so spawning never allocates.
+ */
+public class ArrayRoadRage implements PropertyChangeEnabledRoadRageControls {
+
+    /**
+     * The number of clock ticks between light changes.
+     */
+    private static final int LIGHT_CHANGE_TICKS = 15;
+
+    /**
+     * The directions, indexed by ordinal.
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * The vehicle types, indexed by ordinal.
+     */
+    private static final VehicleType[] TYPES = VehicleType.values();
+
+    /**
+     * The type ordinal of a free slot.
+     */
+    private static final byte NO_TYPE = -1;
+
+    /**
+     * The position of a free slot, off the map.
+     */
+    private static final int NO_POSITION = -1;
+
+    /**
+     * The terrain grid for the simulation.
+     */
+    private final TerrainGrid myGrid;
+
+    /**
+     * The neighbors code of every square, computed once from the grid.
+     */
+    private final NeighborTable myNeighbors;
+
+    /**
+     * Which vehicles occupy which squares, used to find collisions.
+     */
+    private final OccupancyIndex myOccupancy;
+
+    /**
+     * The death time of each vehicle type, indexed by ordinal.
+     */
+    private final int[] myDeathTimes;
+
+    /**
+     * The current timestep of the simulation.
+     */
+    private long myTimestep;
+
+    /**
+     * The current status of lights.
+     */
+    private Light myLight;
+
+    /**
+     * The number of slots of the arrays in use, including free ones.
+     */
+    private int myCount;
+
+    /**
+     * The number of vehicles added with addVehicle, which reset brings back.
+     */
+    private int myFleetSize;
+
+    /** The x position of each vehicle. */
+    private final int[] myX;
+
+    /** The y position of each vehicle. */
+    private final int[] myY;
+
+    /** The direction ordinal of each vehicle. */
+    private final byte[] myDirection;
+
+    /** Whether each vehicle is alive. */
+    private final boolean[] myAlive;
+
+    /** The number of times each dead vehicle has been poked. */
+    private final short[] myPokes;
+
+    /** The vehicle type ordinal of each vehicle. */
+    private final byte[] myType;
+
+    /** The direction ordinal each ATV remembers between moves. */
+    private final byte[] myMemory;
+
+    /** The random stream of each vehicle. */
+    private final long[] mySeeds;
+
+    /** The initial x position of each vehicle. */
+    private final int[] myInitialX;
+
+    /** The initial y position of each vehicle. */
+    private final int[] myInitialY;
+
+    /** The initial direction ordinal of each vehicle. */
+    private final byte[] myInitialDirection;
+
+    /** The initial random stream of each vehicle. */
+    private final long[] myInitialSeeds;
+
+    /** The initial vehicle type ordinal of each vehicle. */
+    private final byte[] myInitialType;
+
+    /**
+     * The free slots, the most recently freed last.
+     */
+    private final int[] myFreeSlots;
+
+    /**
+     * The number of free slots.
+     */
+    private int myFreeCount;
+
+    /**
+     * The squares vehicles are spawned at.
+     */
+    private final List<Source> mySources;
+
+    /**
+     * The squares vehicles are retired at, as y * width + x.
+     */
+    private int[] mySinks;
+
+    /**
+     * The number of sink squares.
+     */
+    private int mySinkCount;
+
+    /**
+     * The number of vehicles spawned since the simulation was last reset.
+     */
+    private long mySpawnCount;
+
+    /**
+     * The number of vehicles retired since the simulation was last reset.
+     */
+    private long myRetireCount;
+
+    /**
+     * The number of vehicles not spawned since the simulation was last reset, because
+     * every slot was in use.
+     */
+    private long myDropCount;
+
+    /**
+     * The master seed the random stream of each vehicle is derived from.
+     */
+    private long mySeed;
+
+    /**
+     * The Vehicle views handed to listeners, created on first use and dropped when a
+     * slot is filled or freed.
+     */
+    private VehicleView[] myViews;
+
+    /**
+     * Whether the full list of vehicles is sent after every change.
+     */
+    private boolean myVehicleListEvents;
+
+    /**
+     * The vehicle state last sent to listeners, used to send only what changed.
+     */
+    private final DeltaTracker myDeltas;
+
+    /**
+     * The two world states, filled in turn at the end of each tick.
+     */
+    private final WorldState[] myWorlds;
+
+    /**
+     * The world state published at the end of the last tick.
+     */
+    private volatile WorldState myWorld;
+
+    /**
+     * The index of the world state to fill next.
+     */
+    private int myNextWorld;
+
+    /**
+     * Manager for Propery Change Listeners.
+     */
+    private final PropertyChangeSupport myPcs;
+
+    /**
+     * Creates a simulation with room for the given number of vehicles. Vehicles are
+     * added with addVehicle before the simulation is started.
+     *
+     * @param theGrid the 2D grid of Terrain that defines the map
+     * @param theCapacity the largest number of vehicles that may be added
+     */
+    public ArrayRoadRage(final Terrain[][] theGrid, final int theCapacity) {
+        myGrid = new TerrainGrid(theGrid);
+        myNeighbors = new NeighborTable(myGrid);
+        myOccupancy = new OccupancyIndex(myGrid, theCapacity);
+        myDeathTimes = new int[TYPES.length];
+        for (final VehicleType type : TYPES) {
+            myDeathTimes[type.ordinal()] = type.getDeathTime();
+        }
+        myX = new int[theCapacity];
+        myY = new int[theCapacity];
+        myDirection = new byte[theCapacity];
+        myAlive = new boolean[theCapacity];
+        myPokes = new short[theCapacity];
+        myType = new byte[theCapacity];
+        myMemory = new byte[theCapacity];
+        mySeeds = new long[theCapacity];
+        myInitialX = new int[theCapacity];
+        myInitialY = new int[theCapacity];
+        myInitialDirection = new byte[theCapacity];
+        myInitialSeeds = new long[theCapacity];
+        myInitialType = new byte[theCapacity];
+        myFreeSlots = new int[theCapacity];
+        mySources = new ArrayList<>();
+        mySinks = new int[0];
+        mySeed = new SplittableRandom().nextLong();
+        myDeltas = new DeltaTracker(myType);
+        myWorlds = new WorldState[] {
+            new WorldState(myType, getWidth(), getHeight()),
+            new WorldState(myType, getWidth(), getHeight())};
+        myPcs = new PropertyChangeSupport(this);
+        publishWorld();
+    }
+
+    /**
+     * Creates a simulation holding a copy of the given vehicles.
+     *
+     * @param theGrid the 2D grid of Terrain that defines the map
+     * @param theVehicles the Vehicles on the map
+     * @throws IllegalArgumentException if a vehicle is not one of the model classes
+     */
+    public ArrayRoadRage(final Terrain[][] theGrid, final List<Vehicle> theVehicles) {
+        this(theGrid, theVehicles.size());
+        for (final Vehicle v : theVehicles) {
+            final VehicleType type = VehicleType.of(v);
+            if (type == null) {
+                throw new IllegalArgumentException("Unknown vehicle type: " + v);
+            }
+            addVehicle(type, v.getX(), v.getY(), v.getDirection());
+        }
+    }
+
+    /**
+     * Adds a vehicle to the fleet.
+     *
+     * @param theType the type of the vehicle
+     * @param theX the initial x position of the vehicle
+     * @param theY the initial y position of the vehicle
+     * @param theDir the initial direction of the vehicle
+     * @return the index of the new vehicle
+     * @throws IllegalStateException if the fleet is full, or vehicles have been
+     *             spawned since the simulation was last reset
+     */
+    public int addVehicle(final VehicleType theType, final int theX, final int theY,
+                          final Direction theDir) {
+        if (myCount == myX.length) {
+            throw new IllegalStateException("The fleet is full: " + myCount);
+        }
+        if (myCount != myFleetSize || myFreeCount > 0) {
+            throw new IllegalStateException("Vehicles cannot be added after spawning");
+        }
+        final int index = myCount;
+        myCount++;
+        myFleetSize++;
+        myViews = null;
+        myInitialType[index] = (byte) theType.ordinal();
+        myType[index] = (byte) theType.ordinal();
+        myInitialX[index] = theX;
+        myInitialY[index] = theY;
+        myInitialDirection[index] = (byte) theDir.ordinal();
+        myMemory[index] = (byte) theDir.ordinal();
+        myInitialSeeds[index] = VehicleKernels.seedOf(mySeed, index);
+        resetVehicle(index);
+        return index;
+    }
+
+    /**
+     * Adds a square where vehicles of a type are spawned, facing a direction. The
+     * rate may be fractional: a rate of 0.25 spawns a vehicle every fourth tick.
+     * Nothing is spawned while every slot is in use.
+     *
+     * @param theType the type of the vehicles
+     * @param theX the x position of the square
+     * @param theY the y position of the square
+     * @param theDir the direction the vehicles face
+     * @param theRate the number of vehicles spawned per tick
+     * @throws IllegalArgumentException if the square is off the map or the rate is
+     *             negative or not finite
+     */
+    public void addSource(final VehicleType theType, final int theX, final int theY,
+                          final Direction theDir, final double theRate) {
+        if (!myGrid.isOnMap(theX, theY) || !(theRate >= 0 && Double.isFinite(theRate))) {
+            throw new IllegalArgumentException("Bad source at " + theX + ", " + theY
+                                               + " with rate " + theRate);
+        }
+        mySources.add(new Source((byte) theType.ordinal(), theX, theY,
+                                 (byte) theDir.ordinal(), theRate));
+    }
+
+    /**
+     * Makes every square on the edge of the map that a type can pass under a green
+     * light a source of that type, spawning vehicles that face into the map.
+     *
+     * @param theType the type of the vehicles
+     * @param theRate the number of vehicles spawned per tick at each square
+     * @return the number of sources added
+     */
+    public int addEdgeSources(final VehicleType theType, final double theRate) {
+        int result = 0;
+        for (int y = 0; y < getHeight(); y++) {
+            for (int x = 0; x < getWidth(); x++) {
+                final Direction inward = inwardAt(x, y);
+                if (inward != null && VehicleKernels.canPass(theType.ordinal(),
+                                                             myGrid.get(x, y).ordinal(),
+                                                             Light.GREEN.ordinal())) {
+                    addSource(theType, x, y, inward, theRate);
+                    result++;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds a square where vehicles are retired at the end of every tick, freeing
+     * their slots for the next vehicles spawned.
+     *
+     * @param theX the x position of the square
+     * @param theY the y position of the square
+     * @throws IllegalArgumentException if the square is off the map
+     */
+    public void addSink(final int theX, final int theY) {
+        if (!myGrid.isOnMap(theX, theY)) {
+            throw new IllegalArgumentException("Bad sink at " + theX + ", " + theY);
+        }
+        if (mySinkCount == mySinks.length) {
+            mySinks = Arrays.copyOf(mySinks, mySinkCount * 2 + 1);
+        }
+        mySinks[mySinkCount] = theY * getWidth() + theX;
+        mySinkCount++;
+    }
+
+    /**
+     * Starts the random stream of every vehicle over from a master seed. Each vehicle
+     * gets its own stream, derived from the master seed and its index the same way
+     * RoadRage derives them, so a run can be replayed by both simulations. Vehicles
+     * added later also derive their streams from this seed.
+     *
+     * @param theSeed the master seed
+     */
+    public void setSeed(final long theSeed) {
+        mySeed = theSeed;
+        for (int i = 0; i < myCount; i++) {
+            myInitialSeeds[i] = VehicleKernels.seedOf(theSeed, i);
+        }
+        System.arraycopy(myInitialSeeds, 0, mySeeds, 0, myCount);
+    }
+
+    /**
+     * Returns the master seed the random stream of each vehicle is derived from.
+     *
+     * @return the master seed
+     */
+    public long getSeed() {
+        return mySeed;
+    }
+
+    /**
+     * Returns the number of vehicles in the fleet. Once vehicles have been retired,
+     * this counts the slots they left free too.
+     *
+     * @return the number of vehicles
+     */
+    public int getVehicleCount() {
+        return myCount;
+    }
+
+    /**
+     * Returns the number of vehicles spawned since the simulation was last reset.
+     *
+     * @return the number of vehicles spawned
+     */
+    public long getSpawnCount() {
+        return mySpawnCount;
+    }
+
+    /**
+     * Returns the number of vehicles retired since the simulation was last reset.
+     *
+     * @return the number of vehicles retired
+     */
+    public long getRetireCount() {
+        return myRetireCount;
+    }
+
+    /**
+     * Returns the number of vehicles not spawned since the simulation was last reset,
+     * because every slot was in use.
+     *
+     * @return the number of vehicles not spawned
+     */
+    public long getDropCount() {
+        return myDropCount;
+    }
+
+    @Override
+    public void setVehicleListEvents(final boolean theEnabled) {
+        myVehicleListEvents = theEnabled;
+    }
+
+    @Override
+    public WorldState getWorldState() {
+        return myWorld;
+    }
+
+    @Override
+    public void advance() {
+        indexVehicles();
+        final int light = myLight.ordinal();
+        for (int i = 0; i < myCount; i++) {
+            if (myType[i] == NO_TYPE) {
+                // a free slot
+                continue;
+            }
+            // move the vehicle
+            if (myAlive[i]) {
+                final int code = codeAt(myX[i], myY[i]);
+                final int dir = VehicleKernels.chooseDirection(myType[i], myDirection[i], code,
+                                                               i, myMemory, mySeeds);
+                myDirection[i] = (byte) dir;
+
+                // move one square in current direction, if it's okay to do so
+                if (VehicleKernels.canPass(myType[i], NeighborTable.neighbor(code, dir),
+                                           light)) {
+                    myX[i] += DIRECTIONS[dir].dx();
+                    myY[i] += DIRECTIONS[dir].dy();
+                    myOccupancy.move(i, myX[i], myY[i]);
+                }
+            } else {
+                // become one move closer to revival
+                poke(i);
+            }
+
+            // look for collisions, only vehicles in the same square can collide
+            for (int j = myOccupancy.first(myX[i], myY[i]); j != OccupancyIndex.NONE;
+                            j = myOccupancy.next(j)) {
+                if (j != i && myX[i] == myX[j] && myY[i] == myY[j]) {
+                    // tell both vehicles they have collided
+                    collide(i, j);
+                    collide(j, i);
+                }
+            }
+        }
+        retireAtSinks();
+        spawnAtSources();
+        advanceTimeStep();
+        if (myTimestep % LIGHT_CHANGE_TICKS == 0) {
+            setLightColor(myLight.advance());
+        }
+        publishWorld();
+        fireTick();
+    }
+
+    @Override
+    public void start() {
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        resetVehicles();
+        setLightColor(Light.GREEN);
+        setTimeStep(0);
+        fireGridChange();
+        publishWorld();
+        myDeltas.reset();
+        fireTick();
+    }
+
+    @Override
+    public int getHeight() {
+        return myGrid.getHeight();
+    }
+
+    @Override
+    public int getWidth() {
+        return myGrid.getWidth();
+    }
+
+    @Override
+    public void addPropertyChangeListener(final PropertyChangeListener theListener) {
+        myPcs.addPropertyChangeListener(theListener);
+        myDeltas.reset();
+    }
+
+    @Override
+    public void removePropertyChangeListener(final PropertyChangeListener theListener) {
+        myPcs.removePropertyChangeListener(theListener);
+    }
+
+    @Override
+    public void addPropertyChangeListener(final String thePropertyName,
+                                          final PropertyChangeListener theListener) {
+        myPcs.addPropertyChangeListener(thePropertyName, theListener);
+        myDeltas.reset();
+    }
+
+    @Override
+    public void removePropertyChangeListener(final String thePropertyName,
+                                             final PropertyChangeListener theListener) {
+        myPcs.removePropertyChangeListener(thePropertyName, theListener);
+    }
+
+    /**
+     * Returns the neighbors code of a square, on or off the map.
+     *
+     * @param theX the x position of the square
+     * @param theY the y position of the square
+     * @return the neighbors code
+     */
+    private int codeAt(final int theX, final int theY) {
+        int result = myNeighbors.code(theX, theY);
+        if (result < 0) {
+            result = NeighborTable.codeOf(myGrid, theX, theY);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the direction into the map from a square on its edge.
+     *
+     * @param theX the x position of the square
+     * @param theY the y position of the square
+     * @return the direction, or null if the square is not on the edge
+     */
+    private Direction inwardAt(final int theX, final int theY) {
+        Direction result = null;
+        if (theY == 0) {
+            result = Direction.SOUTH;
+        } else if (theY == getHeight() - 1) {
+            result = Direction.NORTH;
+        } else if (theX == 0) {
+            result = Direction.EAST;
+        } else if (theX == getWidth() - 1) {
+            result = Direction.WEST;
+        }
+        return result;
+    }
+
+    /**
+     * Retires every vehicle on a sink square, alive or dead.
+     */
+    private void retireAtSinks() {
+        for (int s = 0; s < mySinkCount; s++) {
+            final int x = mySinks[s] % getWidth();
+            final int y = mySinks[s] / getWidth();
+            int j = myOccupancy.first(x, y);
+            while (j != OccupancyIndex.NONE) {
+                final int next = myOccupancy.next(j);
+                if (myX[j] == x && myY[j] == y && myType[j] != NO_TYPE) {
+                    retire(j);
+                }
+                j = next;
+            }
+        }
+    }
+
+    /**
+     * Retires a vehicle, taking it off the map and freeing its slot.
+     *
+     * @param theVehicle the index of the vehicle
+     */
+    private void retire(final int theVehicle) {
+        myOccupancy.remove(theVehicle);
+        myType[theVehicle] = NO_TYPE;
+        myX[theVehicle] = NO_POSITION;
+        myY[theVehicle] = NO_POSITION;
+        myAlive[theVehicle] = false;
+        myPokes[theVehicle] = 0;
+        myFreeSlots[myFreeCount] = theVehicle;
+        myFreeCount++;
+        myRetireCount++;
+        myViews = null;
+    }
+
+    /**
+     * Spawns the vehicles every source is due, each at the rate of its source.
+     */
+    private void spawnAtSources() {
+        for (int s = 0; s < mySources.size(); s++) {
+            final Source source = mySources.get(s);
+            source.myCredit += source.myRate;
+            while (source.myCredit >= 1) {
+                source.myCredit--;
+                spawn(source);
+            }
+        }
+    }
+
+    /**
+     * Spawns a vehicle at a source into a free slot, or a slot not used yet. Each
+     * vehicle spawned gets its own random stream, derived from the master seed and
+     * the number of vehicles spawned before it.
+     *
+     * @param theSource the source
+     */
+    private void spawn(final Source theSource) {
+        int slot = NO_POSITION;
+        if (myFreeCount > 0) {
+            myFreeCount--;
+            slot = myFreeSlots[myFreeCount];
+        } else if (myCount < myX.length) {
+            slot = myCount;
+            myCount++;
+        }
+        if (slot == NO_POSITION) {
+            myDropCount++;
+        } else {
+            myType[slot] = theSource.myType;
+            myX[slot] = theSource.myX;
+            myY[slot] = theSource.myY;
+            myDirection[slot] = theSource.myDirection;
+            myMemory[slot] = theSource.myDirection;
+            myAlive[slot] = true;
+            myPokes[slot] = 0;
+            // the streams of the fleet are derived from indices 0 and up, so spawned
+            // vehicles use a master seed of their own
+            mySeeds[slot] = VehicleKernels.seedOf(VehicleKernels.seedOf(mySeed, -1),
+                                                  mySpawnCount);
+            myOccupancy.move(slot, myX[slot], myY[slot]);
+            mySpawnCount++;
+            myViews = null;
+        }
+    }
+
+    /**
+     * Tells a vehicle it has collided with another, as AbstractVehicle.collide does.
+     *
+     * @param theVehicle the index of the vehicle
+     * @param theOther the index of the other vehicle
+     */
+    private void collide(final int theVehicle, final int theOther) {
+        if (myAlive[theVehicle] && myAlive[theOther]
+            && myDeathTimes[myType[theVehicle]] > myDeathTimes[myType[theOther]]) {
+            myAlive[theVehicle] = false;
+        }
+    }
+
+    /**
+     * Brings a dead vehicle one move closer to revival, as AbstractVehicle.poke does.
+     *
+     * @param theVehicle the index of the vehicle
+     */
+    private void poke(final int theVehicle) {
+        if (!myAlive[theVehicle]) {
+            final int deathTime = myDeathTimes[myType[theVehicle]];
+            if (myPokes[theVehicle] != deathTime) {
+                if (myPokes[theVehicle] < deathTime) {
+                    myPokes[theVehicle]++;
+                }
+            } else {
+                myAlive[theVehicle] = true;
+                myDirection[theVehicle] =
+                                (byte) VehicleKernels.randomDirection(theVehicle, mySeeds);
+                myPokes[theVehicle] = 0;
+            }
+        }
+    }
+
+    /**
+     * Sets the paint color appropriately for the current lights.
+     *
+     * @param theLight The Light to base the color on.
+     */
+    private void setLightColor(final Light theLight) {
+        final Light old = myLight;
+        myLight = theLight;
+        myPcs.firePropertyChange(PROPERTY_LIGHT, old, myLight);
+    }
+
+    /**
+     * Sets the time step for the simulation.
+     *
+     * @param theTimestep the time to set.
+     */
+    private void setTimeStep(final long theTimestep) {
+        final long old = myTimestep;
+        myTimestep = theTimestep;
+        myPcs.firePropertyChange(PROPERTY_TIME, old, myTimestep);
+    }
+
+    /**
+     * Advances the time step by 1 for the simulation.
+     */
+    private void advanceTimeStep() {
+        setTimeStep(myTimestep + 1);
+    }
+
+    /**
+     * Fills the world state not in use with the state of the simulation and publishes
+     * it, so that readers of the last one are not disturbed.
+     */
+    private void publishWorld() {
+        final WorldState next = myWorlds[myNextWorld];
+        next.beginWrite(myCount, myTimestep, myLight);
+        next.write(myType, myX, myY, myDirection, myAlive, myCount);
+        next.endWrite();
+        myWorld = next;
+        myNextWorld = 1 - myNextWorld;
+    }
+
+    /**
+     * Inform PropertyChagneListeners of the end of a tick: the vehicles that changed,
+     * the full list of vehicles if asked to, and a TickSnapshot of the whole tick.
+     * The views are only created once somebody listens for them.
+     */
+    private void fireTick() {
+        VehicleDelta delta = null;
+        if (myPcs.hasListeners(PROPERTY_VEHICLE_DELTAS) || myPcs.hasListeners(PROPERTY_TICK)) {
+            for (int i = 0; i < myCount; i++) {
+                myDeltas.record(i, myType[i], myX[i], myY[i], myDirection[i], myAlive[i]);
+            }
+            delta = myDeltas.finish(myCount);
+            if (delta.isFull() || delta.size() > 0) {
+                myPcs.firePropertyChange(PROPERTY_VEHICLE_DELTAS, null, delta);
+            }
+        } else {
+            // nobody has seen the vehicles, so the next listener needs all of them
+            myDeltas.reset();
+        }
+        if (myVehicleListEvents && myPcs.hasListeners(PROPERTY_VEHICLES)) {
+            myPcs.firePropertyChange(PROPERTY_VEHICLES, null, vehicleViews());
+        }
+        if (myPcs.hasListeners(PROPERTY_TICK)) {
+            myPcs.firePropertyChange(PROPERTY_TICK, null,
+                                     new TickSnapshot(myTimestep, myLight, delta, myWorld));
+        }
+    }
+
+    /**
+     * Inform PropertyChagneListeners of the current Terrain map.
+     */
+    private void fireGridChange() {
+        myPcs.firePropertyChange(PROPERTY_GRID, null, myGrid);
+    }
+
+    /**
+     * Returns a read-only list of Vehicle views of the fleet. The views of free slots,
+     * which have no type, are left out.
+     *
+     * @return the Vehicle views
+     */
+    private List<Vehicle> vehicleViews() {
+        if (myViews == null) {
+            myViews = new VehicleView[myCount - myFreeCount];
+            int active = 0;
+            for (int i = 0; i < myCount; i++) {
+                if (myType[i] != NO_TYPE) {
+                    myViews[active] = new VehicleView(i);
+                    active++;
+                }
+            }
+        }
+        final VehicleView[] views = myViews;
+        return new AbstractList<Vehicle>() {
+            @Override
+            public Vehicle get(final int theIndex) {
+                return views[theIndex];
+            }
+
+            @Override
+            public int size() {
+                return views.length;
+            }
+        };
+    }
+
+    /**
+     * Files every vehicle in the occupancy index under its current square. Vehicles
+     * that have not moved since the last call are left alone.
+     */
+    private void indexVehicles() {
+        for (int i = 0; i < myCount; i++) {
+            if (myType[i] != NO_TYPE) {
+                myOccupancy.move(i, myX[i], myY[i]);
+            }
+        }
+    }
+
+    /**
+     * Reset all of the vehicles to their original state, taking away the vehicles
+     * spawned and bringing back the ones retired. Like the ATV class, the direction
+     * an ATV remembers is not reset.
+     */
+    private void resetVehicles() {
+        for (int i = myFleetSize; i < myCount; i++) {
+            myOccupancy.remove(i);
+        }
+        if (myCount != myFleetSize || myFreeCount > 0) {
+            myViews = null;
+        }
+        myCount = myFleetSize;
+        myFreeCount = 0;
+        mySpawnCount = 0;
+        myRetireCount = 0;
+        myDropCount = 0;
+        for (int s = 0; s < mySources.size(); s++) {
+            mySources.get(s).myCredit = 0;
+        }
+        System.arraycopy(myInitialType, 0, myType, 0, myCount);
+        System.arraycopy(myInitialX, 0, myX, 0, myCount);
+        System.arraycopy(myInitialY, 0, myY, 0, myCount);
+        System.arraycopy(myInitialDirection, 0, myDirection, 0, myCount);
+        Arrays.fill(myAlive, 0, myCount, true);
+        Arrays.fill(myPokes, 0, myCount, (short) 0);
+        System.arraycopy(myInitialSeeds, 0, mySeeds, 0, myCount);
+    }
+
+    /**
+     * Reset one vehicle to its original state.
+     *
+     * @param theVehicle the index of the vehicle
+     */
+    private void resetVehicle(final int theVehicle) {
+        myType[theVehicle] = myInitialType[theVehicle];
+        myX[theVehicle] = myInitialX[theVehicle];
+        myY[theVehicle] = myInitialY[theVehicle];
+        myDirection[theVehicle] = myInitialDirection[theVehicle];
+        myAlive[theVehicle] = true;
+        myPokes[theVehicle] = 0;
+        mySeeds[theVehicle] = myInitialSeeds[theVehicle];
+    }
+
+    /**
+     * A square where vehicles are spawned.
+     */
+    private static final class Source {
+
+        /**
+         * The type ordinal of the vehicles.
+         */
+        private final byte myType;
+
+        /**
+         * The x position of the square.
+         */
+        private final int myX;
+
+        /**
+         * The y position of the square.
+         */
+        private final int myY;
+
+        /**
+         * The direction ordinal the vehicles face.
+         */
+        private final byte myDirection;
+
+        /**
+         * The number of vehicles spawned per tick.
+         */
+        private final double myRate;
+
+        /**
+         * The part of a vehicle due but not yet spawned.
+         */
+        private double myCredit;
+
+        /**
+         * Creates a source.
+         *
+         * @param theType the type ordinal of the vehicles
+         * @param theX the x position of the square
+         * @param theY the y position of the square
+         * @param theDirection the direction ordinal the vehicles face
+         * @param theRate the number of vehicles spawned per tick
+         */
+        Source(final byte theType, final int theX, final int theY,
+               final byte theDirection, final double theRate) {
+            myType = theType;
+            myX = theX;
+            myY = theY;
+            myDirection = theDirection;
+            myRate = theRate;
+        }
+    }
+
+    /**
+     * A Vehicle backed by one slot of the fleet arrays.
+     */
+    private final class VehicleView implements Vehicle {
+
+        /**
+         * The index of the vehicle in the fleet arrays.
+         */
+        private final int myIndex;
+
+        /**
+         * Creates a view of one vehicle.
+         *
+         * @param theIndex the index of the vehicle
+         */
+        VehicleView(final int theIndex) {
+            myIndex = theIndex;
+        }
+
+        @Override
+        public boolean canPass(final Terrain theTerrain, final Light theLight) {
+            final int terrain = theTerrain == null ? NeighborTable.OFF_MAP
+                                                   : theTerrain.ordinal();
+            return VehicleKernels.canPass(myType[myIndex], terrain, theLight.ordinal());
+        }
+
+        @Override
+        public Direction chooseDirection(final Map<Direction, Terrain> theNeighbors) {
+            return DIRECTIONS[VehicleKernels.chooseDirection(myType[myIndex],
+                                                             myDirection[myIndex],
+                                                             NeighborTable.codeOf(theNeighbors),
+                                                             myIndex, myMemory, mySeeds)];
+        }
+
+        @Override
+        public void collide(final Vehicle theOther) {
+            if (isAlive() && theOther.isAlive() && getDeathTime() > theOther.getDeathTime()) {
+                myAlive[myIndex] = false;
+            }
+        }
+
+        @Override
+        public int getDeathTime() {
+            return myDeathTimes[myType[myIndex]];
+        }
+
+        @Override
+        public String getImageFileName() {
+            String result = toString();
+            if (!isAlive()) {
+                result = TYPES[myType[myIndex]].getImageName() + "_dead.gif";
+            }
+            return result;
+        }
+
+        @Override
+        public Direction getDirection() {
+            return DIRECTIONS[myDirection[myIndex]];
+        }
+
+        @Override
+        public int getX() {
+            return myX[myIndex];
+        }
+
+        @Override
+        public int getY() {
+            return myY[myIndex];
+        }
+
+        @Override
+        public boolean isAlive() {
+            return myAlive[myIndex];
+        }
+
+        @Override
+        public void poke() {
+            ArrayRoadRage.this.poke(myIndex);
+        }
+
+        @Override
+        public void reset() {
+            resetVehicle(myIndex);
+        }
+
+        @Override
+        public void setDirection(final Direction theDir) {
+            myDirection[myIndex] = (byte) theDir.ordinal();
+        }
+
+        @Override
+        public void setX(final int theX) {
+            myX[myIndex] = theX;
+        }
+
+        @Override
+        public void setY(final int theY) {
+            myY[myIndex] = theY;
+        }
+
+        @Override
+        public void setSeed(final long theSeed) {
+            myInitialSeeds[myIndex] = theSeed;
+            mySeeds[myIndex] = theSeed;
+        }
+
+        @Override
+        public String toString() {
+            return TYPES[myType[myIndex]].getImageName() + ".gif";
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.List;
+import model.Direction;
+import model.Terrain;
+import model.Vehicle;
+import model.VehicleType;
+
+/**
+ * An immutable city map: the terrain grid and the starting position of each vehicle.
+ * A map is read once and can then create any number of independent simulations,
+ * which share its grid and neighbor table but each get their own vehicles.
+ */
+public final class CityMap {
+
+    /**
+     * The terrain grid, which is never modified.
+     */
+    private final TerrainGrid myGrid;
+
+    /**
+     * The neighbor table of the grid.
+     */
+    private final NeighborTable myNeighbors;
+
+    /**
+     * The type of each vehicle.
+     */
+    private final VehicleType[] myTypes;
+
+    /**
+     * The initial x position of each vehicle.
+     */
+    private final int[] myX;
+
+    /**
+     * The initial y position of each vehicle.
+     */
+    private final int[] myY;
+
+    /**
+     * The initial direction of each vehicle.
+     */
+    private final Direction[] myDirections;
+
+    /**
+     * Creates a city map from a grid and the initial state of its vehicles.
+     *
+     * @param theGrid the 2D grid of Terrain that defines the map, which is copied
+     * @param theVehicles the Vehicles on the map, whose current positions and
+     *            directions are where each simulation starts them
+     * @throws IllegalArgumentException if a vehicle is not one of the model classes
+     */
+    public CityMap(final Terrain[][] theGrid, final List<Vehicle> theVehicles) {
+        myGrid = new TerrainGrid(theGrid);
+        myNeighbors = new NeighborTable(myGrid);
+        myTypes = new VehicleType[theVehicles.size()];
+        myX = new int[theVehicles.size()];
+        myY = new int[theVehicles.size()];
+        myDirections = new Direction[theVehicles.size()];
+        for (int i = 0; i < theVehicles.size(); i++) {
+            final Vehicle v = theVehicles.get(i);
+            myTypes[i] = VehicleType.of(v);
+            if (myTypes[i] == null) {
+                throw new IllegalArgumentException("Unknown vehicle type: " + v);
+            }
+            myX[i] = v.getX();
+            myY[i] = v.getY();
+            myDirections[i] = v.getDirection();
+        }
+    }
+
+    /**
+     * Creates a new simulation of this map with its own vehicles.
+     *
+     * @return the simulation
+     */
+    public RoadRage createRoadRage() {
+        return createRoadRage(createVehicles());
+    }
+
+    /**
+     * Creates a new simulation of this map with the given vehicles, usually a set
+     * made by createVehicles() that the caller wants to watch.
+     *
+     * @param theVehicles the Vehicles on the map
+     * @return the simulation
+     */
+    public RoadRage createRoadRage(final List<Vehicle> theVehicles) {
+        return new RoadRage(myGrid, myNeighbors, theVehicles);
+    }
+
+    /**
+     * Creates a new set of vehicles in their initial positions.
+     *
+     * @return the vehicles
+     */
+    public List<Vehicle> createVehicles() {
+        final List<Vehicle> result = new ArrayList<>(myTypes.length);
+        for (int i = 0; i < myTypes.length; i++) {
+            result.add(myTypes[i].create(myX[i], myY[i], myDirections[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of vehicles on the map.
+     *
+     * @return the number of vehicles
+     */
+    public int getVehicleCount() {
+        return myTypes.length;
+    }
+
+    /**
+     * Returns the height of the map.
+     *
+     * @return the number of rows
+     */
+    public int getHeight() {
+        return myGrid.getHeight();
+    }
+
+    /**
+     * Returns the width of the map.
+     *
+     * @return the number of columns
+     */
+    public int getWidth() {
+        return myGrid.getWidth();
+    }
+}
@@ -0,0 +1,161 @@
+package logic;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the state of every vehicle as last sent to listeners, and collects the
+ * vehicles that have changed since into a VehicleDelta.
+ */
+final class DeltaTracker {
+
+    /**
+     * The VehicleType ordinal of each vehicle as last sent, or -1 if it has none.
+     */
+    private final byte[] myTypes;
+
+    /**
+     * The x position of each vehicle as last sent.
+     */
+    private final int[] myX;
+
+    /**
+     * The y position of each vehicle as last sent.
+     */
+    private final int[] myY;
+
+    /**
+     * The direction ordinal of each vehicle as last sent.
+     */
+    private final byte[] myDirection;
+
+    /**
+     * Whether each vehicle was alive as last sent.
+     */
+    private final boolean[] myAlive;
+
+    /**
+     * The index of each vehicle changed since the last batch.
+     */
+    private final int[] myChanged;
+
+    /**
+     * The x position each changed vehicle was last sent with.
+     */
+    private final int[] myOldX;
+
+    /**
+     * The y position each changed vehicle was last sent with.
+     */
+    private final int[] myOldY;
+
+    /**
+     * The number of vehicles changed since the last batch.
+     */
+    private int myChangeCount;
+
+    /**
+     * Whether the next batch must list every vehicle.
+     */
+    private boolean myFull;
+
+    /**
+     * The number of vehicles in the last batch; vehicles past it are new, whatever
+     * was last sent for their slots.
+     */
+    private int myVehicleCount;
+
+    /**
+     * Creates a tracker for a fleet. The first batch lists every vehicle.
+     *
+     * @param theTypes the VehicleType ordinal of each vehicle, or -1 if it has none;
+     *            its length is the largest number of vehicles
+     */
+    DeltaTracker(final byte[] theTypes) {
+        final int capacity = theTypes.length;
+        myTypes = theTypes.clone();
+        myX = new int[capacity];
+        myY = new int[capacity];
+        myDirection = new byte[capacity];
+        myAlive = new boolean[capacity];
+        myChanged = new int[capacity];
+        myOldX = new int[capacity];
+        myOldY = new int[capacity];
+        myFull = true;
+    }
+
+    /**
+     * Makes the next batch list every vehicle, for when listeners cannot rely on
+     * earlier batches.
+     */
+    void reset() {
+        myFull = true;
+        myChangeCount = 0;
+    }
+
+    /**
+     * Records the current state of one vehicle, noting it as changed if it differs
+     * from the state last sent or was not in the last batch. Each vehicle should be
+     * recorded once per batch.
+     *
+     * @param theIndex the index of the vehicle
+     * @param theType the VehicleType ordinal of the vehicle, or -1 if it has none
+     * @param theX the x position of the vehicle
+     * @param theY the y position of the vehicle
+     * @param theDirection the direction ordinal of the vehicle
+     * @param theAlive whether the vehicle is alive
+     */
+    void record(final int theIndex, final int theType, final int theX, final int theY,
+                final int theDirection, final boolean theAlive) {
+        final boolean added = myFull || theIndex >= myVehicleCount;
+        if (added || myTypes[theIndex] != theType || myX[theIndex] != theX
+            || myY[theIndex] != theY || myDirection[theIndex] != theDirection
+            || myAlive[theIndex] != theAlive) {
+            myChanged[myChangeCount] = theIndex;
+            if (added) {
+                myOldX[myChangeCount] = theX;
+                myOldY[myChangeCount] = theY;
+            } else {
+                myOldX[myChangeCount] = myX[theIndex];
+                myOldY[myChangeCount] = myY[theIndex];
+            }
+            myChangeCount++;
+            myTypes[theIndex] = (byte) theType;
+            myX[theIndex] = theX;
+            myY[theIndex] = theY;
+            myDirection[theIndex] = (byte) theDirection;
+            myAlive[theIndex] = theAlive;
+        }
+    }
+
+    /**
+     * Returns the batch of vehicles recorded as changed, and starts a new batch.
+     *
+     * @param theVehicleCount the number of vehicles in the simulation
+     * @return the batch, with arrays just large enough for its changes
+     */
+    VehicleDelta finish(final int theVehicleCount) {
+        final int size = myChangeCount;
+        final int[] index = Arrays.copyOf(myChanged, size);
+        final int[] x = new int[size];
+        final int[] y = new int[size];
+        final byte[] direction = new byte[size];
+        final boolean[] alive = new boolean[size];
+        final byte[] type = new byte[size];
+        for (int k = 0; k < size; k++) {
+            final int i = index[k];
+            x[k] = myX[i];
+            y[k] = myY[i];
+            direction[k] = myDirection[i];
+            alive[k] = myAlive[i];
+            type[k] = myTypes[i];
+        }
+        final VehicleDelta result = new VehicleDelta(theVehicleCount, myFull, index,
+                                                     Arrays.copyOf(myOldX, size),
+                                                     Arrays.copyOf(myOldY, size), x, y,
+                                                     direction, alive, type);
+        myChangeCount = 0;
+        myFull = false;
+        myVehicleCount = theVehicleCount;
+        return result;
+    }
+}
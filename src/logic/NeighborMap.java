@@ -0,0 +1,70 @@
+package logic;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import model.Direction;
+import model.Terrain;
+
+/**
+ * A read-only neighbors map backed by one slot per Direction. Directions that lead
+ * off the map have an empty slot and are not keys of the map. Instances are shared
+ * between every square with the same surroundings, see NeighborTable.
+ */
+final class NeighborMap extends AbstractMap<Direction, Terrain> {
+
+    /**
+     * The neighboring Terrain for each Direction, indexed by ordinal.
+     */
+    private final Terrain[] mySlots;
+
+    /**
+     * The entries of this map, built once.
+     */
+    private final Set<Map.Entry<Direction, Terrain>> myEntries;
+
+    /**
+     * Creates a neighbors map.
+     *
+     * @param theSlots the neighboring Terrain for each Direction, indexed by ordinal,
+     *                 with null for directions that lead off the map
+     */
+    NeighborMap(final Terrain... theSlots) {
+        super();
+        mySlots = theSlots.clone();
+        final Set<Map.Entry<Direction, Terrain>> entries = new LinkedHashSet<>();
+        for (final Direction dir : Direction.values()) {
+            if (mySlots[dir.ordinal()] != null) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(dir,
+                                                                   mySlots[dir.ordinal()]));
+            }
+        }
+        myEntries = Collections.unmodifiableSet(entries);
+    }
+
+    @Override
+    public Terrain get(final Object theKey) {
+        Terrain result = null;
+        if (theKey instanceof Direction) {
+            result = mySlots[((Direction) theKey).ordinal()];
+        }
+        return result;
+    }
+
+    @Override
+    public boolean containsKey(final Object theKey) {
+        return get(theKey) != null;
+    }
+
+    @Override
+    public int size() {
+        return myEntries.size();
+    }
+
+    @Override
+    public Set<Map.Entry<Direction, Terrain>> entrySet() {
+        return myEntries;
+    }
+}
@@ -0,0 +1,254 @@
+package logic;
+
+import java.util.Map;
+import model.Direction;
+import model.Terrain;
+
+/**
+ * The neighbors map of every square of a Terrain grid, computed once. A square is
+ * stored as a short code describing its four neighbors, and every code maps to a
+ * single shared NeighborMap, so looking up neighbors never allocates. For maps too
+ * large to hold a code per square, the codes are instead computed on every lookup.
+ */
+final class NeighborTable {
+
+    /**
+     * The code digit for a neighbor that is off the map.
+     */
+    static final int OFF_MAP = Terrain.values().length;
+
+    /**
+     * The number of values a single code digit can take.
+     */
+    private static final int RADIX = OFF_MAP + 1;
+
+    /**
+     * The number of digits in a code, one per Direction.
+     */
+    private static final int DIGITS_PER_CODE = Direction.values().length;
+
+    /**
+     * Every digit of every possible code, DIGITS_PER_CODE entries per code.
+     */
+    private static final byte[] DIGITS = createDigits();
+
+    /**
+     * One shared neighbors map for every possible code.
+     */
+    private static final NeighborMap[] FLYWEIGHTS = createFlyweights();
+
+    /**
+     * The width of the grid.
+     */
+    private final int myWidth;
+
+    /**
+     * The height of the grid.
+     */
+    private final int myHeight;
+
+    /**
+     * The neighbors code of each square, in row major order, or null to compute the
+     * codes on every lookup.
+     */
+    private final short[] myCodes;
+
+    /**
+     * The map the codes are computed from on every lookup, or null.
+     */
+    private final TerrainMap myMap;
+
+    /**
+     * Computes the neighbors of every square of the grid.
+     *
+     * @param theGrid the packed grid that defines the map
+     */
+    NeighborTable(final TerrainGrid theGrid) {
+        myHeight = theGrid.getHeight();
+        myWidth = theGrid.getWidth();
+        myCodes = new short[myWidth * myHeight];
+        for (int y = 0; y < myHeight; y++) {
+            final int row = theGrid.indexOf(0, y);
+            for (int x = 0; x < myWidth; x++) {
+                myCodes[y * myWidth + x] = (short) codeOf(theGrid, row + x);
+            }
+        }
+        myMap = null;
+    }
+
+    /**
+     * Creates a table that computes the neighbors of a square every time they are
+     * looked up.
+     *
+     * @param theMap the map
+     * @param theHeight the height of the map
+     * @param theWidth the width of the map
+     */
+    private NeighborTable(final TerrainMap theMap, final int theHeight,
+                          final int theWidth) {
+        myHeight = theHeight;
+        myWidth = theWidth;
+        myCodes = null;
+        myMap = theMap;
+    }
+
+    /**
+     * Creates a table that holds nothing per square, but computes the neighbors of a
+     * square from the map every time they are looked up.
+     *
+     * @param theMap the map
+     * @return the table
+     */
+    static NeighborTable onDemand(final TerrainMap theMap) {
+        return new NeighborTable(theMap, theMap.getHeight(), theMap.getWidth());
+    }
+
+    /**
+     * Computes the neighbors code of a square on the grid, reading its neighbors at
+     * fixed offsets in the packed grid.
+     *
+     * @param theGrid the packed grid that defines the map
+     * @param theIndex the index of the square in the packed grid
+     * @return the neighbors code of the square
+     */
+    static int codeOf(final TerrainGrid theGrid, final int theIndex) {
+        int code = 0;
+        for (int d = DIGITS_PER_CODE - 1; d >= 0; d--) {
+            code = code * RADIX + theGrid.ordinalAt(theIndex + theGrid.offsetOf(d));
+        }
+        return code;
+    }
+
+    /**
+     * Computes the neighbors code of any square, on or off the map.
+     *
+     * @param theGrid the map
+     * @param theX the x position of the square
+     * @param theY the y position of the square
+     * @return the neighbors code of the square
+     */
+    static int codeOf(final TerrainMap theGrid, final int theX, final int theY) {
+        final Direction[] directions = Direction.values();
+        int code = 0;
+        for (int d = directions.length - 1; d >= 0; d--) {
+            final Terrain terrain = theGrid.get(theX + directions[d].dx(),
+                                                theY + directions[d].dy());
+            code = code * RADIX + (terrain == null ? OFF_MAP : terrain.ordinal());
+        }
+        return code;
+    }
+
+    /**
+     * Computes the neighbors code of a neighbors map.
+     *
+     * @param theNeighbors the neighbors map
+     * @return the neighbors code of the map
+     */
+    static int codeOf(final Map<Direction, Terrain> theNeighbors) {
+        final Direction[] directions = Direction.values();
+        int code = 0;
+        for (int d = directions.length - 1; d >= 0; d--) {
+            final Terrain terrain = theNeighbors.get(directions[d]);
+            code = code * RADIX + (terrain == null ? OFF_MAP : terrain.ordinal());
+        }
+        return code;
+    }
+
+    /**
+     * Returns one neighbor described by a neighbors code.
+     *
+     * @param theCode the neighbors code
+     * @param theDirection the ordinal of the Direction of the neighbor
+     * @return the ordinal of the neighboring Terrain, or OFF_MAP
+     */
+    static int neighbor(final int theCode, final int theDirection) {
+        return DIGITS[theCode * DIGITS_PER_CODE + theDirection];
+    }
+
+    /**
+     * Returns the neighbors code of a square.
+     *
+     * @param theX the x position of the square
+     * @param theY the y position of the square
+     * @return the neighbors code, or -1 if the square is not covered by this table
+     */
+    int code(final int theX, final int theY) {
+        int result = -1;
+        if (0 <= theX && theX < myWidth && 0 <= theY && theY < myHeight) {
+            result = codeAt(theX, theY);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the read-only neighbors map of a square.
+     *
+     * @param theX the x position of the square
+     * @param theY the y position of the square
+     * @return the neighbors map, or null if the square is not covered by this table
+     */
+    Map<Direction, Terrain> get(final int theX, final int theY) {
+        Map<Direction, Terrain> result = null;
+        if (0 <= theX && theX < myWidth && 0 <= theY && theY < myHeight) {
+            result = FLYWEIGHTS[codeAt(theX, theY)];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the neighbors code of a square on the map, from the table or the map.
+     *
+     * @param theX the x position of the square
+     * @param theY the y position of the square
+     * @return the neighbors code
+     */
+    private int codeAt(final int theX, final int theY) {
+        final int result;
+        if (myCodes == null) {
+            result = codeOf(myMap, theX, theY);
+        } else {
+            result = myCodes[theY * myWidth + theX];
+        }
+        return result;
+    }
+
+    /**
+     * Decodes the digits of every possible code.
+     *
+     * @return the digits, DIGITS_PER_CODE entries per code
+     */
+    private static byte[] createDigits() {
+        int count = 1;
+        for (int d = 0; d < DIGITS_PER_CODE; d++) {
+            count *= RADIX;
+        }
+        final byte[] result = new byte[count * DIGITS_PER_CODE];
+        for (int code = 0; code < count; code++) {
+            int rest = code;
+            for (int d = 0; d < DIGITS_PER_CODE; d++) {
+                result[code * DIGITS_PER_CODE + d] = (byte) (rest % RADIX);
+                rest /= RADIX;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Builds the shared neighbors map for every possible code.
+     *
+     * @return the neighbors maps, indexed by code
+     */
+    private static NeighborMap[] createFlyweights() {
+        final Terrain[] terrains = Terrain.values();
+        final NeighborMap[] result = new NeighborMap[DIGITS.length / DIGITS_PER_CODE];
+        final Terrain[] slots = new Terrain[DIGITS_PER_CODE];
+        for (int code = 0; code < result.length; code++) {
+            for (int d = 0; d < DIGITS_PER_CODE; d++) {
+                final int digit = neighbor(code, d);
+                slots[d] = digit == OFF_MAP ? null : terrains[digit];
+            }
+            result[code] = new NeighborMap(slots);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,321 @@
+package logic;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A spatial index of which vehicles occupy which square of the map. Each square
+ * holds a singly linked list of vehicle indices, stored in plain int arrays so that
+ * moving a vehicle never allocates. The vehicles in a square are always kept in
+ * ascending index order, which is the order a full scan of the vehicle list would
+ * visit them in.
+ *
+ * Vehicles outside of the map all share a single extra bucket, so callers must still
+ * compare coordinates when walking a bucket.
+ *
+ * The first vehicle of every square is kept in one array, except for maps kept in
+ * chunks and maps too large for one array. Those keep a table of first vehicles per
+ * chunk of TerrainChunks.CHUNK_SQUARES squares across, made when a vehicle first
+ * enters the chunk, so that the index grows with the squares vehicles reach rather
+ * than with the map.
+ */
+final class OccupancyIndex {
+
+    /**
+     * Marks the end of a bucket list.
+     */
+    static final int NONE = -1;
+
+    /**
+     * The bucket of the vehicles outside of the map.
+     */
+    private static final long OFF_MAP = -2;
+
+    /**
+     * The number of bits of a position within a chunk along each axis.
+     */
+    private static final int CHUNK_SHIFT =
+                    Integer.numberOfTrailingZeros(TerrainChunks.CHUNK_SQUARES);
+
+    /**
+     * The mask of a position within a chunk along each axis.
+     */
+    private static final int CHUNK_MASK = TerrainChunks.CHUNK_SQUARES - 1;
+
+    /**
+     * The number of bits of a bucket that give the square within its chunk.
+     */
+    private static final int SQUARE_BITS = 2 * CHUNK_SHIFT;
+
+    /**
+     * The mask of the bits of a bucket that give the square within its chunk.
+     */
+    private static final int SQUARE_MASK = (1 << SQUARE_BITS) - 1;
+
+    /**
+     * The width of the indexed map.
+     */
+    private final int myWidth;
+
+    /**
+     * The height of the indexed map.
+     */
+    private final int myHeight;
+
+    /**
+     * The first vehicle in each square, or null if the squares are kept by chunk.
+     */
+    private final int[] myHead;
+
+    /**
+     * The first vehicle in each square of each chunk, null for chunks no vehicle has
+     * entered, or null if the squares are kept in one array.
+     */
+    private final AtomicReferenceArray<int[]> myChunkHeads;
+
+    /**
+     * The number of chunks across the map.
+     */
+    private final int myColumns;
+
+    /**
+     * The first vehicle outside of the map.
+     */
+    private int myOffMapHead;
+
+    /**
+     * The next vehicle in the same bucket as each vehicle.
+     */
+    private final int[] myNext;
+
+    /**
+     * The bucket each vehicle is currently filed under, or NONE if not filed.
+     */
+    private final long[] myBucket;
+
+    /**
+     * Creates an empty index of a map.
+     *
+     * @param theMap the map
+     * @param theVehicleCount the number of vehicles that may be indexed
+     */
+    OccupancyIndex(final TerrainMap theMap, final int theVehicleCount) {
+        myWidth = theMap.getWidth();
+        myHeight = theMap.getHeight();
+        final long squares = (long) myWidth * myHeight;
+        if (theMap instanceof TerrainChunks || squares >= Integer.MAX_VALUE) {
+            myColumns = (int) (((long) myWidth + CHUNK_MASK) >> CHUNK_SHIFT);
+            final long chunks = myColumns * (((long) myHeight + CHUNK_MASK) >> CHUNK_SHIFT);
+            if (chunks > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("A map of " + myWidth + " by "
+                                                   + myHeight + " squares is too large!");
+            }
+            myHead = null;
+            myChunkHeads = new AtomicReferenceArray<>((int) chunks);
+        } else {
+            myColumns = 0;
+            myHead = new int[(int) squares];
+            myChunkHeads = null;
+        }
+        myNext = new int[theVehicleCount];
+        myBucket = new long[theVehicleCount];
+        clear();
+    }
+
+    /**
+     * Removes every vehicle from the index.
+     */
+    void clear() {
+        if (myHead == null) {
+            for (int c = 0; c < myChunkHeads.length(); c++) {
+                final int[] heads = myChunkHeads.get(c);
+                if (heads != null) {
+                    Arrays.fill(heads, NONE);
+                }
+            }
+        } else {
+            Arrays.fill(myHead, NONE);
+        }
+        myOffMapHead = NONE;
+        Arrays.fill(myNext, NONE);
+        Arrays.fill(myBucket, NONE);
+    }
+
+    /**
+     * Files the vehicle under the square at the given position, removing it from the
+     * square it was filed under before, if any.
+     *
+     * @param theVehicle the index of the vehicle
+     * @param theX the x position of the vehicle
+     * @param theY the y position of the vehicle
+     */
+    void move(final int theVehicle, final int theX, final int theY) {
+        final long bucket = bucketOf(theX, theY);
+        final long old = myBucket[theVehicle];
+        if (old == bucket) {
+            return;
+        }
+        if (old != NONE) {
+            unlink(theVehicle, old);
+        }
+        link(theVehicle, bucket);
+    }
+
+    /**
+     * Removes the vehicle from the square it is filed under, if any.
+     *
+     * @param theVehicle the index of the vehicle
+     */
+    void remove(final int theVehicle) {
+        final long old = myBucket[theVehicle];
+        if (old != NONE) {
+            unlink(theVehicle, old);
+        }
+    }
+
+    /**
+     * Returns the first vehicle filed under the square at the given position.
+     *
+     * @param theX the x position
+     * @param theY the y position
+     * @return the lowest vehicle index in that square, or NONE if it is empty
+     */
+    int first(final int theX, final int theY) {
+        return head(bucketOf(theX, theY));
+    }
+
+    /**
+     * Returns the vehicle filed after the given one in the same square.
+     *
+     * @param theVehicle the index of the vehicle
+     * @return the next vehicle index in that square, or NONE if there are no more
+     */
+    int next(final int theVehicle) {
+        return myNext[theVehicle];
+    }
+
+    /**
+     * Returns whether a position has its own square in this index.
+     *
+     * @param theX the x position
+     * @param theY the y position
+     * @return true if the position is on the map, false otherwise
+     */
+    boolean isOnMap(final int theX, final int theY) {
+        return 0 <= theX && theX < myWidth && 0 <= theY && theY < myHeight;
+    }
+
+    /**
+     * Maps a position to its bucket: the index of its square in the map, or the index
+     * of its chunk followed by the index of its square in the chunk.
+     *
+     * @param theX the x position
+     * @param theY the y position
+     * @return the bucket for that position
+     */
+    private long bucketOf(final int theX, final int theY) {
+        long result = OFF_MAP;
+        if (isOnMap(theX, theY)) {
+            if (myHead == null) {
+                final long chunk = (long) (theY >> CHUNK_SHIFT) * myColumns
+                                   + (theX >> CHUNK_SHIFT);
+                result = chunk << SQUARE_BITS | (theY & CHUNK_MASK) << CHUNK_SHIFT
+                         | (theX & CHUNK_MASK);
+            } else {
+                result = (long) theY * myWidth + theX;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the first vehicle in a bucket.
+     *
+     * @param theBucket the bucket
+     * @return the lowest vehicle index in the bucket, or NONE if it is empty
+     */
+    private int head(final long theBucket) {
+        int result = NONE;
+        if (theBucket == OFF_MAP) {
+            result = myOffMapHead;
+        } else if (myHead == null) {
+            final int[] heads = myChunkHeads.get((int) (theBucket >> SQUARE_BITS));
+            if (heads != null) {
+                result = heads[(int) theBucket & SQUARE_MASK];
+            }
+        } else {
+            result = myHead[(int) theBucket];
+        }
+        return result;
+    }
+
+    /**
+     * Sets the first vehicle in a bucket, making the table of its chunk if needed.
+     * Strips stepped in parallel may share a chunk, so a new table is only kept if
+     * no other strip made one first.
+     *
+     * @param theBucket the bucket
+     * @param theVehicle the lowest vehicle index in the bucket, or NONE if it is empty
+     */
+    private void setHead(final long theBucket, final int theVehicle) {
+        if (theBucket == OFF_MAP) {
+            myOffMapHead = theVehicle;
+        } else if (myHead == null) {
+            final int chunk = (int) (theBucket >> SQUARE_BITS);
+            int[] heads = myChunkHeads.get(chunk);
+            if (heads == null) {
+                final int[] made = new int[SQUARE_MASK + 1];
+                Arrays.fill(made, NONE);
+                myChunkHeads.compareAndSet(chunk, null, made);
+                heads = myChunkHeads.get(chunk);
+            }
+            heads[(int) theBucket & SQUARE_MASK] = theVehicle;
+        } else {
+            myHead[(int) theBucket] = theVehicle;
+        }
+    }
+
+    /**
+     * Inserts a vehicle into a bucket, keeping the bucket in ascending order.
+     *
+     * @param theVehicle the index of the vehicle
+     * @param theBucket the bucket
+     */
+    private void link(final int theVehicle, final long theBucket) {
+        int prev = NONE;
+        int cur = head(theBucket);
+        while (cur != NONE && cur < theVehicle) {
+            prev = cur;
+            cur = myNext[cur];
+        }
+        myNext[theVehicle] = cur;
+        if (prev == NONE) {
+            setHead(theBucket, theVehicle);
+        } else {
+            myNext[prev] = theVehicle;
+        }
+        myBucket[theVehicle] = theBucket;
+    }
+
+    /**
+     * Removes a vehicle from a bucket.
+     *
+     * @param theVehicle the index of the vehicle
+     * @param theBucket the bucket it is filed under
+     */
+    private void unlink(final int theVehicle, final long theBucket) {
+        int prev = NONE;
+        int cur = head(theBucket);
+        while (cur != theVehicle) {
+            prev = cur;
+            cur = myNext[cur];
+        }
+        if (prev == NONE) {
+            setHead(theBucket, myNext[theVehicle]);
+        } else {
+            myNext[prev] = myNext[theVehicle];
+        }
+        myNext[theVehicle] = NONE;
+        myBucket[theVehicle] = NONE;
+    }
+}
@@ -33,12 +33,29 @@ public interface PropertyChangeEnabledRoadRageControls extends RoadRageControls
     String PROPERTY_LIGHT = "light";
     
     /**
-     * A property name for the current vehicle state in the simulation.
+     * A property name for the current vehicle state in the simulation, as a list of every
+     * Vehicle. This is only sent after setVehicleListEvents(true).
      */
     String PROPERTY_VEHICLES = "vehicles";
     
     /**
-     * A property name for the current 2D grid of Terrains in the simulation.
+     * A property name for the vehicles whose state changed in the last tick, as a 
+     * VehicleDelta. The first batch after a listener is added or the simulation is reset
+     * lists every vehicle.
+     */
+    String PROPERTY_VEHICLE_DELTAS = "vehicle deltas";
+    
+    /**
+     * A property name for the state of the simulation at the end of each tick, as a 
+     * TickSnapshot holding the time step, the light and the vehicles that changed. 
+     * Listeners that follow the whole simulation should use this single event rather 
+     * than the separate time, light and vehicle events.
+     */
+    String PROPERTY_TICK = "tick";
+    
+    /**
+     * A property name for the Terrain of the simulation. The new value is a
+     * TerrainMap, which never changes.
      */
     String PROPERTY_GRID = "the terrain grid";
     
@@ -47,6 +64,24 @@ public interface PropertyChangeEnabledRoadRageControls extends RoadRageControls
      */
     String PROPERTY_TIME = "the time step";
     
+    /**
+     * Selects whether the full list of vehicles is sent as PROPERTY_VEHICLES after every
+     * change. This copies the whole fleet every tick, so it is off by default; listeners
+     * should prefer PROPERTY_VEHICLE_DELTAS.
+     * 
+     * @param theEnabled true to send the full list of vehicles
+     */
+    void setVehicleListEvents(boolean theEnabled);
+    
+    /**
+     * Returns the state of the simulation at the end of the last tick. It is safe to 
+     * read from any thread while the simulation runs; see WorldState for how to tell 
+     * whether a reader fell behind.
+     * 
+     * @return the state of the simulation at the end of the last tick
+     */
+    WorldState getWorldState();
+    
     /**
      * Add a PropertyChangeListener to the listener list. The listener is registered for 
      * all properties. The same listener object may be added more than once, and will be 
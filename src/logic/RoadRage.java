@@ -7,10 +7,14 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import model.Direction;
 import model.Light;
 import model.Terrain;
 import model.Vehicle;
+import model.VehicleType;
 
 /**
  * Implementation the behaviors of the RoadRage simulation. 
@@ -26,9 +30,14 @@ public class RoadRage implements PropertyChangeEnabledRoadRageControls {
     private static final int LIGHT_CHANGE_TICKS = 15;
     
     /**
-     * The terrain grid for the simulation.
+     * The number of vehicles below which a parallel task stops splitting.
      */
-    private final Terrain[][] myGrid;
+    private static final int PARALLEL_THRESHOLD = 1024;
+    
+    /**
+     * The terrain map for the simulation.
+     */
+    private final TerrainMap myGrid;
     
     /**
      * The current timestep of the simulation.
@@ -45,6 +54,82 @@ public class RoadRage implements PropertyChangeEnabledRoadRageControls {
      */
     private final List<Vehicle> myVehicles;
     
+    /**
+     * The VehicleType ordinal of each vehicle, or -1 if it is not one of the model
+     * classes.
+     */
+    private final byte[] myTypes;
+    
+    /**
+     * The neighbors map of every square, computed once from the grid.
+     */
+    private final NeighborTable myNeighbors;
+    
+    /**
+     * Which vehicles occupy which squares, used to find collisions.
+     */
+    private final OccupancyIndex myOccupancy;
+    
+    /**
+     * The x position each vehicle will move to this tick, in synchronous mode.
+     */
+    private final int[] myTargetX;
+    
+    /**
+     * The y position each vehicle will move to this tick, in synchronous mode.
+     */
+    private final int[] myTargetY;
+    
+    /**
+     * How vehicles are advanced each tick.
+     */
+    private TickMode myTickMode;
+    
+    /**
+     * The pool that chooses moves in synchronous mode.
+     */
+    private ForkJoinPool myPool;
+    
+    /**
+     * The strips of the map in partitioned mode, created on first use.
+     */
+    private StripPartition myPartition;
+    
+    /**
+     * The master seed the random stream of each vehicle is derived from.
+     */
+    private long mySeed;
+    
+    /**
+     * The number of collisions since the simulation was last reset.
+     */
+    private long myCollisions;
+    
+    /**
+     * Whether the full list of vehicles is sent after every change.
+     */
+    private boolean myVehicleListEvents;
+    
+    /**
+     * The vehicle state last sent to listeners, used to send only what changed.
+     */
+    private final DeltaTracker myDeltas;
+    
+    /**
+     * The two world states, filled in turn at the end of each tick.
+     */
+    private final WorldState[] myWorlds;
+    
+    /**
+     * The world state published at the end of the last tick.
+     */
+    private volatile WorldState myWorld;
+    
+    /**
+     * The index of the world state to fill next.
+     */
+    private int myNextWorld;
+    
     /**
      * Manager for Propery Change Listeners. 
      */
@@ -56,15 +141,149 @@ public class RoadRage implements PropertyChangeEnabledRoadRageControls {
      * @param theVehicles the Vehicles on the map
      */
     public RoadRage(final Terrain[][] theGrid, final List<Vehicle> theVehicles) {
+        this(new TerrainGrid(theGrid), theVehicles);
+    }
+    
+    /**
+     * Creates a simulation of a packed grid.
+     * 
+     * @param theGrid the packed grid that defines the map
+     * @param theVehicles the Vehicles on the map
+     */
+    private RoadRage(final TerrainGrid theGrid, final List<Vehicle> theVehicles) {
+        this(theGrid, new NeighborTable(theGrid), theVehicles);
+    }
+    
+    /**
+     * Creates a simulation of a map kept in chunks, which holds only the terrain around
+     * the vehicles in memory. Neighbors are read from the map on every move instead of
+     * from a table covering every square.
+     * 
+     * @param theTerrain the chunked terrain that defines the map
+     * @param theVehicles the Vehicles on the map
+     */
+    public RoadRage(final TerrainChunks theTerrain, final List<Vehicle> theVehicles) {
+        this(theTerrain, NeighborTable.onDemand(theTerrain), theVehicles);
+    }
+    
+    /**
+     * Creates a simulation that shares an already built grid and neighbor table, so
+     * that many simulations of the same map can be created cheaply.
+     * 
+     * @param theGrid the terrain that defines the map
+     * @param theNeighbors the neighbor table of the grid
+     * @param theVehicles the Vehicles on the map
+     */
+    RoadRage(final TerrainMap theGrid, final NeighborTable theNeighbors,
+             final List<Vehicle> theVehicles) {
         myVehicles = new ArrayList<Vehicle>(theVehicles);
-        myGrid = theGrid.clone();
+        myGrid = theGrid;
+        myNeighbors = theNeighbors;
+        myOccupancy = new OccupancyIndex(myGrid, myVehicles.size());
+        myTargetX = new int[myVehicles.size()];
+        myTargetY = new int[myVehicles.size()];
+        myTickMode = TickMode.SEQUENTIAL;
+        myPool = ForkJoinPool.commonPool();
         myPcs = new PropertyChangeSupport(this);            
+        myTypes = new byte[myVehicles.size()];
+        for (int i = 0; i < myTypes.length; i++) {
+            final VehicleType type = VehicleType.of(myVehicles.get(i));
+            myTypes[i] = (byte) (type == null ? -1 : type.ordinal());
+        }
+        myDeltas = new DeltaTracker(myTypes);
+        myWorlds = new WorldState[] {
+            new WorldState(myTypes, getWidth(), getHeight()),
+            new WorldState(myTypes, getWidth(), getHeight())};
+        seedVehicles(new SplittableRandom().nextLong());
+        publishWorld();
+    }
+    
+    /**
+     * Selects how vehicles are advanced each tick. The default is SEQUENTIAL.
+     * 
+     * @param theMode the tick mode
+     */
+    public void setTickMode(final TickMode theMode) {
+        if (theMode == null) {
+            throw new IllegalArgumentException("The tick mode must not be null");
+        }
+        myTickMode = theMode;
+        myPartition = null;
+    }
+    
+    /**
+     * Selects the pool used to choose moves in parallel in synchronous and partitioned
+     * mode. Partitioned mode uses one strip per thread of the pool. The default is the
+     * common pool.
+     * 
+     * @param thePool the pool
+     */
+    public void setPool(final ForkJoinPool thePool) {
+        if (thePool == null) {
+            throw new IllegalArgumentException("The pool must not be null");
+        }
+        myPool = thePool;
+        myPartition = null;
+    }
+    
+    /**
+     * Starts the random stream of every vehicle over from a master seed. Each vehicle
+     * gets its own stream, derived from the master seed and its index, so that
+     * parallel ticks do not share a random number generator and a run started from
+     * the same seed always replays the same way. A seed is chosen at random when the
+     * simulation is created.
+     * 
+     * @param theSeed the master seed
+     */
+    public void setSeed(final long theSeed) {
+        seedVehicles(theSeed);
+    }
+    
+    /**
+     * Returns the master seed the random stream of each vehicle is derived from.
+     * 
+     * @return the master seed
+     */
+    public long getSeed() {
+        return mySeed;
+    }
+    
+    @Override
+    public void setVehicleListEvents(final boolean theEnabled) {
+        myVehicleListEvents = theEnabled;
+    }
+    
+    @Override
+    public WorldState getWorldState() {
+        return myWorld;
     }
     
     @Override
     public void advance() {
-        for (final Vehicle v : myVehicles) {
-            final Map<Direction, Terrain> neighbors = generateNeighbors(v);
+        if (myTickMode == TickMode.PARTITIONED) {
+            advancePartitioned();
+        } else if (myTickMode == TickMode.SYNCHRONOUS) {
+            indexVehicles();
+            advanceSynchronous();
+        } else {
+            indexVehicles();
+            advanceSequential();
+        }
+        advanceTimeStep();
+        if (myTimestep % LIGHT_CHANGE_TICKS == 0) {
+            setLightColor(myLight.advance());
+        }
+        publishWorld();
+        fireTick();
+    }
+    
+    /**
+     * Moves each vehicle in turn and checks it for collisions right away.
+     */
+    private void advanceSequential() {
+        for (int i = 0; i < myVehicles.size(); i++) {
+            final Vehicle v = myVehicles.get(i);
+            final Map<Direction, Terrain> neighbors = neighborsOf(v);
 
             // move the vehicle
             if (v.isAlive()) {
@@ -72,34 +291,110 @@ public class RoadRage implements PropertyChangeEnabledRoadRageControls {
                 v.setDirection(newDirection);
 
                 // move one square in current direction, if it's okay to do so
-                if (v.canPass(neighbors.get(newDirection), myLight)) {
+                if (canPass(i, neighbors.get(newDirection))) {
                     v.setX(v.getX() + newDirection.dx());
                     v.setY(v.getY() + newDirection.dy());
+                    myOccupancy.move(i, v.getX(), v.getY());
                 }
             } else {
                 // become one move closer to revival
                 v.poke();
             }
 
-            // look for collisions
-            for (final Vehicle other : myVehicles) {
+            // look for collisions, only vehicles in the same square can collide
+            for (int j = myOccupancy.first(v.getX(), v.getY()); j != OccupancyIndex.NONE;
+                            j = myOccupancy.next(j)) {
+                final Vehicle other = myVehicles.get(j);
                 if (v.equals(other)) { // use of == is intentional - checking for same object
                     // don't collide with self
                     continue;
                 }
 
                 if (v.getX() == other.getX() && v.getY() == other.getY()) {
+                    // count the pair from its lower index, as the other may meet it too
+                    if (j > i && v.isAlive() && other.isAlive()) {
+                        myCollisions++;
+                    }
                     // tell both vehicles they have collided
                     v.collide(other);
                     other.collide(v);
                 }
             }
         }
-        advanceTimeStep();
-        if (myTimestep % LIGHT_CHANGE_TICKS == 0) {
-            setLightColor(myLight.advance());
+    }
+    
+    /**
+     * Lets every vehicle choose its move in parallel, then commits the moves and
+     * resolves collisions in list order. Each pair of vehicles that share a square is
+     * told about the collision once.
+     */
+    private void advanceSynchronous() {
+        myPool.invoke(new ChooseTask(0, myVehicles.size()));
+
+        for (int i = 0; i < myVehicles.size(); i++) {
+            final Vehicle v = myVehicles.get(i);
+            if (v.isAlive()) {
+                v.setX(myTargetX[i]);
+                v.setY(myTargetY[i]);
+                myOccupancy.move(i, myTargetX[i], myTargetY[i]);
+            } else {
+                // become one move closer to revival
+                v.poke();
+            }
+        }
+
+        for (int i = 0; i < myVehicles.size(); i++) {
+            final Vehicle v = myVehicles.get(i);
+            for (int j = myOccupancy.next(i); j != OccupancyIndex.NONE;
+                            j = myOccupancy.next(j)) {
+                final Vehicle other = myVehicles.get(j);
+                if (!v.equals(other) && v.getX() == other.getX()
+                    && v.getY() == other.getY()) {
+                    if (v.isAlive() && other.isAlive()) {
+                        myCollisions++;
+                    }
+                    v.collide(other);
+                    other.collide(v);
+                }
+            }
         }
-        fireVehicleChange();
+    }
+    
+    /**
+     * Steps the strips of the map in parallel. The occupancy index and the strips are
+     * kept up to date as vehicles move, so no full pass over the vehicles is needed.
+     */
+    private void advancePartitioned() {
+        if (myPartition == null) {
+            myPartition = new StripPartition(getHeight(), myPool.getParallelism(),
+                                             myVehicles, myOccupancy, myTargetX, myTargetY,
+                                             this::chooseMove);
+        }
+        myPartition.advance(myPool);
+        myCollisions += myPartition.takeCollisions();
+    }
+    
+    /**
+     * Chooses the direction and target square of one living vehicle, without moving
+     * it. Dead vehicles stay where they are.
+     * 
+     * @param theIndex the index of the vehicle
+     */
+    private void chooseMove(final int theIndex) {
+        final Vehicle v = myVehicles.get(theIndex);
+        int x = v.getX();
+        int y = v.getY();
+        if (v.isAlive()) {
+            final Map<Direction, Terrain> neighbors = neighborsOf(v);
+            final Direction newDirection = v.chooseDirection(neighbors);
+            v.setDirection(newDirection);
+            if (canPass(theIndex, neighbors.get(newDirection))) {
+                x += newDirection.dx();
+                y += newDirection.dy();
+            }
+        }
+        myTargetX[theIndex] = x;
+        myTargetY[theIndex] = y;
     }
     
     @Override
@@ -110,26 +405,51 @@ public class RoadRage implements PropertyChangeEnabledRoadRageControls {
     @Override
     public void reset() {
         resetVehicles();
+        myPartition = null;
+        myCollisions = 0;
         setLightColor(Light.GREEN);
         setTimeStep(0);
         fireGridChange();
-        fireVehicleChange();
+        publishWorld();
+        myDeltas.reset();
+        fireTick();
+    }
+    
+    /**
+     * Returns the number of vehicles in the simulation.
+     * 
+     * @return the number of vehicles
+     */
+    public int getVehicleCount() {
+        return myVehicles.size();
+    }
+    
+    /**
+     * Returns the number of collisions since the simulation was last reset. Each pair
+     * of living vehicles told they share a square counts as one collision, each pair
+     * once per tick, in every tick mode.
+     * 
+     * @return the number of collisions
+     */
+    public long getCollisionCount() {
+        return myCollisions;
     }
     
     @Override
     public int getHeight() {
-        return myGrid.length;
+        return myGrid.getHeight();
     }
 
     @Override
     public int getWidth() {
-        return myGrid[0].length;
+        return myGrid.getWidth();
     }
     
  
     @Override
     public void addPropertyChangeListener(final PropertyChangeListener theListener) {
         myPcs.addPropertyChangeListener(theListener);
+        myDeltas.reset();
     }
     
 
@@ -142,7 +462,7 @@ public class RoadRage implements PropertyChangeEnabledRoadRageControls {
     public void addPropertyChangeListener(final String thePropertyName,
                                           final PropertyChangeListener theListener) {
         myPcs.addPropertyChangeListener(thePropertyName, theListener);
-        
+        myDeltas.reset();
     }
 
     @Override
@@ -153,17 +473,52 @@ public class RoadRage implements PropertyChangeEnabledRoadRageControls {
     }
     
     /**
-     * Tests whether the square at the given x/y position exists on the map.
+     * Returns whether a vehicle may move onto a terrain under the current light.
+     * Vehicles of the model classes answer with one bit test in the passability bits
+     * of their type; any other vehicle is asked through its own canPass.
+     * 
+     * @param theIndex the index of the vehicle
+     * @param theTerrain the terrain, or null for a square off the map
+     * @return whether the vehicle may move onto the terrain
+     */
+    private boolean canPass(final int theIndex, final Terrain theTerrain) {
+        final boolean result;
+        if (myTypes[theIndex] >= 0) {
+            final int terrain = theTerrain == null ? NeighborTable.OFF_MAP
+                                                   : theTerrain.ordinal();
+            result = VehicleKernels.canPass(myTypes[theIndex], terrain, myLight.ordinal());
+        } else {
+            result = myVehicles.get(theIndex).canPass(theTerrain, myLight);
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the read-only neighbors map for the specified vehicle. Squares on the map
+     * use the shared maps from the neighbor table. 
      * 
-     * @param theX The x position.
-     * @param theY The y position.
-     * @return true if the position exists on the map, false otherwise.
+     * @param theMover The vehicle.
+     * @return The neighbors map.
      */
-    private boolean isValidIndex(final int theY, final int theX) {
-        return 0 <= theY && theY < myGrid.length
-            && 0 <= theX && theX < myGrid[theY].length;
+    private Map<Direction, Terrain> neighborsOf(final Vehicle theMover) {
+        Map<Direction, Terrain> result = myNeighbors.get(theMover.getX(), theMover.getY());
+        if (result == null) {
+            result = generateNeighbors(theMover);
+        }
+        return result;
     }
     
+    /**
+     * Returns the read-only neighbors map the simulation gives the specified vehicle
+     * when it chooses a direction.
+     *
+     * @param theMover The vehicle.
+     * @return The neighbors map.
+     */
+    public Map<Direction, Terrain> getNeighbors(final Vehicle theMover) {
+        return neighborsOf(theMover);
+    }
+
     /**
      * Generates a read-only neighbors map for the specified vehicle.
      * 
@@ -176,8 +531,9 @@ public class RoadRage implements PropertyChangeEnabledRoadRageControls {
         final Map<Direction, Terrain> result = new HashMap<Direction, Terrain>();
 
         for (final Direction dir : Direction.values()) {
-            if (isValidIndex(y + dir.dy(), x + dir.dx())) {
-                result.put(dir, myGrid[y + dir.dy()][x + dir.dx()]);
+            final Terrain terrain = myGrid.get(x + dir.dx(), y + dir.dy());
+            if (terrain != null) {
+                result.put(dir, terrain);
             }
         }
         return Collections.unmodifiableMap(result);
@@ -213,17 +569,79 @@ public class RoadRage implements PropertyChangeEnabledRoadRageControls {
     }
     
     /**
-     * Inform PropertyChagneListeners of the current state of vehicles.
+     * Fills the world state not in use with the state of the simulation and publishes
+     * it, so that readers of the last one are not disturbed.
+     */
+    private void publishWorld() {
+        final WorldState next = myWorlds[myNextWorld];
+        next.beginWrite(myVehicles.size(), myTimestep, myLight);
+        for (int i = 0; i < myVehicles.size(); i++) {
+            final Vehicle v = myVehicles.get(i);
+            next.write(i, v.getX(), v.getY(), v.getDirection().ordinal(), v.isAlive());
+        }
+        next.endWrite();
+        myGrid.track(next);
+        myWorld = next;
+        myNextWorld = 1 - myNextWorld;
+    }
+    
+    /**
+     * Inform PropertyChagneListeners of the end of a tick: the vehicles that changed,
+     * the full list of vehicles if asked to, and a TickSnapshot of the whole tick.
      */
-    private void fireVehicleChange() {
-        myPcs.firePropertyChange(PROPERTY_VEHICLES, null, new ArrayList<>(myVehicles));
+    private void fireTick() {
+        VehicleDelta delta = null;
+        if (myPcs.hasListeners(PROPERTY_VEHICLE_DELTAS) || myPcs.hasListeners(PROPERTY_TICK)) {
+            for (int i = 0; i < myVehicles.size(); i++) {
+                final Vehicle v = myVehicles.get(i);
+                myDeltas.record(i, myTypes[i], v.getX(), v.getY(),
+                                v.getDirection().ordinal(), v.isAlive());
+            }
+            delta = myDeltas.finish(myVehicles.size());
+            if (delta.isFull() || delta.size() > 0) {
+                myPcs.firePropertyChange(PROPERTY_VEHICLE_DELTAS, null, delta);
+            }
+        } else {
+            // nobody has seen the vehicles, so the next listener needs all of them
+            myDeltas.reset();
+        }
+        if (myVehicleListEvents) {
+            myPcs.firePropertyChange(PROPERTY_VEHICLES, null, new ArrayList<>(myVehicles));
+        }
+        if (myPcs.hasListeners(PROPERTY_TICK)) {
+            myPcs.firePropertyChange(PROPERTY_TICK, null,
+                                     new TickSnapshot(myTimestep, myLight, delta, myWorld));
+        }
     }
     
     /**
-     * Inform PropertyChagneListeners of the current 2D Terrain grid state.
+     * Inform PropertyChagneListeners of the current Terrain map.
      */
     private void fireGridChange() {
-        myPcs.firePropertyChange(PROPERTY_GRID, null, myGrid.clone());
+        myPcs.firePropertyChange(PROPERTY_GRID, null, myGrid);
+    }
+    
+    /**
+     * Files every vehicle in the occupancy index under its current square. Vehicles
+     * that have not moved since the last call are left alone.
+     */
+    private void indexVehicles() {
+        for (int i = 0; i < myVehicles.size(); i++) {
+            final Vehicle v = myVehicles.get(i);
+            myOccupancy.move(i, v.getX(), v.getY());
+        }
+    }
+    
+    /**
+     * Gives every vehicle its own random stream derived from a master seed.
+     * 
+     * @param theSeed the master seed
+     */
+    private void seedVehicles(final long theSeed) {
+        mySeed = theSeed;
+        for (int i = 0; i < myVehicles.size(); i++) {
+            myVehicles.get(i).setSeed(VehicleKernels.seedOf(theSeed, i));
+        }
     }
     
     /**
@@ -235,4 +653,49 @@ public class RoadRage implements PropertyChangeEnabledRoadRageControls {
         }
     }
 
+    /**
+     * Chooses the moves of a range of vehicles, splitting the range across the pool.
+     */
+    private final class ChooseTask extends RecursiveAction {
+
+        /**
+         * The UID of this class (to avoid warnings).
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The first vehicle in the range.
+         */
+        private final int myFrom;
+
+        /**
+         * One past the last vehicle in the range.
+         */
+        private final int myTo;
+
+        /**
+         * Creates a task for a range of vehicles.
+         * 
+         * @param theFrom the first vehicle in the range
+         * @param theTo one past the last vehicle in the range
+         */
+        ChooseTask(final int theFrom, final int theTo) {
+            super();
+            myFrom = theFrom;
+            myTo = theTo;
+        }
+
+        @Override
+        protected void compute() {
+            if (myTo - myFrom <= PARALLEL_THRESHOLD) {
+                for (int i = myFrom; i < myTo; i++) {
+                    chooseMove(i);
+                }
+            } else {
+                final int middle = (myFrom + myTo) >>> 1;
+                invokeAll(new ChooseTask(myFrom, middle), new ChooseTask(middle, myTo));
+            }
+        }
+    }
+
 }
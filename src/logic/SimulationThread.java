@@ -0,0 +1,213 @@
+package logic;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a simulation on its own thread, so that a slow tick never holds up the thread
+ * that asks for it. Other threads control it by sending commands, which are passed
+ * through a lock-free queue and carried out in the order they were sent, between
+ * ticks. While started, the simulation advances at a set number of ticks per second,
+ * or as fast as it can in turbo mode.
+ *
+ * Listeners of the simulation are called on this thread. Readers that only want the
+ * newest tick should poll getWorldState() instead.
+ */
+public final class SimulationThread {
+
+    /**
+     * The tick rate that advances the simulation as fast as it can.
+     */
+    public static final int TURBO = 0;
+
+    /**
+     * The number of nanoseconds in a second.
+     */
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    /**
+     * The commands understood by the simulation thread.
+     */
+    public enum Command {
+
+        /**
+         * Starts advancing the simulation at the tick rate.
+         */
+        START,
+
+        /**
+         * Stops advancing the simulation.
+         */
+        STOP,
+
+        /**
+         * Advances the simulation by one tick.
+         */
+        STEP,
+
+        /**
+         * Stops advancing the simulation and resets it.
+         */
+        RESET
+    }
+
+    /**
+     * The simulation.
+     */
+    private final RoadRageControls mySimulation;
+
+    /**
+     * The commands not yet carried out.
+     */
+    private final Queue<Command> myCommands;
+
+    /**
+     * The thread that runs the simulation.
+     */
+    private final Thread myThread;
+
+    /**
+     * The nanoseconds between the starts of two ticks, or 0 in turbo mode.
+     */
+    private volatile long myPeriod;
+
+    /**
+     * Whether the simulation is advancing; only used by the simulation thread.
+     */
+    private boolean myRunning;
+
+    /**
+     * Creates a thread for a simulation. The thread is not started.
+     *
+     * @param theSimulation the simulation, which should only be used by this thread
+     *            once it is started
+     * @param theTicksPerSecond the initial tick rate, or TURBO
+     */
+    public SimulationThread(final RoadRageControls theSimulation,
+                            final int theTicksPerSecond) {
+        mySimulation = theSimulation;
+        myCommands = new ConcurrentLinkedQueue<>();
+        myThread = new Thread(this::run, "RoadRage simulation");
+        myThread.setDaemon(true);
+        setTicksPerSecond(theTicksPerSecond);
+    }
+
+    /**
+     * Starts the thread. The simulation does not advance until it is sent START or
+     * STEP.
+     */
+    public void start() {
+        myThread.start();
+    }
+
+    /**
+     * Stops the thread after the tick it is running, if any.
+     */
+    public void shutdown() {
+        myThread.interrupt();
+    }
+
+    /**
+     * Sends a command to the simulation thread. Never blocks.
+     *
+     * @param theCommand the command
+     */
+    public void send(final Command theCommand) {
+        if (theCommand == null) {
+            throw new IllegalArgumentException("The command must not be null");
+        }
+        myCommands.add(theCommand);
+        LockSupport.unpark(myThread);
+    }
+
+    /**
+     * Sets the number of ticks per second while the simulation is started.
+     *
+     * @param theTicksPerSecond the tick rate, or TURBO to advance as fast as possible
+     */
+    public void setTicksPerSecond(final int theTicksPerSecond) {
+        if (theTicksPerSecond < 0) {
+            throw new IllegalArgumentException("The tick rate must not be negative: "
+                                               + theTicksPerSecond);
+        }
+        if (theTicksPerSecond == TURBO) {
+            myPeriod = 0;
+        } else {
+            myPeriod = NANOS_PER_SECOND / theTicksPerSecond;
+        }
+        LockSupport.unpark(myThread);
+    }
+
+    /**
+     * Carries out commands and advances the simulation until interrupted.
+     */
+    private void run() {
+        long deadline = System.nanoTime();
+        while (!myThread.isInterrupted()) {
+            Command command = myCommands.poll();
+            while (command != null) {
+                if (command == Command.START && !myRunning) {
+                    deadline = System.nanoTime();
+                }
+                carryOut(command);
+                command = myCommands.poll();
+            }
+            if (myRunning) {
+                mySimulation.advance();
+                final long period = myPeriod;
+                if (period > 0) {
+                    deadline += period;
+                    final long now = System.nanoTime();
+                    if (now - deadline > period) {
+                        // too far behind to catch up, so do not try in a burst
+                        deadline = now;
+                    }
+                    waitUntil(deadline);
+                }
+            } else if (myCommands.isEmpty()) {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    /**
+     * Carries out one command.
+     *
+     * @param theCommand the command
+     */
+    private void carryOut(final Command theCommand) {
+        switch (theCommand) {
+            case START:
+                myRunning = true;
+                break;
+            case STOP:
+                myRunning = false;
+                break;
+            case STEP:
+                mySimulation.advance();
+                break;
+            case RESET:
+                myRunning = false;
+                mySimulation.reset();
+                break;
+            default:
+        }
+    }
+
+    /**
+     * Waits until a time, or until a command arrives, the tick rate changes or the
+     * thread is interrupted.
+     *
+     * @param theDeadline the time to wait for, as given by System.nanoTime()
+     */
+    private void waitUntil(final long theDeadline) {
+        final long period = myPeriod;
+        long left = theDeadline - System.nanoTime();
+        while (left > 0 && myCommands.isEmpty() && myPeriod == period
+               && !myThread.isInterrupted()) {
+            LockSupport.parkNanos(this, left);
+            left = theDeadline - System.nanoTime();
+        }
+    }
+}
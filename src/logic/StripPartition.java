@@ -0,0 +1,431 @@
+package logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import model.Vehicle;
+
+/**
+ * Splits the map into horizontal strips of rows for the PARTITIONED tick mode. Each
+ * strip owns the vehicles on its rows and is stepped by its own task. A vehicle that
+ * crosses into another strip is handed to that strip through its lock-free inbound
+ * queue. Vehicles off the map belong to the first strip.
+ *
+ * Every few ticks the strip boundaries are moved so that each strip costs about the
+ * same to step, using the time each strip actually took.
+ */
+final class StripPartition {
+
+    /**
+     * The number of ticks between rebalancing the strips.
+     */
+    private static final int REBALANCE_TICKS = 64;
+
+    /**
+     * The initial capacity of each strip's list of vehicles.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The vehicles of the simulation.
+     */
+    private final List<Vehicle> myVehicles;
+
+    /**
+     * The occupancy index of the simulation.
+     */
+    private final OccupancyIndex myOccupancy;
+
+    /**
+     * The x position each vehicle will move to this tick.
+     */
+    private final int[] myTargetX;
+
+    /**
+     * The y position each vehicle will move to this tick.
+     */
+    private final int[] myTargetY;
+
+    /**
+     * Chooses the direction and target square of one vehicle.
+     */
+    private final IntConsumer myChooser;
+
+    /**
+     * The height of the map.
+     */
+    private final int myHeight;
+
+    /**
+     * The first row of each strip, plus the height of the map at the end.
+     */
+    private final int[] myBounds;
+
+    /**
+     * The strip that owns each row.
+     */
+    private final int[] myStripOfRow;
+
+    /**
+     * The vehicles owned by each strip.
+     */
+    private final int[][] myOwned;
+
+    /**
+     * The number of vehicles owned by each strip.
+     */
+    private final int[] myOwnedCount;
+
+    /**
+     * The vehicles handed to each strip by its neighbors this tick.
+     */
+    private final List<Queue<Integer>> myInbound;
+
+    /**
+     * The nanoseconds each strip has spent stepping since the last rebalance.
+     */
+    private final long[] myCost;
+
+    /**
+     * The number of collisions each strip has resolved since they were last taken.
+     */
+    private final long[] myCollisions;
+
+    /**
+     * The number of ticks since the last rebalance.
+     */
+    private int myTicks;
+
+    /**
+     * Splits the map into strips of equal height and assigns every vehicle to one.
+     *
+     * @param theHeight the height of the map
+     * @param theStrips the number of strips, at most the height of the map
+     * @param theVehicles the vehicles of the simulation
+     * @param theOccupancy the occupancy index of the simulation
+     * @param theTargetX where chooser writes the target x position of each vehicle
+     * @param theTargetY where chooser writes the target y position of each vehicle
+     * @param theChooser chooses the direction and target square of one vehicle
+     */
+    StripPartition(final int theHeight, final int theStrips, final List<Vehicle> theVehicles,
+                   final OccupancyIndex theOccupancy, final int[] theTargetX,
+                   final int[] theTargetY, final IntConsumer theChooser) {
+        final int strips = Math.max(1, Math.min(theStrips, theHeight));
+        myHeight = theHeight;
+        myVehicles = theVehicles;
+        myOccupancy = theOccupancy;
+        myTargetX = theTargetX;
+        myTargetY = theTargetY;
+        myChooser = theChooser;
+        myBounds = new int[strips + 1];
+        myStripOfRow = new int[theHeight];
+        myOwned = new int[strips][INITIAL_CAPACITY];
+        myOwnedCount = new int[strips];
+        myInbound = new ArrayList<>(strips);
+        myCost = new long[strips];
+        myCollisions = new long[strips];
+        for (int s = 0; s < strips; s++) {
+            myBounds[s] = (int) ((long) theHeight * s / strips);
+            myInbound.add(new ConcurrentLinkedQueue<>());
+        }
+        myBounds[strips] = theHeight;
+        assign();
+    }
+
+    /**
+     * Advances every vehicle by one tick, with the same result as the synchronous tick
+     * mode of RoadRage.
+     *
+     * @param thePool the pool that steps the strips
+     */
+    void advance(final ForkJoinPool thePool) {
+        final int strips = myOwned.length;
+        final ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[strips];
+
+        // phase 1: choose and make every move, handing off vehicles that leave a strip
+        for (int s = 0; s < strips; s++) {
+            tasks[s] = new StripTask(s, true);
+        }
+        thePool.invoke(new AllTask(tasks));
+
+        // phase 2: take in handed off vehicles, poke the dead, resolve collisions
+        for (int s = 0; s < strips; s++) {
+            tasks[s] = new StripTask(s, false);
+        }
+        thePool.invoke(new AllTask(tasks));
+
+        myTicks++;
+        if (myTicks == REBALANCE_TICKS) {
+            rebalance();
+        }
+    }
+
+    /**
+     * Returns the number of collisions resolved since the last call.
+     *
+     * @return the number of collisions
+     */
+    long takeCollisions() {
+        long result = 0;
+        for (int s = 0; s < myCollisions.length; s++) {
+            result += myCollisions[s];
+        }
+        Arrays.fill(myCollisions, 0);
+        return result;
+    }
+
+    /**
+     * Chooses and makes the moves of the vehicles of one strip.
+     *
+     * @param theStrip the strip
+     */
+    private void move(final int theStrip) {
+        final int[] owned = myOwned[theStrip];
+        int kept = 0;
+        for (int k = 0; k < myOwnedCount[theStrip]; k++) {
+            final int i = owned[k];
+            final Vehicle v = myVehicles.get(i);
+            myChooser.accept(i);
+            if (v.isAlive()) {
+                v.setX(myTargetX[i]);
+                v.setY(myTargetY[i]);
+            }
+            final int strip = stripOf(v.getX(), v.getY());
+            if (strip == theStrip) {
+                myOccupancy.move(i, v.getX(), v.getY());
+                owned[kept] = i;
+                kept++;
+            } else {
+                myOccupancy.remove(i);
+                myInbound.get(strip).add(i);
+            }
+        }
+        myOwnedCount[theStrip] = kept;
+    }
+
+    /**
+     * Takes in the vehicles handed to one strip, pokes its dead vehicles and resolves
+     * the collisions in its squares.
+     *
+     * @param theStrip the strip
+     */
+    private void settle(final int theStrip) {
+        Integer arrival = myInbound.get(theStrip).poll();
+        while (arrival != null) {
+            final Vehicle v = myVehicles.get(arrival);
+            myOccupancy.move(arrival, v.getX(), v.getY());
+            add(theStrip, arrival);
+            arrival = myInbound.get(theStrip).poll();
+        }
+
+        final int[] owned = myOwned[theStrip];
+        for (int k = 0; k < myOwnedCount[theStrip]; k++) {
+            final Vehicle v = myVehicles.get(owned[k]);
+            if (!v.isAlive()) {
+                // become one move closer to revival
+                v.poke();
+            }
+        }
+
+        // each square is resolved once, by the strip owning the first vehicle in it
+        for (int k = 0; k < myOwnedCount[theStrip]; k++) {
+            final int i = owned[k];
+            final Vehicle v = myVehicles.get(i);
+            if (myOccupancy.first(v.getX(), v.getY()) == i) {
+                myCollisions[theStrip] += collideSquare(i);
+            }
+        }
+    }
+
+    /**
+     * Tells each pair of vehicles in a square about their collision once, in list
+     * order.
+     *
+     * @param theFirst the first vehicle in the square
+     * @return the number of collisions between living vehicles
+     */
+    private int collideSquare(final int theFirst) {
+        int result = 0;
+        for (int i = theFirst; i != OccupancyIndex.NONE; i = myOccupancy.next(i)) {
+            final Vehicle v = myVehicles.get(i);
+            for (int j = myOccupancy.next(i); j != OccupancyIndex.NONE;
+                            j = myOccupancy.next(j)) {
+                final Vehicle other = myVehicles.get(j);
+                if (!v.equals(other) && v.getX() == other.getX()
+                    && v.getY() == other.getY()) {
+                    if (v.isAlive() && other.isAlive()) {
+                        result++;
+                    }
+                    v.collide(other);
+                    other.collide(v);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Moves the strip boundaries so that each strip has about the same measured cost,
+     * then reassigns the vehicles.
+     */
+    private void rebalance() {
+        final int strips = myOwned.length;
+        final double[] rowCost = new double[myHeight];
+        double total = 0;
+        for (int s = 0; s < strips; s++) {
+            final double perVehicle = (double) myCost[s] / Math.max(1, myOwnedCount[s]);
+            for (int k = 0; k < myOwnedCount[s]; k++) {
+                final int y = myVehicles.get(myOwned[s][k]).getY();
+                if (0 <= y && y < myHeight) {
+                    rowCost[y] += perVehicle;
+                    total += perVehicle;
+                }
+            }
+        }
+
+        if (total > 0) {
+            double sum = 0;
+            int strip = 1;
+            for (int y = 0; y < myHeight - 1 && strip < strips; y++) {
+                sum += rowCost[y];
+                // end a strip once it has its share of the cost, or when the rows
+                // left are just enough to give every remaining strip one row
+                if (sum >= total * strip / strips || myHeight - (y + 1) == strips - strip) {
+                    myBounds[strip] = y + 1;
+                    strip++;
+                }
+            }
+        }
+
+        Arrays.fill(myCost, 0);
+        myTicks = 0;
+        assign();
+    }
+
+    /**
+     * Gives each row and each vehicle to the strip that covers it.
+     */
+    private void assign() {
+        for (int s = 0; s < myOwned.length; s++) {
+            for (int y = myBounds[s]; y < myBounds[s + 1]; y++) {
+                myStripOfRow[y] = s;
+            }
+            myOwnedCount[s] = 0;
+        }
+        for (int i = 0; i < myVehicles.size(); i++) {
+            final Vehicle v = myVehicles.get(i);
+            myOccupancy.move(i, v.getX(), v.getY());
+            add(stripOf(v.getX(), v.getY()), i);
+        }
+    }
+
+    /**
+     * Returns the strip that owns a position.
+     *
+     * @param theX the x position
+     * @param theY the y position
+     * @return the strip owning the row, or the first strip for positions off the map
+     */
+    private int stripOf(final int theX, final int theY) {
+        int result = 0;
+        if (0 <= theY && theY < myHeight && myOccupancy.isOnMap(theX, theY)) {
+            result = myStripOfRow[theY];
+        }
+        return result;
+    }
+
+    /**
+     * Adds a vehicle to the vehicles owned by a strip.
+     *
+     * @param theStrip the strip
+     * @param theVehicle the index of the vehicle
+     */
+    private void add(final int theStrip, final int theVehicle) {
+        if (myOwnedCount[theStrip] == myOwned[theStrip].length) {
+            myOwned[theStrip] = Arrays.copyOf(myOwned[theStrip], 2 * myOwnedCount[theStrip]);
+        }
+        myOwned[theStrip][myOwnedCount[theStrip]] = theVehicle;
+        myOwnedCount[theStrip]++;
+    }
+
+    /**
+     * Runs one phase of the tick for one strip and records how long it took.
+     */
+    private final class StripTask extends RecursiveAction {
+
+        /**
+         * The UID of this class (to avoid warnings).
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The strip to step.
+         */
+        private final int myStrip;
+
+        /**
+         * True to run the move phase, false to run the settle phase.
+         */
+        private final boolean myMovePhase;
+
+        /**
+         * Creates a task for one phase of one strip.
+         *
+         * @param theStrip the strip to step
+         * @param theMovePhase true to run the move phase, false to run the settle phase
+         */
+        StripTask(final int theStrip, final boolean theMovePhase) {
+            super();
+            myStrip = theStrip;
+            myMovePhase = theMovePhase;
+        }
+
+        @Override
+        protected void compute() {
+            final long start = System.nanoTime();
+            if (myMovePhase) {
+                move(myStrip);
+            } else {
+                settle(myStrip);
+            }
+            myCost[myStrip] += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Runs a set of tasks and waits for all of them.
+     */
+    private static final class AllTask extends RecursiveAction {
+
+        /**
+         * The UID of this class (to avoid warnings).
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The tasks to run.
+         */
+        private final ForkJoinTask<?>[] myTasks;
+
+        /**
+         * Creates a task that runs the given tasks.
+         *
+         * @param theTasks the tasks to run
+         */
+        AllTask(final ForkJoinTask<?>... theTasks) {
+            super();
+            myTasks = theTasks.clone();
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(myTasks);
+        }
+    }
+}
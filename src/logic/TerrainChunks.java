@@ -0,0 +1,498 @@
+package logic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import model.Terrain;
+
+/**
+ * A terrain map kept in square chunks of CHUNK_SQUARES squares across, read on demand
+ * from the letters of the map, usually memory mapped from a file, so that maps larger
+ * than the heap can be simulated. The letters are mapped a band of CHUNK_SQUARES rows
+ * at a time, so the map as a whole may be larger than one buffer can hold; only a
+ * band must fit, which limits the width of a map to Integer.MAX_VALUE /
+ * CHUNK_SQUARES squares.
+ *
+ * A chunk that is all one terrain, such as a field of GRASS, is never read: every
+ * square of it is answered from one shared Terrain. Other chunks are decoded into
+ * memory when first read, and once more than the capacity are held, chunks not read
+ * since the last sweep are dropped again, sweeping round the held chunks like the
+ * hand of a clock. Chunks with vehicles in them, as last told by track, are never
+ * dropped, so the capacity can be exceeded by those. The vehicles of only one
+ * simulation are tracked, so a map should not be shared between simulations.
+ *
+ * The map is safe to read from several threads. Reading a chunk that is held takes
+ * no lock, so the threads of a parallel tick do not wait on each other; only reading
+ * a chunk that is not held locks the map, while the chunk is decoded.
+ */
+public final class TerrainChunks implements TerrainMap {
+
+    /**
+     * The number of squares across and down a chunk.
+     */
+    public static final int CHUNK_SQUARES = 64;
+
+    /**
+     * The shift from a position to the chunk column or row of it.
+     */
+    private static final int CHUNK_SHIFT = Integer.numberOfTrailingZeros(CHUNK_SQUARES);
+
+    /**
+     * The mask from a position to the position within its chunk.
+     */
+    private static final int CHUNK_MASK = CHUNK_SQUARES - 1;
+
+    /**
+     * The terrain of a chunk that is not all one terrain.
+     */
+    private static final byte MIXED = -1;
+
+    /**
+     * The chunk of a vehicle that is off the map, or not yet tracked.
+     */
+    private static final int NO_CHUNK = -1;
+
+    /**
+     * The Terrain of each ordinal.
+     */
+    private static final Terrain[] TERRAINS = Terrain.values();
+
+    /**
+     * The letters of each band of CHUNK_SQUARES rows, row by row.
+     */
+    private final ByteBuffer[] myBands;
+
+    /**
+     * The width of the map.
+     */
+    private final int myWidth;
+
+    /**
+     * The height of the map.
+     */
+    private final int myHeight;
+
+    /**
+     * The number of columns of chunks.
+     */
+    private final int myColumns;
+
+    /**
+     * The largest number of chunks held in memory that have no vehicles.
+     */
+    private final int myCapacity;
+
+    /**
+     * The Terrain ordinal of each chunk that is all one terrain, or MIXED.
+     */
+    private final byte[] myUniform;
+
+    /**
+     * The Terrain ordinals of the squares of each chunk held in memory, or null. A
+     * chunk's squares never change once decoded, so they may be read without a lock.
+     */
+    private final AtomicReferenceArray<byte[]> myChunks;
+
+    /**
+     * Whether each held chunk has been read since the clock hand last passed it. It
+     * is set without a lock, so it is only a hint of which chunks are in use.
+     */
+    private final byte[] myReferenced;
+
+    /**
+     * The number of vehicles in each chunk.
+     */
+    private final int[] myPins;
+
+    /**
+     * The held chunks, in the first myResident places, in no order.
+     */
+    private int[] myHeld;
+
+    /**
+     * The place in myHeld the clock hand is at.
+     */
+    private int myHand;
+
+    /**
+     * The chunk each vehicle was in when last tracked, or NO_CHUNK.
+     */
+    private int[] myVehicleChunks;
+
+    /**
+     * The number of chunks held in memory.
+     */
+    private int myResident;
+
+    /**
+     * The number of times a chunk has been read from the letters.
+     */
+    private long myLoads;
+
+    /**
+     * Creates a map of the letters of its squares, finding the chunks that are all one
+     * terrain. The letters are read again whenever a chunk is, so they must not change.
+     *
+     * @param theLetters the letter of every square in row major order, from the
+     *            current position on
+     * @param theWidth the width of the map
+     * @param theHeight the height of the map
+     * @param theCapacity the largest number of chunks without vehicles to hold
+     * @throws IllegalArgumentException if the size or capacity is not positive, the map
+     *             is too wide, there are too few letters or a letter is not a Terrain
+     */
+    public TerrainChunks(final ByteBuffer theLetters, final int theWidth,
+                         final int theHeight, final int theCapacity) {
+        this(sliceBands(theLetters, theWidth, theHeight, theCapacity), theWidth,
+             theHeight, theCapacity);
+    }
+
+    /**
+     * Creates a map of the letters of its squares in a file, mapping them into memory
+     * a band at a time and finding the chunks that are all one terrain. The file may
+     * be larger than any one buffer, and is not read again once closed.
+     *
+     * @param theChannel the file
+     * @param theOffset the position in the file of the letter of the first square,
+     *            with the others following in row major order
+     * @param theWidth the width of the map
+     * @param theHeight the height of the map
+     * @param theCapacity the largest number of chunks without vehicles to hold
+     * @throws IOException if the file cannot be mapped, or is too short
+     * @throws IllegalArgumentException if the size or capacity is not positive, the map
+     *             is too wide or a letter is not a Terrain
+     */
+    public TerrainChunks(final FileChannel theChannel, final long theOffset,
+                         final int theWidth, final int theHeight, final int theCapacity)
+        throws IOException {
+        this(mapBands(theChannel, theOffset, theWidth, theHeight, theCapacity), theWidth,
+             theHeight, theCapacity);
+    }
+
+    /**
+     * Creates a map of the bands of letters of its squares, finding the chunks that
+     * are all one terrain.
+     *
+     * @param theBands the letters of each band of CHUNK_SQUARES rows
+     * @param theWidth the width of the map
+     * @param theHeight the height of the map
+     * @param theCapacity the largest number of chunks without vehicles to hold
+     * @throws IllegalArgumentException if a letter is not a Terrain
+     */
+    private TerrainChunks(final ByteBuffer[] theBands, final int theWidth,
+                          final int theHeight, final int theCapacity) {
+        myBands = theBands;
+        myWidth = theWidth;
+        myHeight = theHeight;
+        myCapacity = theCapacity;
+        myColumns = (theWidth + CHUNK_MASK) >> CHUNK_SHIFT;
+        final int chunks = myColumns * theBands.length;
+        myUniform = new byte[chunks];
+        myChunks = new AtomicReferenceArray<>(chunks);
+        myReferenced = new byte[chunks];
+        myPins = new int[chunks];
+        myHeld = new int[Math.min(chunks, theCapacity + 1)];
+        myVehicleChunks = new int[0];
+        findUniformChunks();
+    }
+
+    @Override
+    public int getWidth() {
+        return myWidth;
+    }
+
+    @Override
+    public int getHeight() {
+        return myHeight;
+    }
+
+    @Override
+    public Terrain get(final int theX, final int theY) {
+        Terrain result = null;
+        if (0 <= theX && theX < myWidth && 0 <= theY && theY < myHeight) {
+            final int chunk = chunkOf(theX, theY);
+            final int uniform = myUniform[chunk];
+            if (uniform == MIXED) {
+                byte[] squares = myChunks.get(chunk);
+                if (squares == null) {
+                    squares = load(chunk);
+                } else if (myReferenced[chunk] == 0) {
+                    myReferenced[chunk] = 1;
+                }
+                result = TERRAINS[squares[((theY & CHUNK_MASK) << CHUNK_SHIFT)
+                                          | (theX & CHUNK_MASK)]];
+            } else {
+                result = TERRAINS[uniform];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts the vehicles in each chunk, so that the chunks with vehicles are kept in
+     * memory.
+     *
+     * @param theWorld the state of the simulation
+     */
+    @Override
+    public synchronized void track(final WorldState theWorld) {
+        final int count = theWorld.getVehicleCount();
+        if (myVehicleChunks.length != count) {
+            for (final int chunk : myVehicleChunks) {
+                if (chunk != NO_CHUNK) {
+                    myPins[chunk]--;
+                }
+            }
+            myVehicleChunks = new int[count];
+            Arrays.fill(myVehicleChunks, NO_CHUNK);
+        }
+        for (int i = 0; i < count; i++) {
+            final int x = theWorld.getX(i);
+            final int y = theWorld.getY(i);
+            int chunk = NO_CHUNK;
+            if (0 <= x && x < myWidth && 0 <= y && y < myHeight) {
+                chunk = chunkOf(x, y);
+            }
+            if (chunk != myVehicleChunks[i]) {
+                if (myVehicleChunks[i] != NO_CHUNK) {
+                    myPins[myVehicleChunks[i]]--;
+                }
+                if (chunk != NO_CHUNK) {
+                    myPins[chunk]++;
+                }
+                myVehicleChunks[i] = chunk;
+            }
+        }
+        evict(NO_CHUNK);
+    }
+
+    /**
+     * Returns the number of chunks held in memory.
+     *
+     * @return the number of chunks
+     */
+    public synchronized int getResidentChunks() {
+        return myResident;
+    }
+
+    /**
+     * Returns the number of chunks that are all one terrain, which are never held.
+     *
+     * @return the number of chunks
+     */
+    public int getUniformChunks() {
+        int result = 0;
+        for (final byte uniform : myUniform) {
+            if (uniform != MIXED) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of times a chunk has been read from the letters, counting a
+     * chunk again each time it is read after being dropped.
+     *
+     * @return the number of reads
+     */
+    public synchronized long getLoadCount() {
+        return myLoads;
+    }
+
+    /**
+     * Reads a chunk that is not all one terrain and holds it, unless another thread
+     * has just done so.
+     *
+     * @param theChunk the chunk
+     * @return the Terrain ordinals of its squares, row by row
+     */
+    private synchronized byte[] load(final int theChunk) {
+        byte[] result = myChunks.get(theChunk);
+        if (result == null) {
+            result = read(theChunk);
+            myChunks.set(theChunk, result);
+            if (myResident == myHeld.length) {
+                myHeld = Arrays.copyOf(myHeld, myHeld.length * 2);
+            }
+            myHeld[myResident] = theChunk;
+            myResident++;
+            myLoads++;
+            evict(theChunk);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the squares of a chunk from the letters.
+     *
+     * @param theChunk the chunk
+     * @return the Terrain ordinals of its squares, row by row
+     */
+    private byte[] read(final int theChunk) {
+        final byte[] result = new byte[CHUNK_SQUARES * CHUNK_SQUARES];
+        final ByteBuffer band = myBands[theChunk / myColumns];
+        final int left = (theChunk % myColumns) << CHUNK_SHIFT;
+        final int right = Math.min(left + CHUNK_SQUARES, myWidth);
+        final int rows = band.limit() / myWidth;
+        for (int y = 0; y < rows; y++) {
+            final int row = y * myWidth;
+            for (int x = left; x < right; x++) {
+                result[(y << CHUNK_SHIFT) + x - left] =
+                    (byte) Terrain.forLetter(band.get(row + x) & 0xFF).ordinal();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drops chunks without vehicles until no more than the capacity are held, or
+     * only chunks with vehicles and the one being kept are left. The clock hand goes
+     * round the held chunks, dropping those not read since it last passed them and
+     * marking the others as not read.
+     *
+     * @param theKept a chunk not to drop, or NO_CHUNK to drop any
+     */
+    private void evict(final int theKept) {
+        // two turns of the hand reach every chunk that may be dropped
+        int steps = 2 * myResident;
+        while (myResident > myCapacity && steps > 0) {
+            if (myHand >= myResident) {
+                myHand = 0;
+            }
+            final int chunk = myHeld[myHand];
+            if (chunk == theKept || myPins[chunk] > 0) {
+                myHand++;
+                steps--;
+            } else if (myReferenced[chunk] != 0) {
+                myReferenced[chunk] = 0;
+                myHand++;
+                steps--;
+            } else {
+                myChunks.set(chunk, null);
+                myResident--;
+                myHeld[myHand] = myHeld[myResident];
+            }
+        }
+    }
+
+    /**
+     * Returns the chunk of a square on the map.
+     *
+     * @param theX the x position
+     * @param theY the y position
+     * @return the chunk
+     */
+    private int chunkOf(final int theX, final int theY) {
+        return (theY >> CHUNK_SHIFT) * myColumns + (theX >> CHUNK_SHIFT);
+    }
+
+    /**
+     * Reads every letter once, in order, checking that it is a Terrain and finding the
+     * chunks that are all one terrain.
+     *
+     * @throws IllegalArgumentException if a letter is not a Terrain
+     */
+    private void findUniformChunks() {
+        for (int y = 0; y < myHeight; y++) {
+            final ByteBuffer band = myBands[y >> CHUNK_SHIFT];
+            final int row = (y & CHUNK_MASK) * myWidth;
+            for (int x = 0; x < myWidth; x++) {
+                final int letter = band.get(row + x) & 0xFF;
+                final Terrain terrain = Terrain.forLetter(letter);
+                if (terrain == null) {
+                    throw new IllegalArgumentException("Unknown terrain " + letter + " at "
+                                                       + x + ", " + y);
+                }
+                final int chunk = chunkOf(x, y);
+                if ((x & CHUNK_MASK) == 0 && (y & CHUNK_MASK) == 0) {
+                    myUniform[chunk] = (byte) terrain.ordinal();
+                } else if (myUniform[chunk] != terrain.ordinal()) {
+                    myUniform[chunk] = MIXED;
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits the letters of a map into bands of CHUNK_SQUARES rows.
+     *
+     * @param theLetters the letter of every square in row major order, from the
+     *            current position on
+     * @param theWidth the width of the map
+     * @param theHeight the height of the map
+     * @param theCapacity the largest number of chunks without vehicles to hold
+     * @return the letters of each band
+     * @throws IllegalArgumentException if the size or capacity is not positive, the map
+     *             is too wide or there are too few letters
+     */
+    private static ByteBuffer[] sliceBands(final ByteBuffer theLetters, final int theWidth,
+                                           final int theHeight, final int theCapacity) {
+        checkSize(theWidth, theHeight, theCapacity);
+        if (theLetters.remaining() < (long) theWidth * theHeight) {
+            throw new IllegalArgumentException("Too few squares for " + theWidth + " x "
+                                               + theHeight);
+        }
+        final ByteBuffer[] result = new ByteBuffer[(theHeight + CHUNK_MASK) >> CHUNK_SHIFT];
+        for (int band = 0; band < result.length; band++) {
+            final int top = band << CHUNK_SHIFT;
+            final int rows = Math.min(CHUNK_SQUARES, theHeight - top);
+            result[band] = theLetters.slice(theLetters.position() + top * theWidth,
+                                            rows * theWidth);
+        }
+        return result;
+    }
+
+    /**
+     * Maps the letters of a map in a file into memory, a band of CHUNK_SQUARES rows at
+     * a time.
+     *
+     * @param theChannel the file
+     * @param theOffset the position in the file of the letter of the first square
+     * @param theWidth the width of the map
+     * @param theHeight the height of the map
+     * @param theCapacity the largest number of chunks without vehicles to hold
+     * @return the letters of each band
+     * @throws IOException if the file cannot be mapped, or is too short
+     * @throws IllegalArgumentException if the size or capacity is not positive or the
+     *             map is too wide
+     */
+    private static ByteBuffer[] mapBands(final FileChannel theChannel, final long theOffset,
+                                         final int theWidth, final int theHeight,
+                                         final int theCapacity) throws IOException {
+        checkSize(theWidth, theHeight, theCapacity);
+        if (theChannel.size() - theOffset < (long) theWidth * theHeight) {
+            throw new IOException("Too few squares for " + theWidth + " x " + theHeight);
+        }
+        final ByteBuffer[] result = new ByteBuffer[(theHeight + CHUNK_MASK) >> CHUNK_SHIFT];
+        for (int band = 0; band < result.length; band++) {
+            final long top = (long) band << CHUNK_SHIFT;
+            final long rows = Math.min(CHUNK_SQUARES, theHeight - top);
+            result[band] = theChannel.map(FileChannel.MapMode.READ_ONLY,
+                                          theOffset + top * theWidth, rows * theWidth);
+        }
+        return result;
+    }
+
+    /**
+     * Checks the size and capacity of a map.
+     *
+     * @param theWidth the width of the map
+     * @param theHeight the height of the map
+     * @param theCapacity the largest number of chunks without vehicles to hold
+     * @throws IllegalArgumentException if the size or capacity is not positive, or a
+     *             band of rows is too large for one buffer
+     */
+    private static void checkSize(final int theWidth, final int theHeight,
+                                  final int theCapacity) {
+        if (theWidth <= 0 || theHeight <= 0 || theCapacity <= 0) {
+            throw new IllegalArgumentException("Bad size " + theWidth + " x " + theHeight
+                                               + " or capacity " + theCapacity);
+        }
+        if ((long) theWidth * CHUNK_SQUARES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The map is too wide: " + theWidth);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package logic;
+
+import java.util.Arrays;
+import model.Direction;
+import model.Terrain;
+
+/**
+ * A terrain grid packed into one flat byte array, one Terrain ordinal per square in
+ * row major order, with a ring of OFF_MAP squares around the map. A square and its
+ * neighbors are found by index: the neighbor in a direction is a fixed offset away,
+ * and the ring means a square on the map always has all four neighbors, so reading
+ * them needs no bounds checks.
+ *
+ * The Terrain[][] form of the grid is only built if asked for.
+ */
+public final class TerrainGrid implements TerrainMap {
+
+    /**
+     * The value stored for the squares around the map.
+     */
+    public static final int OFF_MAP = NeighborTable.OFF_MAP;
+
+    /**
+     * The Terrain of each stored value, with null for OFF_MAP.
+     */
+    private static final Terrain[] TERRAINS = new Terrain[OFF_MAP + 1];
+
+    static {
+        System.arraycopy(Terrain.values(), 0, TERRAINS, 0, OFF_MAP);
+    }
+
+    /**
+     * The width of the map.
+     */
+    private final int myWidth;
+
+    /**
+     * The height of the map.
+     */
+    private final int myHeight;
+
+    /**
+     * The distance in the array from a square to the square below it.
+     */
+    private final int myStride;
+
+    /**
+     * The Terrain ordinal of every square, ring included.
+     */
+    private final byte[] mySquares;
+
+    /**
+     * The distance in the array from a square to its neighbor, by Direction ordinal.
+     */
+    private final int[] myOffsets;
+
+    /**
+     * The grid as a 2D array, or null until it is asked for.
+     */
+    private volatile Terrain[][] myArray;
+
+    /**
+     * Packs a grid.
+     *
+     * @param theGrid the 2D grid of Terrain that defines the map, with at least one
+     *            square, all rows the same length and no null squares
+     */
+    public TerrainGrid(final Terrain[][] theGrid) {
+        myHeight = theGrid.length;
+        myWidth = theGrid[0].length;
+        myStride = myWidth + 2;
+        mySquares = new byte[myStride * (myHeight + 2)];
+        Arrays.fill(mySquares, (byte) OFF_MAP);
+        for (int y = 0; y < myHeight; y++) {
+            final int row = indexOf(0, y);
+            for (int x = 0; x < myWidth; x++) {
+                mySquares[row + x] = (byte) theGrid[y][x].ordinal();
+            }
+        }
+        final Direction[] directions = Direction.values();
+        myOffsets = new int[directions.length];
+        for (final Direction direction : directions) {
+            myOffsets[direction.ordinal()] = direction.dy() * myStride + direction.dx();
+        }
+    }
+
+    /**
+     * Returns the width of the map.
+     *
+     * @return the number of columns
+     */
+    @Override
+    public int getWidth() {
+        return myWidth;
+    }
+
+    /**
+     * Returns the height of the map.
+     *
+     * @return the number of rows
+     */
+    @Override
+    public int getHeight() {
+        return myHeight;
+    }
+
+    /**
+     * Returns the index of a square on the map or in the ring around it. Positions
+     * further off the map have no index.
+     *
+     * @param theX the x position, from -1 to the width
+     * @param theY the y position, from -1 to the height
+     * @return the index of the square
+     */
+    public int indexOf(final int theX, final int theY) {
+        return (theY + 1) * myStride + theX + 1;
+    }
+
+    /**
+     * Returns the distance from the index of a square to the index of its neighbor.
+     *
+     * @param theDirection the direction of the neighbor
+     * @return the offset to add to the index of a square
+     */
+    public int offsetOf(final Direction theDirection) {
+        return myOffsets[theDirection.ordinal()];
+    }
+
+    /**
+     * Returns the Terrain of the square at an index.
+     *
+     * @param theIndex the index of a square on the map or in the ring
+     * @return the Terrain, or null if the square is off the map
+     */
+    public Terrain terrainAt(final int theIndex) {
+        return TERRAINS[mySquares[theIndex]];
+    }
+
+    /**
+     * Returns the Terrain of the square at any position.
+     *
+     * @param theX the x position
+     * @param theY the y position
+     * @return the Terrain, or null if the position is off the map
+     */
+    @Override
+    public Terrain get(final int theX, final int theY) {
+        Terrain result = null;
+        if (isOnMap(theX, theY)) {
+            result = terrainAt(indexOf(theX, theY));
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether a position is on the map.
+     *
+     * @param theX the x position
+     * @param theY the y position
+     * @return true if the position is on the map, false otherwise
+     */
+    public boolean isOnMap(final int theX, final int theY) {
+        return 0 <= theX && theX < myWidth && 0 <= theY && theY < myHeight;
+    }
+
+    /**
+     * Returns the grid as a 2D array, building it the first time. The array is shared
+     * and must not be changed.
+     *
+     * @return the 2D grid of Terrain
+     */
+    public Terrain[][] toArray() {
+        Terrain[][] result = myArray;
+        if (result == null) {
+            result = new Terrain[myHeight][myWidth];
+            for (int y = 0; y < myHeight; y++) {
+                final int row = indexOf(0, y);
+                for (int x = 0; x < myWidth; x++) {
+                    result[y][x] = TERRAINS[mySquares[row + x]];
+                }
+            }
+            myArray = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the Terrain ordinal of the square at an index.
+     *
+     * @param theIndex the index of a square on the map or in the ring
+     * @return the ordinal, or OFF_MAP
+     */
+    int ordinalAt(final int theIndex) {
+        return mySquares[theIndex];
+    }
+
+    /**
+     * Returns the distance from the index of a square to the index of its neighbor.
+     *
+     * @param theDirection the ordinal of the direction of the neighbor
+     * @return the offset to add to the index of a square
+     */
+    int offsetOf(final int theDirection) {
+        return myOffsets[theDirection];
+    }
+}
@@ -0,0 +1,44 @@
+package logic;
+
+import model.Terrain;
+
+/**
+ * The terrain of a map, read one square at a time. The terrain never changes, so a
+ * map can be shared by any number of simulations and views.
+ */
+public interface TerrainMap {
+
+    /**
+     * Returns the width of the map.
+     *
+     * @return the number of columns
+     */
+    int getWidth();
+
+    /**
+     * Returns the height of the map.
+     *
+     * @return the number of rows
+     */
+    int getHeight();
+
+    /**
+     * Returns the Terrain of the square at any position.
+     *
+     * @param theX the x position
+     * @param theY the y position
+     * @return the Terrain, or null if the position is off the map
+     */
+    Terrain get(int theX, int theY);
+
+    /**
+     * Tells the map where the vehicles are after a tick. A map that keeps only part of
+     * its terrain in memory keeps the parts under vehicles, which are the parts the
+     * next tick reads. Other maps ignore it.
+     *
+     * @param theWorld the state of the simulation
+     */
+    default void track(final WorldState theWorld) {
+        // nothing to do
+    }
+}
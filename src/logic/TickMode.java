@@ -0,0 +1,28 @@
+package logic;
+
+/**
+ * An enumeration of the ways RoadRage can advance its vehicles by one tick.
+ */
+public enum TickMode {
+
+    /**
+     * Vehicles move one at a time in list order, and each move is visible to the
+     * vehicles after it. This is the original behavior of the simulation.
+     */
+    SEQUENTIAL,
+
+    /**
+     * Every vehicle chooses its move from the state at the start of the tick, in
+     * parallel. The moves are then committed together and collisions are resolved in
+     * list order, so the result does not depend on the number of threads.
+     */
+    SYNCHRONOUS,
+
+    /**
+     * Gives the same result as SYNCHRONOUS, but splits the map into strips of rows
+     * that are stepped by separate tasks, handing vehicles between strips as they
+     * cross. The strips are rebalanced from their measured cost as traffic moves.
+     * Vehicles must only be moved by the simulation while in this mode.
+     */
+    PARTITIONED
+}
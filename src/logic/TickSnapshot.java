@@ -0,0 +1,86 @@
+package logic;
+
+import model.Light;
+
+/**
+ * The state of the simulation at the end of one tick: its time step, the color of the
+ * lights and the vehicles that changed. Sent as a single PROPERTY_TICK event so that
+ * listeners can update once per tick.
+ */
+public final class TickSnapshot {
+
+    /**
+     * The time step of the simulation.
+     */
+    private final long myTimestep;
+
+    /**
+     * The color of the lights.
+     */
+    private final Light myLight;
+
+    /**
+     * The vehicles that changed during the tick.
+     */
+    private final VehicleDelta myVehicles;
+
+    /**
+     * The state of the whole simulation at the end of the tick.
+     */
+    private final WorldState myWorld;
+
+    /**
+     * Creates a snapshot of one tick.
+     *
+     * @param theTimestep the time step of the simulation
+     * @param theLight the color of the lights
+     * @param theVehicles the vehicles that changed during the tick
+     * @param theWorld the state of the whole simulation at the end of the tick
+     */
+    TickSnapshot(final long theTimestep, final Light theLight,
+                 final VehicleDelta theVehicles, final WorldState theWorld) {
+        myTimestep = theTimestep;
+        myLight = theLight;
+        myVehicles = theVehicles;
+        myWorld = theWorld;
+    }
+
+    /**
+     * Returns the time step of the simulation.
+     *
+     * @return the time step
+     */
+    public long getTimestep() {
+        return myTimestep;
+    }
+
+    /**
+     * Returns the color of the lights.
+     *
+     * @return the color of the lights
+     */
+    public Light getLight() {
+        return myLight;
+    }
+
+    /**
+     * Returns the vehicles that changed during the tick. Like PROPERTY_VEHICLE_DELTAS,
+     * the first snapshot after a reset or after a listener is added lists every
+     * vehicle.
+     *
+     * @return the vehicles that changed
+     */
+    public VehicleDelta getVehicles() {
+        return myVehicles;
+    }
+
+    /**
+     * Returns the state of the whole simulation at the end of the tick. Unlike the
+     * other values of the snapshot, it is reused two ticks later; see WorldState.
+     *
+     * @return the state of the simulation
+     */
+    public WorldState getWorld() {
+        return myWorld;
+    }
+}
@@ -0,0 +1,217 @@
+package logic;
+
+import model.Direction;
+import model.VehicleType;
+
+/**
+ * A batch of the vehicles whose position, direction or health changed in one tick,
+ * stored as parallel primitive arrays. Vehicles are identified by their index in the
+ * simulation. A full batch lists every vehicle, and is sent when the simulation is
+ * reset or when a listener first needs the whole fleet.
+ */
+public final class VehicleDelta {
+
+    /**
+     * All directions, indexed by ordinal.
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * All vehicle types, indexed by ordinal.
+     */
+    private static final VehicleType[] TYPES = VehicleType.values();
+
+    /**
+     * The number of vehicles in the simulation.
+     */
+    private final int myVehicleCount;
+
+    /**
+     * Whether this batch lists every vehicle.
+     */
+    private final boolean myFull;
+
+    /**
+     * The index of each changed vehicle.
+     */
+    private final int[] myIndex;
+
+    /**
+     * The x position of each changed vehicle before this tick.
+     */
+    private final int[] myOldX;
+
+    /**
+     * The y position of each changed vehicle before this tick.
+     */
+    private final int[] myOldY;
+
+    /**
+     * The x position of each changed vehicle.
+     */
+    private final int[] myX;
+
+    /**
+     * The y position of each changed vehicle.
+     */
+    private final int[] myY;
+
+    /**
+     * The direction ordinal of each changed vehicle.
+     */
+    private final byte[] myDirection;
+
+    /**
+     * Whether each changed vehicle is alive.
+     */
+    private final boolean[] myAlive;
+
+    /**
+     * The VehicleType ordinal of each changed vehicle, or -1 if it has none.
+     */
+    private final byte[] myType;
+
+    /**
+     * Creates a batch of changes. The arrays are used directly, not copied.
+     *
+     * @param theVehicleCount the number of vehicles in the simulation
+     * @param theFull whether the batch lists every vehicle
+     * @param theIndex the index of each changed vehicle
+     * @param theOldX the x position of each changed vehicle before this tick
+     * @param theOldY the y position of each changed vehicle before this tick
+     * @param theX the x position of each changed vehicle
+     * @param theY the y position of each changed vehicle
+     * @param theDirection the direction ordinal of each changed vehicle
+     * @param theAlive whether each changed vehicle is alive
+     * @param theType the VehicleType ordinal of each changed vehicle, or -1
+     */
+    VehicleDelta(final int theVehicleCount, final boolean theFull, final int[] theIndex,
+                 final int[] theOldX, final int[] theOldY, final int[] theX,
+                 final int[] theY, final byte[] theDirection, final boolean[] theAlive,
+                 final byte[] theType) {
+        myVehicleCount = theVehicleCount;
+        myFull = theFull;
+        myIndex = theIndex;
+        myOldX = theOldX;
+        myOldY = theOldY;
+        myX = theX;
+        myY = theY;
+        myDirection = theDirection;
+        myAlive = theAlive;
+        myType = theType;
+    }
+
+    /**
+     * Returns the number of changed vehicles in this batch.
+     *
+     * @return the number of changed vehicles
+     */
+    public int size() {
+        return myIndex.length;
+    }
+
+    /**
+     * Returns the number of vehicles in the simulation.
+     *
+     * @return the number of vehicles
+     */
+    public int getVehicleCount() {
+        return myVehicleCount;
+    }
+
+    /**
+     * Returns whether this batch lists every vehicle, in which case any state kept
+     * from earlier batches should be dropped.
+     *
+     * @return true if the batch lists every vehicle
+     */
+    public boolean isFull() {
+        return myFull;
+    }
+
+    /**
+     * Returns the index of a changed vehicle in the simulation.
+     *
+     * @param theChange the position of the change in this batch
+     * @return the index of the vehicle
+     */
+    public int getIndex(final int theChange) {
+        return myIndex[theChange];
+    }
+
+    /**
+     * Returns the x position of a changed vehicle before this tick. In a full batch
+     * this is its current x position.
+     *
+     * @param theChange the position of the change in this batch
+     * @return the old x position
+     */
+    public int getOldX(final int theChange) {
+        return myOldX[theChange];
+    }
+
+    /**
+     * Returns the y position of a changed vehicle before this tick. In a full batch
+     * this is its current y position.
+     *
+     * @param theChange the position of the change in this batch
+     * @return the old y position
+     */
+    public int getOldY(final int theChange) {
+        return myOldY[theChange];
+    }
+
+    /**
+     * Returns the x position of a changed vehicle.
+     *
+     * @param theChange the position of the change in this batch
+     * @return the x position
+     */
+    public int getX(final int theChange) {
+        return myX[theChange];
+    }
+
+    /**
+     * Returns the y position of a changed vehicle.
+     *
+     * @param theChange the position of the change in this batch
+     * @return the y position
+     */
+    public int getY(final int theChange) {
+        return myY[theChange];
+    }
+
+    /**
+     * Returns the direction of a changed vehicle.
+     *
+     * @param theChange the position of the change in this batch
+     * @return the direction
+     */
+    public Direction getDirection(final int theChange) {
+        return DIRECTIONS[myDirection[theChange]];
+    }
+
+    /**
+     * Returns whether a changed vehicle is alive.
+     *
+     * @param theChange the position of the change in this batch
+     * @return true if the vehicle is alive
+     */
+    public boolean isAlive(final int theChange) {
+        return myAlive[theChange];
+    }
+
+    /**
+     * Returns the type of a changed vehicle.
+     *
+     * @param theChange the position of the change in this batch
+     * @return the type, or null if the vehicle is not one of the model classes
+     */
+    public VehicleType getType(final int theChange) {
+        VehicleType result = null;
+        if (myType[theChange] >= 0) {
+            result = TYPES[myType[theChange]];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,439 @@
+package logic;
+
+import model.Direction;
+import model.Light;
+import model.Terrain;
+import model.VehicleType;
+
+/**
+ * The behavior of every vehicle type, written as static functions over primitive
+ * vehicle state for use by ArrayRoadRage. Directions, terrains and lights are passed
+ * as ordinals, and neighbors as a NeighborTable code. Each function mirrors the
+ * matching method of the vehicle classes in the model package.
+ */
+final class VehicleKernels {
+
+    /**
+     * The increment of the random number streams.
+     */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /**
+     * The number of bits used to store one direction in a candidate list.
+     */
+    private static final int DIRECTION_BITS = 2;
+
+    /**
+     * The mask for one direction in a candidate list.
+     */
+    private static final int DIRECTION_MASK = (1 << DIRECTION_BITS) - 1;
+
+    /** The ordinal of GRASS. */
+    private static final int GRASS = Terrain.GRASS.ordinal();
+
+    /** The ordinal of STREET. */
+    private static final int STREET = Terrain.STREET.ordinal();
+
+    /** The ordinal of LIGHT. */
+    private static final int LIGHT = Terrain.LIGHT.ordinal();
+
+    /** The ordinal of WALL. */
+    private static final int WALL = Terrain.WALL.ordinal();
+
+    /** The ordinal of TRAIL. */
+    private static final int TRAIL = Terrain.TRAIL.ordinal();
+
+    /** The ordinal of CROSSWALK. */
+    private static final int CROSSWALK = Terrain.CROSSWALK.ordinal();
+
+    /**
+     * The number of directions.
+     */
+    private static final int DIRECTIONS = Direction.values().length;
+
+    /**
+     * The vehicle types, indexed by ordinal.
+     */
+    private static final VehicleType[] TYPES = VehicleType.values();
+
+    /**
+     * The direction to the left of each direction, indexed by ordinal.
+     */
+    private static final int[] LEFT = new int[DIRECTIONS];
+
+    /**
+     * The direction to the right of each direction, indexed by ordinal.
+     */
+    private static final int[] RIGHT = new int[DIRECTIONS];
+
+    /**
+     * The direction opposite each direction, indexed by ordinal.
+     */
+    private static final int[] REVERSE = new int[DIRECTIONS];
+
+    /**
+     * The number of lights.
+     */
+    private static final int LIGHTS = Light.values().length;
+
+    /**
+     * The passability bits of each vehicle type, indexed by ordinal, as given by
+     * VehicleType.getPassable.
+     */
+    private static final int[] PASSABLE = new int[TYPES.length];
+
+    static {
+        for (final VehicleType type : TYPES) {
+            PASSABLE[type.ordinal()] = type.getPassable();
+        }
+        for (final Direction dir : Direction.values()) {
+            LEFT[dir.ordinal()] = dir.left().ordinal();
+            RIGHT[dir.ordinal()] = dir.right().ordinal();
+            REVERSE[dir.ordinal()] = dir.reverse().ordinal();
+        }
+    }
+
+    /**
+     * A private constructor, to prevent external instantiation.
+     */
+    private VehicleKernels() { }
+
+    /**
+     * Returns whether a vehicle may move onto a terrain under a light, by one bit test
+     * in the passability bits its type worked out from its vehicle class.
+     *
+     * @param theType the vehicle type ordinal
+     * @param theTerrain the terrain ordinal, or NeighborTable.OFF_MAP
+     * @param theLight the light ordinal
+     * @return whether the vehicle may move onto the terrain
+     */
+    static boolean canPass(final int theType, final int theTerrain, final int theLight) {
+        return (PASSABLE[theType] >>> (theTerrain * LIGHTS + theLight) & 1) != 0;
+    }
+
+    /**
+     * Returns the direction a vehicle would like to move.
+     *
+     * @param theType the vehicle type ordinal
+     * @param theDirection the current direction ordinal of the vehicle
+     * @param theCode the neighbors code of the vehicle's square
+     * @param theIndex the index of the vehicle
+     * @param theMemory the remembered direction of every vehicle, updated by ATVs
+     * @param theSeeds the random stream of every vehicle
+     * @return the ordinal of the chosen direction
+     */
+    static int chooseDirection(final int theType, final int theDirection, final int theCode,
+                               final int theIndex, final byte[] theMemory,
+                               final long[] theSeeds) {
+        final int result;
+
+        switch (TYPES[theType]) {
+            case ATV:
+                result = chooseAtv(theDirection, theCode, theIndex, theMemory, theSeeds);
+                break;
+
+            case BICYCLE:
+                result = chooseBicycle(theDirection, theCode);
+                break;
+
+            case HUMAN:
+                result = chooseHuman(theDirection, theCode, theIndex, theSeeds);
+                break;
+
+            case TRUCK:
+                result = chooseTruck(theDirection, theCode, theIndex, theSeeds);
+                break;
+
+            default: // CAR and TAXI
+                result = chooseCar(theDirection, theCode);
+                break;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a random direction ordinal, as Direction.random() does.
+     *
+     * @param theIndex the index of the vehicle
+     * @param theSeeds the random stream of every vehicle
+     * @return a random direction ordinal
+     */
+    static int randomDirection(final int theIndex, final long[] theSeeds) {
+        return nextInt(theIndex, theSeeds, DIRECTIONS);
+    }
+
+    /**
+     * Returns the seed of the random stream of one vehicle of a simulation. This is
+     * the value the vehicle's index + 1st call to nextLong() would return on a
+     * SplittableRandom created with the master seed, so each vehicle gets an
+     * independent stream that depends only on the master seed and its index.
+     *
+     * @param theMasterSeed the master seed of the simulation
+     * @param theIndex the index of the vehicle
+     * @return the seed of the vehicle's random stream
+     */
+    static long seedOf(final long theMasterSeed, final long theIndex) {
+        return mix64(theMasterSeed + (theIndex + 1L) * GOLDEN_GAMMA);
+    }
+
+    /**
+     * Draws the next value from a vehicle's random stream. This gives the same values
+     * as SplittableRandom.nextInt(theBound) on a SplittableRandom created with the
+     * same seed, so both simulations make the same choices.
+     *
+     * @param theIndex the index of the vehicle
+     * @param theSeeds the random stream of every vehicle
+     * @param theBound the upper bound (exclusive), must be positive
+     * @return a value between 0 (inclusive) and the bound (exclusive)
+     */
+    static int nextInt(final int theIndex, final long[] theSeeds, final int theBound) {
+        int result = nextInt(theIndex, theSeeds);
+        final int mask = theBound - 1;
+        if ((theBound & mask) == 0) {
+            result &= mask;
+        } else {
+            // reject the values that would make the result uneven
+            int bits = result >>> 1;
+            result = bits % theBound;
+            while (bits + mask - result < 0) {
+                bits = nextInt(theIndex, theSeeds) >>> 1;
+                result = bits % theBound;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Draws the next 32 random bits from a vehicle's random stream (SplitMix64).
+     *
+     * @param theIndex the index of the vehicle
+     * @param theSeeds the random stream of every vehicle
+     * @return the random bits
+     */
+    private static int nextInt(final int theIndex, final long[] theSeeds) {
+        theSeeds[theIndex] += GOLDEN_GAMMA;
+        long z = theSeeds[theIndex];
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    /**
+     * Scrambles a 64 bit value, as SplittableRandom does to make its output.
+     *
+     * @param theValue the value
+     * @return the scrambled value
+     */
+    private static long mix64(final long theValue) {
+        long z = theValue;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Chooses like a Car or a Taxi: straight, left, right, then reverse, keeping to
+     * streets, crosswalks and lights.
+     *
+     * @param theDirection the current direction ordinal
+     * @param theCode the neighbors code
+     * @return the ordinal of the chosen direction
+     */
+    private static int chooseCar(final int theDirection, final int theCode) {
+        int result = REVERSE[theDirection];
+        if (isRoad(NeighborTable.neighbor(theCode, theDirection))) {
+            result = theDirection;
+        } else if (isRoad(NeighborTable.neighbor(theCode, LEFT[theDirection]))) {
+            result = LEFT[theDirection];
+        } else if (isRoad(NeighborTable.neighbor(theCode, RIGHT[theDirection]))) {
+            result = RIGHT[theDirection];
+        }
+        return result;
+    }
+
+    /**
+     * Chooses like a Bicycle: trails first, then streets and lights, then crosswalks,
+     * each tried straight, left and right, then reverse.
+     *
+     * @param theDirection the current direction ordinal
+     * @param theCode the neighbors code
+     * @return the ordinal of the chosen direction
+     */
+    private static int chooseBicycle(final int theDirection, final int theCode) {
+        final int left = LEFT[theDirection];
+        final int right = RIGHT[theDirection];
+        final int ahead = NeighborTable.neighbor(theCode, theDirection);
+        final int leftTerrain = NeighborTable.neighbor(theCode, left);
+        final int rightTerrain = NeighborTable.neighbor(theCode, right);
+        final int result;
+        if (ahead == TRAIL) {
+            result = theDirection;
+        } else if (leftTerrain == TRAIL) {
+            result = left;
+        } else if (rightTerrain == TRAIL) {
+            result = right;
+        } else if (ahead == STREET || ahead == LIGHT) {
+            result = theDirection;
+        } else if (leftTerrain == STREET || leftTerrain == LIGHT) {
+            result = left;
+        } else if (rightTerrain == STREET || rightTerrain == LIGHT) {
+            result = right;
+        } else if (ahead == CROSSWALK) {
+            result = theDirection;
+        } else if (leftTerrain == CROSSWALK) {
+            result = left;
+        } else if (rightTerrain == CROSSWALK) {
+            result = right;
+        } else {
+            result = REVERSE[theDirection];
+        }
+        return result;
+    }
+
+    /**
+     * Chooses like a Human: randomly among left, right and straight onto grass or
+     * crosswalks, otherwise reverse.
+     *
+     * @param theDirection the current direction ordinal
+     * @param theCode the neighbors code
+     * @param theIndex the index of the vehicle
+     * @param theSeeds the random stream of every vehicle
+     * @return the ordinal of the chosen direction
+     */
+    private static int chooseHuman(final int theDirection, final int theCode,
+                                   final int theIndex, final long[] theSeeds) {
+        int list = 0;
+        int size = 0;
+        final int left = NeighborTable.neighbor(theCode, LEFT[theDirection]);
+        if (left == GRASS || left == CROSSWALK) {
+            list = append(list, size++, LEFT[theDirection]);
+        }
+        final int right = NeighborTable.neighbor(theCode, RIGHT[theDirection]);
+        if (right == GRASS || right == CROSSWALK) {
+            list = append(list, size++, RIGHT[theDirection]);
+        }
+        final int ahead = NeighborTable.neighbor(theCode, theDirection);
+        if (ahead == GRASS || ahead == CROSSWALK) {
+            list = append(list, size++, theDirection);
+        }
+        return pick(REVERSE[theDirection], list, size, theIndex, theSeeds);
+    }
+
+    /**
+     * Chooses like a Truck: randomly among left, right and straight onto streets,
+     * crosswalks and lights, otherwise reverse.
+     *
+     * @param theDirection the current direction ordinal
+     * @param theCode the neighbors code
+     * @param theIndex the index of the vehicle
+     * @param theSeeds the random stream of every vehicle
+     * @return the ordinal of the chosen direction
+     */
+    private static int chooseTruck(final int theDirection, final int theCode,
+                                   final int theIndex, final long[] theSeeds) {
+        int list = 0;
+        int size = 0;
+        if (isRoad(NeighborTable.neighbor(theCode, LEFT[theDirection]))) {
+            list = append(list, size++, LEFT[theDirection]);
+        }
+        if (isRoad(NeighborTable.neighbor(theCode, RIGHT[theDirection]))) {
+            list = append(list, size++, RIGHT[theDirection]);
+        }
+        if (isRoad(NeighborTable.neighbor(theCode, theDirection))) {
+            list = append(list, size++, theDirection);
+        }
+        return pick(REVERSE[theDirection], list, size, theIndex, theSeeds);
+    }
+
+    /**
+     * Chooses like an ATV. An ATV keeps the direction it remembers, and only picks a
+     * new one at random when there is a wall ahead, left or right of it. Like the ATV
+     * class, the remembered direction survives revival and reset.
+     *
+     * @param theDirection the current direction ordinal
+     * @param theCode the neighbors code
+     * @param theIndex the index of the vehicle
+     * @param theMemory the remembered direction of every vehicle
+     * @param theSeeds the random stream of every vehicle
+     * @return the ordinal of the chosen direction
+     */
+    private static int chooseAtv(final int theDirection, final int theCode,
+                                 final int theIndex, final byte[] theMemory,
+                                 final long[] theSeeds) {
+        final int left = LEFT[theDirection];
+        final int right = RIGHT[theDirection];
+        final int ahead = NeighborTable.neighbor(theCode, theDirection);
+        final int leftTerrain = NeighborTable.neighbor(theCode, left);
+        final int rightTerrain = NeighborTable.neighbor(theCode, right);
+        if (ahead == WALL || leftTerrain == WALL || rightTerrain == WALL) {
+            int list = 0;
+            int size = 0;
+            if (isOffRoad(ahead)) {
+                list = append(list, size++, theDirection);
+            }
+            if (isOffRoad(leftTerrain)) {
+                list = append(list, size++, left);
+            }
+            if (isOffRoad(rightTerrain)) {
+                list = append(list, size++, right);
+            }
+            list = append(list, size++, theDirection);
+            list = append(list, size++, left);
+            list = append(list, size++, right);
+            theMemory[theIndex] = (byte) pick(theDirection, list, size, theIndex, theSeeds);
+        }
+        return theMemory[theIndex];
+    }
+
+    /**
+     * Adds a direction to the end of a packed candidate list.
+     *
+     * @param theList the candidate directions, DIRECTION_BITS bits each
+     * @param theSize the number of candidates already in the list
+     * @param theDirection the direction ordinal to add
+     * @return the longer list
+     */
+    private static int append(final int theList, final int theSize, final int theDirection) {
+        return theList | theDirection << (DIRECTION_BITS * theSize);
+    }
+
+    /**
+     * Picks a random direction from a packed candidate list.
+     *
+     * @param theDefault the direction to return if the list is empty
+     * @param theList the candidate directions, DIRECTION_BITS bits each
+     * @param theSize the number of candidates
+     * @param theIndex the index of the vehicle
+     * @param theSeeds the random stream of every vehicle
+     * @return the ordinal of the picked direction
+     */
+    private static int pick(final int theDefault, final int theList, final int theSize,
+                            final int theIndex, final long[] theSeeds) {
+        int result = theDefault;
+        if (theSize > 0) {
+            final int choice = nextInt(theIndex, theSeeds, theSize);
+            result = theList >>> (DIRECTION_BITS * choice) & DIRECTION_MASK;
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether an ATV can drive on a terrain, which is anything but a wall.
+     *
+     * @param theTerrain the terrain ordinal, or NeighborTable.OFF_MAP
+     * @return whether an ATV can drive on the terrain
+     */
+    private static boolean isOffRoad(final int theTerrain) {
+        return theTerrain != WALL && theTerrain != NeighborTable.OFF_MAP;
+    }
+
+    /**
+     * Returns whether a terrain is a street, crosswalk or light.
+     *
+     * @param theTerrain the terrain ordinal
+     * @return whether the terrain is part of the road
+     */
+    private static boolean isRoad(final int theTerrain) {
+        return theTerrain == STREET || theTerrain == CROSSWALK || theTerrain == LIGHT;
+    }
+}
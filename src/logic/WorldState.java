@@ -0,0 +1,369 @@
+package logic;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import model.Direction;
+import model.Light;
+import model.VehicleType;
+
+/**
+ * A read-only picture of the simulation at the end of one tick: its time step, the
+ * color of the lights and the position, direction and health of every vehicle, stored
+ * as parallel primitive arrays.
+ *
+ * A simulation keeps two of these and fills them in turn, so the one it last published
+ * is left alone while it works on the next. A reader that is more than a tick behind
+ * may see a state being filled again; it can tell by taking getStamp() before reading
+ * and checking isUnchangedSince() afterwards. Reading never blocks the simulation.
+ *
+ * The map is also divided into blocks of DENSITY_BLOCK by DENSITY_BLOCK squares, and
+ * the live and dead vehicles in each block are counted as the state is filled, so that
+ * a zoomed out view can show where the vehicles are without looking at each one.
+ */
+public final class WorldState {
+
+    /**
+     * The number of squares along a side of a block whose vehicles are counted.
+     */
+    public static final int DENSITY_BLOCK = 16;
+
+    /**
+     * All directions, indexed by ordinal.
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * All vehicle types, indexed by ordinal.
+     */
+    private static final VehicleType[] TYPES = VehicleType.values();
+
+    /**
+     * The VehicleType ordinal of each vehicle, or -1 if it has none.
+     */
+    private final byte[] myType;
+
+    /**
+     * The x position of each vehicle.
+     */
+    private final int[] myX;
+
+    /**
+     * The y position of each vehicle.
+     */
+    private final int[] myY;
+
+    /**
+     * The direction ordinal of each vehicle.
+     */
+    private final byte[] myDirection;
+
+    /**
+     * Whether each vehicle is alive.
+     */
+    private final boolean[] myAlive;
+
+    /**
+     * The width of the map in squares.
+     */
+    private final int myWidth;
+
+    /**
+     * The height of the map in squares.
+     */
+    private final int myHeight;
+
+    /**
+     * The number of blocks across the map.
+     */
+    private final int myDensityColumns;
+
+    /**
+     * The number of blocks down the map.
+     */
+    private final int myDensityRows;
+
+    /**
+     * The number of live vehicles in each block, as row * columns + column.
+     */
+    private final int[] myAliveCounts;
+
+    /**
+     * The number of dead vehicles in each block, as row * columns + column.
+     */
+    private final int[] myDeadCounts;
+
+    /**
+     * The number of vehicles in the simulation.
+     */
+    private int myVehicleCount;
+
+    /**
+     * The time step of the simulation.
+     */
+    private long myTimestep;
+
+    /**
+     * The color of the lights.
+     */
+    private Light myLight;
+
+    /**
+     * Counts the times this state has been filled; odd while it is being filled.
+     */
+    private volatile long myStamp;
+
+    /**
+     * Creates an empty state for a fleet on a map.
+     *
+     * @param theTypes the VehicleType ordinal of each vehicle, or -1 if it has none,
+     *            copied for the vehicles whose type never changes; its length is the
+     *            largest number of vehicles
+     * @param theWidth the width of the map
+     * @param theHeight the height of the map
+     */
+    WorldState(final byte[] theTypes, final int theWidth, final int theHeight) {
+        final int capacity = theTypes.length;
+        myType = theTypes.clone();
+        myX = new int[capacity];
+        myY = new int[capacity];
+        myDirection = new byte[capacity];
+        myAlive = new boolean[capacity];
+        myWidth = theWidth;
+        myHeight = theHeight;
+        myDensityColumns = (theWidth + DENSITY_BLOCK - 1) / DENSITY_BLOCK;
+        myDensityRows = (theHeight + DENSITY_BLOCK - 1) / DENSITY_BLOCK;
+        myAliveCounts = new int[myDensityColumns * myDensityRows];
+        myDeadCounts = new int[myDensityColumns * myDensityRows];
+    }
+
+    /**
+     * Starts filling this state. Readers holding an earlier stamp will find it
+     * changed.
+     *
+     * @param theVehicleCount the number of vehicles in the simulation
+     * @param theTimestep the time step of the simulation
+     * @param theLight the color of the lights
+     */
+    void beginWrite(final int theVehicleCount, final long theTimestep,
+                    final Light theLight) {
+        myStamp++;
+        // the odd stamp must be seen before any of the new values
+        VarHandle.storeStoreFence();
+        myVehicleCount = theVehicleCount;
+        myTimestep = theTimestep;
+        myLight = theLight;
+        Arrays.fill(myAliveCounts, 0);
+        Arrays.fill(myDeadCounts, 0);
+    }
+
+    /**
+     * Records the state of one vehicle, between beginWrite and endWrite.
+     *
+     * @param theIndex the index of the vehicle
+     * @param theX the x position of the vehicle
+     * @param theY the y position of the vehicle
+     * @param theDirection the direction ordinal of the vehicle
+     * @param theAlive whether the vehicle is alive
+     */
+    void write(final int theIndex, final int theX, final int theY, final int theDirection,
+               final boolean theAlive) {
+        myX[theIndex] = theX;
+        myY[theIndex] = theY;
+        myDirection[theIndex] = (byte) theDirection;
+        myAlive[theIndex] = theAlive;
+        count(theX, theY, theAlive);
+    }
+
+    /**
+     * Records the state of the first vehicles of a fleet stored as arrays, between
+     * beginWrite and endWrite. Their types are recorded too, since a slot of the fleet
+     * may be freed or given to a new vehicle.
+     *
+     * @param theType the VehicleType ordinal of each vehicle, or -1 if it has none
+     * @param theX the x position of each vehicle
+     * @param theY the y position of each vehicle
+     * @param theDirection the direction ordinal of each vehicle
+     * @param theAlive whether each vehicle is alive
+     * @param theCount the number of vehicles to record
+     */
+    void write(final byte[] theType, final int[] theX, final int[] theY,
+               final byte[] theDirection, final boolean[] theAlive, final int theCount) {
+        System.arraycopy(theType, 0, myType, 0, theCount);
+        System.arraycopy(theX, 0, myX, 0, theCount);
+        System.arraycopy(theY, 0, myY, 0, theCount);
+        System.arraycopy(theDirection, 0, myDirection, 0, theCount);
+        System.arraycopy(theAlive, 0, myAlive, 0, theCount);
+        for (int i = 0; i < theCount; i++) {
+            count(theX[i], theY[i], theAlive[i]);
+        }
+    }
+
+    /**
+     * Adds a vehicle to the count of the block it is in. Vehicles off the map are
+     * not counted.
+     *
+     * @param theX the x position of the vehicle
+     * @param theY the y position of the vehicle
+     * @param theAlive whether the vehicle is alive
+     */
+    private void count(final int theX, final int theY, final boolean theAlive) {
+        if (0 <= theX && theX < myWidth && 0 <= theY && theY < myHeight) {
+            final int block = theY / DENSITY_BLOCK * myDensityColumns + theX / DENSITY_BLOCK;
+            if (theAlive) {
+                myAliveCounts[block]++;
+            } else {
+                myDeadCounts[block]++;
+            }
+        }
+    }
+
+    /**
+     * Finishes filling this state.
+     */
+    void endWrite() {
+        myStamp++;
+    }
+
+    /**
+     * Returns a stamp to check with isUnchangedSince() once reading is done.
+     *
+     * @return the stamp
+     */
+    public long getStamp() {
+        return myStamp;
+    }
+
+    /**
+     * Returns whether everything read since the stamp was taken belongs to the same
+     * tick. If not, the reader should read this state again, or the newest one.
+     *
+     * @param theStamp a stamp from getStamp()
+     * @return true if this state was not being filled while it was read
+     */
+    public boolean isUnchangedSince(final long theStamp) {
+        // the values read must not be reordered after the stamp check
+        VarHandle.loadLoadFence();
+        return theStamp % 2 == 0 && myStamp == theStamp;
+    }
+
+    /**
+     * Returns the number of vehicles in the simulation.
+     *
+     * @return the number of vehicles
+     */
+    public int getVehicleCount() {
+        return myVehicleCount;
+    }
+
+    /**
+     * Returns the time step of the simulation.
+     *
+     * @return the time step
+     */
+    public long getTimestep() {
+        return myTimestep;
+    }
+
+    /**
+     * Returns the color of the lights.
+     *
+     * @return the color of the lights, or null before the simulation is started
+     */
+    public Light getLight() {
+        return myLight;
+    }
+
+    /**
+     * Returns the x position of a vehicle.
+     *
+     * @param theVehicle the index of the vehicle
+     * @return the x position
+     */
+    public int getX(final int theVehicle) {
+        return myX[theVehicle];
+    }
+
+    /**
+     * Returns the y position of a vehicle.
+     *
+     * @param theVehicle the index of the vehicle
+     * @return the y position
+     */
+    public int getY(final int theVehicle) {
+        return myY[theVehicle];
+    }
+
+    /**
+     * Returns the direction of a vehicle.
+     *
+     * @param theVehicle the index of the vehicle
+     * @return the direction
+     */
+    public Direction getDirection(final int theVehicle) {
+        return DIRECTIONS[myDirection[theVehicle]];
+    }
+
+    /**
+     * Returns whether a vehicle is alive.
+     *
+     * @param theVehicle the index of the vehicle
+     * @return true if the vehicle is alive
+     */
+    public boolean isAlive(final int theVehicle) {
+        return myAlive[theVehicle];
+    }
+
+    /**
+     * Returns the type of a vehicle.
+     *
+     * @param theVehicle the index of the vehicle
+     * @return the type, or null if the vehicle is not one of the model classes
+     */
+    public VehicleType getType(final int theVehicle) {
+        VehicleType result = null;
+        if (myType[theVehicle] >= 0) {
+            result = TYPES[myType[theVehicle]];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of blocks across the map.
+     *
+     * @return the number of blocks across
+     */
+    public int getDensityColumns() {
+        return myDensityColumns;
+    }
+
+    /**
+     * Returns the number of blocks down the map.
+     *
+     * @return the number of blocks down
+     */
+    public int getDensityRows() {
+        return myDensityRows;
+    }
+
+    /**
+     * Returns the number of live vehicles in a block.
+     *
+     * @param theColumn the column of the block
+     * @param theRow the row of the block
+     * @return the number of live vehicles
+     */
+    public int getAliveCount(final int theColumn, final int theRow) {
+        return myAliveCounts[theRow * myDensityColumns + theColumn];
+    }
+
+    /**
+     * Returns the number of dead vehicles in a block.
+     *
+     * @param theColumn the column of the block
+     * @param theRow the row of the block
+     * @return the number of dead vehicles
+     */
+    public int getDeadCount(final int theColumn, final int theRow) {
+        return myDeadCounts[theRow * myDensityColumns + theColumn];
+    }
+}
@@ -2,7 +2,6 @@ package model;
 
 import java.util.ArrayList;
 import java.util.Map;
-import java.util.Random;
 
 /**
  * class for the ATV. Extends AbstractVehicle
@@ -18,12 +17,6 @@ public class ATV extends AbstractVehicle {
      */
     private Direction currentDirection;
 
-    /**
-     * Random object to choose random directions
-     */
-    private Random random;
-
-
     /**
      * create an ATV object with the provided x and y coordinates and direction
      *
@@ -34,7 +27,6 @@ public class ATV extends AbstractVehicle {
     public ATV(int theX, int theY, Direction theDir) {
         super(theX, theY, theDir, DEATH_TIME);
         this.currentDirection = theDir;
-        this.random = getRandom();
     }
 
     /**
@@ -85,7 +77,7 @@ public class ATV extends AbstractVehicle {
             validDirections.add(getDirection().left());
             validDirections.add(getDirection().right());
             // select a random direction
-            randomElement = random.nextInt(validDirections.size());
+            randomElement = getRandom().nextInt(validDirections.size());
             // change the current direction to the random direction
             currentDirection = validDirections.get(randomElement);
         }
@@ -1,6 +1,7 @@
 package model;
 
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * AbstractVehicle implements a Vehicle interface and provides the default behavior for all the vehicle child classes
@@ -28,9 +29,13 @@ abstract class AbstractVehicle implements Vehicle {
      */
     private final int deathTime;
     /**
-     * /Random object to choose random directions
+     * the seed of the random stream, so that reset can rewind it
      */
-    private final Random random;
+    private long seed;
+    /**
+     * the random stream used to choose random directions
+     */
+    private SplittableRandom random;
     /**
      * if a vehicle is dead or alive
      */
@@ -68,7 +73,7 @@ abstract class AbstractVehicle implements Vehicle {
         this.theY = theY;
         this.theDir = theDir;
         this.deathTime = deathTime;
-        this.random = new Random();
+        setSeed(ThreadLocalRandom.current().nextLong());
 
         initialX = theX;
         initialY = theY;
@@ -78,14 +83,25 @@ abstract class AbstractVehicle implements Vehicle {
     }
 
     /**
-     * get the Random object to be used in the child classes
+     * get the random stream to be used in the child classes
      *
-     * @return the Random object
+     * @return the random stream
      */
-    public Random getRandom() {
+    public SplittableRandom getRandom() {
         return random;
     }
 
+    /**
+     * start a new random stream from the given seed
+     *
+     * @param theSeed The seed of the random stream.
+     */
+    @Override
+    public final void setSeed(long theSeed) {
+        this.seed = theSeed;
+        this.random = new SplittableRandom(theSeed);
+    }
+
     /**
      * get the x coordinate of a vehicle
      *
@@ -187,7 +203,7 @@ abstract class AbstractVehicle implements Vehicle {
                 }
             } else {
                 isAlive = true;
-                setDirection(Direction.random());
+                setDirection(Direction.random(random));
                 numberOfPokes = 0;
 
             }
@@ -196,7 +212,8 @@ abstract class AbstractVehicle implements Vehicle {
     }
 
     /**
-     * Moves this vehicle back to its original position.
+     * Moves this vehicle back to its original position, and rewinds its random
+     * stream to the start.
      */
     @Override
     public void reset() {
@@ -205,6 +222,7 @@ abstract class AbstractVehicle implements Vehicle {
         setDirection(initialDirection);
         isAlive = true;
         numberOfPokes = 0;
+        random = new SplittableRandom(seed);
 
     }
 
@@ -5,6 +5,7 @@
 package model;
 
 import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * An enumeration (and associated functionality) for directions in which a
@@ -133,6 +134,17 @@ public enum Direction {
         return values()[RANDOM.nextInt(values().length)];
     }
 
+    /**
+     * Returns a random Direction drawn from the given random stream. Unlike
+     * random(), this is reproducible and does not contend with other threads.
+     * 
+     * @param theRandom The random stream.
+     * @return a random Direction.
+     */
+    public static Direction random(final SplittableRandom theRandom) {
+        return values()[theRandom.nextInt(values().length)];
+    }
+
     /**
      * Returns the direction you get if you rotate this direction clockwise by
      * 90 degrees.
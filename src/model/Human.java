@@ -2,7 +2,6 @@ package model;
 
 import java.util.ArrayList;
 import java.util.Map;
-import java.util.Random;
 
 public class Human extends AbstractVehicle  {
 
@@ -15,11 +14,6 @@ public class Human extends AbstractVehicle  {
      * the current direction of the Human
      */
     private Direction currentDirection;
-    /**
-     * Random object to choose random directions
-     */
-
-    private Random random;
 
     //private Terrain initialTerrain;
 
@@ -34,7 +28,6 @@ public class Human extends AbstractVehicle  {
     public Human(int theX, int theY, Direction theDir) {
         super(theX, theY, theDir, DEATH_TIME);
         this.currentDirection = theDir;
-        this.random = getRandom();
     }
 
     /**
@@ -91,7 +84,7 @@ public class Human extends AbstractVehicle  {
             currentDirection = getDirection().reverse();
         } else {
             // if there are valid directions then pick a random direction
-            randomElement = random.nextInt(validDirections.size());
+            randomElement = getRandom().nextInt(validDirections.size());
             currentDirection = validDirections.get(randomElement);
         }
         return currentDirection;
@@ -50,6 +50,18 @@ public enum Terrain {
      */
     private char myLetter;
 
+    /**
+     * The Terrain represented by each letter that fits in a byte, or null where no
+     * Terrain is.
+     */
+    private static final Terrain[] LETTERS = new Terrain[256];
+
+    static {
+        for (final Terrain terrain : values()) {
+            LETTERS[terrain.myLetter] = terrain;
+        }
+    }
+
     // Constructor
 
     /**
@@ -73,16 +85,34 @@ public enum Terrain {
     public static Terrain valueOf(final char theLetter) {
         Terrain result = GRASS;
 
-        for (final Terrain terrain : Terrain.values()) {
-            if (terrain.myLetter == theLetter) {
-                result = terrain;
-                break;
-            }
+        if (theLetter < LETTERS.length && LETTERS[theLetter] != null) {
+            result = LETTERS[theLetter];
         }
 
         return result;
     }
 
+    /**
+     * Returns the Terrain represented by a letter read from a map file as a byte,
+     * with a single table lookup.
+     * 
+     * @param theLetter The letter, as an unsigned byte from 0 to 255.
+     * @return the Terrain represented by the given letter, or null if no Terrain
+     *         is represented by the given letter.
+     */
+    public static Terrain forLetter(final int theLetter) {
+        return LETTERS[theLetter];
+    }
+
+    /**
+     * Returns the letter corresponding to this Terrain.
+     * 
+     * @return the letter corresponding to this Terrain.
+     */
+    public char letter() {
+        return myLetter;
+    }
+
     /**
      * Returns a String representation of this Terrain, such as "WALL (X)".
      * 
@@ -2,7 +2,6 @@ package model;
 
 import java.util.ArrayList;
 import java.util.Map;
-import java.util.Random;
 
 /**
  * class for the Truck. Extends AbstractVehicle
@@ -17,10 +16,6 @@ public class Truck extends AbstractVehicle {
      * the current direction of the Truck
      */
     private Direction currentDirection;
-    /**
-     * Random object to choose random directions
-     */
-    private Random random;
 
     /**
      * create a Truck object with the provided x and y coordinates and direction
@@ -32,7 +27,6 @@ public class Truck extends AbstractVehicle {
     public Truck(int theX, int theY, Direction theDir) {
         super(theX, theY, theDir, DEATH_TIME);
         this.currentDirection = theDir;
-        this.random = getRandom();
 
     }
 
@@ -90,7 +84,7 @@ public class Truck extends AbstractVehicle {
             currentDirection = getDirection().reverse();
         } else {
             // pick a random direction from the valid directions
-            randomElement = random.nextInt(validDirections.size());
+            randomElement = getRandom().nextInt(validDirections.size());
             currentDirection = validDirections.get(randomElement);
         }
         return currentDirection;
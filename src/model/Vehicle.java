@@ -119,5 +119,16 @@ public interface Vehicle {
      */
     void setY(int theY);
 
+    /**
+     * Starts this object's random choices over from the given seed. The same seed
+     * always gives the same sequence of choices, and reset() rewinds to its start.
+     * Vehicles that make no random choices can ignore it, as they do by default.
+     * 
+     * @param theSeed The seed.
+     */
+    default void setSeed(final long theSeed) {
+        // nothing to do
+    }
+
 } // end of interface Vehicle
 
@@ -0,0 +1,239 @@
+/*
+ * TCSS 305 - Road Rage
+ */
+
+package model;
+
+/**
+ * An enumeration of the kinds of vehicle that may appear on the map, with the
+ * letter used for each in the city map file.
+ */
+public enum VehicleType {
+
+    /**
+     * An ATV.
+     */
+    ATV('A'),
+
+    /**
+     * A bicycle.
+     */
+    BICYCLE('B'),
+
+    /**
+     * A car.
+     */
+    CAR('C'),
+
+    /**
+     * A human.
+     */
+    HUMAN('H'),
+
+    /**
+     * A taxi.
+     */
+    TAXI('X'),
+
+    /**
+     * A truck.
+     */
+    TRUCK('T');
+
+    /**
+     * The number of terrains a vehicle may be asked about, counting the terrain off the
+     * map as one more after the others.
+     */
+    private static final int TERRAINS = Terrain.values().length + 1;
+
+    /**
+     * The number of lights.
+     */
+    private static final int LIGHTS = Light.values().length;
+
+    /**
+     * The passability bits of each vehicle type, indexed by ordinal.
+     */
+    private static final int[] PASSABLE = passable();
+
+    /**
+     * The letter corresponding to a particular value of the enumeration.
+     */
+    private final char myLetter;
+
+    // Constructor
+
+    /**
+     * Constructs a new VehicleType with the specified letter.
+     *
+     * @param theLetter The letter.
+     */
+    VehicleType(final char theLetter) {
+        myLetter = theLetter;
+    }
+
+    // Instance Methods
+
+    /**
+     * Returns the VehicleType represented by the given letter.
+     *
+     * @param theLetter The letter.
+     * @return the VehicleType represented by the given letter, or null if no
+     *         VehicleType is represented by the given letter.
+     */
+    public static VehicleType valueOf(final char theLetter) {
+        VehicleType result = null;
+
+        for (final VehicleType type : VehicleType.values()) {
+            if (type.myLetter == theLetter) {
+                result = type;
+                break;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the VehicleType of the given vehicle.
+     *
+     * @param theVehicle The vehicle.
+     * @return the VehicleType of the vehicle, or null if it is not one of the
+     *         vehicle classes in this package.
+     */
+    public static VehicleType of(final Vehicle theVehicle) {
+        VehicleType result = null;
+
+        for (final VehicleType type : VehicleType.values()) {
+            if (type.getImageName().equals(
+                            theVehicle.getClass().getSimpleName().toLowerCase())) {
+                result = type;
+                break;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the letter corresponding to this vehicle type.
+     *
+     * @return the letter corresponding to this vehicle type.
+     */
+    public char letter() {
+        return myLetter;
+    }
+
+    /**
+     * Returns the base name of the images for this vehicle type, such as "car".
+     *
+     * @return the base name of the images.
+     */
+    public String getImageName() {
+        return name().toLowerCase();
+    }
+
+    /**
+     * Returns whether a vehicle of this type may move onto a terrain under a light.
+     * This answers as the canPass method of the type's vehicle class does, from a
+     * table worked out once from that method.
+     *
+     * @param theTerrain The terrain, or null for a square off the map.
+     * @param theLight The traffic light color.
+     * @return whether a vehicle of this type may move onto the terrain.
+     */
+    public boolean canPass(final Terrain theTerrain, final Light theLight) {
+        final int terrain = theTerrain == null ? TERRAINS - 1 : theTerrain.ordinal();
+        return (PASSABLE[ordinal()] >>> (terrain * LIGHTS + theLight.ordinal()) & 1) != 0;
+    }
+
+    /**
+     * Returns whether a vehicle of this type may move onto each terrain under each
+     * light, as one set of bits. The bit for a terrain and light is bit number
+     * terrain ordinal * the number of lights + light ordinal, with the terrain off
+     * the map taking the ordinal after the last Terrain.
+     *
+     * @return the passability bits.
+     */
+    public int getPassable() {
+        return PASSABLE[ordinal()];
+    }
+
+    /**
+     * Returns the number of updates between the death of a vehicle of this type
+     * and its revival.
+     *
+     * @return the number of updates.
+     */
+    public int getDeathTime() {
+        return create(0, 0, Direction.NORTH).getDeathTime();
+    }
+
+    /**
+     * Creates a new vehicle of this type.
+     *
+     * @param theX The x-coordinate of the vehicle.
+     * @param theY The y-coordinate of the vehicle.
+     * @param theDir The direction of the vehicle.
+     * @return the new vehicle.
+     */
+    public Vehicle create(final int theX, final int theY, final Direction theDir) {
+        final Vehicle result;
+
+        switch (this) {
+            case ATV:
+                result = new ATV(theX, theY, theDir);
+                break;
+
+            case BICYCLE:
+                result = new Bicycle(theX, theY, theDir);
+                break;
+
+            case CAR:
+                result = new Car(theX, theY, theDir);
+                break;
+
+            case HUMAN:
+                result = new Human(theX, theY, theDir);
+                break;
+
+            case TAXI:
+                result = new Taxi(theX, theY, theDir);
+                break;
+
+            default:
+                result = new Truck(theX, theY, theDir);
+                break;
+        }
+
+        return result;
+    }
+
+    /**
+     * Works out the passability bits of every vehicle type by asking a vehicle of the
+     * type about every terrain and light.
+     *
+     * @return the passability bits, indexed by type ordinal
+     */
+    private static int[] passable() {
+        final VehicleType[] types = values();
+        final Terrain[] terrains = Terrain.values();
+        final Light[] lights = Light.values();
+        final int[] result = new int[types.length];
+        for (final VehicleType type : types) {
+            final Vehicle vehicle = type.create(0, 0, Direction.NORTH);
+            for (int terrain = 0; terrain < TERRAINS; terrain++) {
+                for (final Light light : lights) {
+                    final Terrain square = terrain < terrains.length ? terrains[terrain]
+                                                                     : null;
+                    if (vehicle.canPass(square, light)) {
+                        result[type.ordinal()] |= 1 << (terrain * LIGHTS + light.ordinal());
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
+
+// end of class VehicleType
@@ -0,0 +1,138 @@
+/*
+ * TCSS 305 - Road Rage
+ */
+
+package tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import logic.RoadRage;
+import logic.WorldState;
+import model.VehicleType;
+import org.junit.jupiter.api.Test;
+import view.util.CityGenerator;
+import view.util.FileLoader;
+
+/**
+ * Unit tests for class CityGenerator.
+ */
+public class CityGeneratorTest {
+
+    /**
+     * The width of the generated maps.
+     */
+    private static final int WIDTH = 200;
+
+    /**
+     * The height of the generated maps.
+     */
+    private static final int HEIGHT = 150;
+
+    /**
+     * The seed of the generated maps.
+     */
+    private static final long SEED = 305;
+
+    /**
+     * How far the number of vehicles may be from the number asked for, as a fraction
+     * of it.
+     */
+    private static final double TOLERANCE = 0.05;
+
+    /**
+     * The same seed and settings write the same map, and another seed does not.
+     *
+     * @throws IOException if a map cannot be written
+     */
+    @Test
+    public void testSameSeedSameBytes() throws IOException {
+        final byte[] first = generate(new CityGenerator(WIDTH, HEIGHT, SEED));
+        final byte[] second = generate(new CityGenerator(WIDTH, HEIGHT, SEED));
+        final byte[] other = generate(new CityGenerator(WIDTH, HEIGHT, SEED + 1));
+        assertArrayEquals("The same seed wrote another map!", first, second);
+        assertFalse("Another seed wrote the same map!", Arrays.equals(first, other));
+    }
+
+    /**
+     * A generated map loads, and has about the density and mix asked for, even where
+     * the types of the mix need more squares of a terrain than they can share.
+     *
+     * @throws IOException if a map cannot be written or read
+     */
+    @Test
+    public void testMapLoadsNearDensity() throws IOException {
+        final double density = 0.2;
+        final CityGenerator generator = new CityGenerator(WIDTH, HEIGHT, SEED);
+        generator.setDensity(density);
+        generator.setMix("C:1,T:1");
+        final Path file = Files.createTempFile("city", ".txt");
+        try {
+            final int written = generator.write(file.toString());
+            final RoadRage roadRage = FileLoader.readCity(file.toString());
+            assertEquals("Wrong width!", WIDTH, roadRage.getWidth());
+            assertEquals("Wrong height!", HEIGHT, roadRage.getHeight());
+            final WorldState world = roadRage.getWorldState();
+            assertEquals("Wrong number of vehicles loaded!", written,
+                         world.getVehicleCount());
+            final int[] counts = new int[VehicleType.values().length];
+            for (int i = 0; i < world.getVehicleCount(); i++) {
+                counts[world.getType(i).ordinal()]++;
+            }
+            final double wanted = density * WIDTH * HEIGHT / 2;
+            for (final VehicleType type : new VehicleType[] {VehicleType.CAR,
+                VehicleType.TRUCK}) {
+                assertTrue("Too far from " + wanted + " vehicles of type " + type + ": "
+                           + counts[type.ordinal()] + "!",
+                           Math.abs(counts[type.ordinal()] - wanted) < wanted * TOLERANCE);
+            }
+            assertEquals("Vehicles not in the mix were written!", world.getVehicleCount(),
+                         counts[VehicleType.CAR.ordinal()]
+                         + counts[VehicleType.TRUCK.ordinal()]);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * A density and mix that need more squares than the map has are rejected before
+     * anything is written.
+     *
+     * @throws IOException if the temporary file cannot be made
+     */
+    @Test
+    public void testUnmetDensityRejected() throws IOException {
+        final CityGenerator generator = new CityGenerator(WIDTH, HEIGHT, SEED);
+        generator.setDensity(0.3);
+        generator.setMix("C:1,T:1");
+        final Path file = Files.createTempFile("city", ".txt");
+        Files.delete(file);
+        assertThrows("An unmet density was accepted!", IllegalArgumentException.class,
+            () -> generator.write(file.toString()));
+        assertFalse("A map was written!", Files.exists(file));
+    }
+
+    /**
+     * Writes a map to a temporary file and reads it back.
+     *
+     * @param theGenerator the generator of the map
+     * @return the bytes of the map
+     * @throws IOException if the map cannot be written or read
+     */
+    private static byte[] generate(final CityGenerator theGenerator) throws IOException {
+        final Path file = Files.createTempFile("city", ".txt");
+        try {
+            theGenerator.write(file.toString());
+            return Files.readAllBytes(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * TCSS 305 - Road Rage
+ */
+
+package tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import logic.PropertyChangeEnabledRoadRageControls;
+import logic.RoadRage;
+import logic.TerrainMap;
+import logic.WorldState;
+import model.Direction;
+import model.Terrain;
+import model.VehicleType;
+import org.junit.jupiter.api.Test;
+import view.util.FileLoader;
+import view.util.MapFormatException;
+
+/**
+ * Unit tests for reading city map files with class FileLoader.
+ */
+public class FileLoaderTest {
+
+    /**
+     * The city map files shipped with the simulation.
+     */
+    private static final String[] CITY_FILES = {"city_map1.txt", "city_map2.txt"};
+
+    /**
+     * Every shipped city map reads the same as it did with a Scanner.
+     *
+     * @throws IOException if a city map cannot be read
+     */
+    @Test
+    public void testTextMapsMatchScanner() throws IOException {
+        for (final String file : CITY_FILES) {
+            assertEquals("Wrong squares and vehicles in " + file + "!", scan(file),
+                         describe(FileLoader.readCity(file)));
+        }
+    }
+
+    /**
+     * Malformed maps are reported with the line and column of the problem.
+     *
+     * @throws IOException if a temporary file cannot be written
+     */
+    @Test
+    public void testErrorsGiveLineAndColumn() throws IOException {
+        assertError("2 x\n---\n---\n0\n", 1, 3);
+        assertError("0 3\n0\n", 1, 3);
+        assertError("2 3\n---\n-Z-\n0\n", 3, 2);
+        assertError("2 3\n---\n--\n0\n", 3, 3);
+        assertError("2 3\n---\n---\n1\nQ 1 1 N -\n", 5, 1);
+        assertError("2 3\n---\n---\n1\nC 1 y N -\n", 5, 5);
+        assertError("2 3\n---\n---\n1\nC 1 1 Z -\n", 5, 7);
+        assertError("2 3\n---\n---\n2\nC 1 1 N -\n", 6, 1);
+        assertError("2 3\n---\n", 3, 1);
+    }
+
+    /**
+     * Checks that reading a map fails at a line and column.
+     *
+     * @param theContents the contents of the map file
+     * @param theLine the line the problem should be found on
+     * @param theColumn the column the problem should be found at
+     * @throws IOException if a temporary file cannot be written
+     */
+    private static void assertError(final String theContents, final int theLine,
+                                    final int theColumn) throws IOException {
+        final Path file = Files.createTempFile("city", ".txt");
+        try {
+            Files.write(file, theContents.getBytes(StandardCharsets.US_ASCII));
+            final MapFormatException error = assertThrows(
+                "A malformed map was read: " + theContents, MapFormatException.class,
+                () -> FileLoader.readCity(file.toString()));
+            assertArrayEquals("Wrong place for " + error.getMessage() + "!",
+                              new int[] {theLine, theColumn},
+                              new int[] {error.getLine(), error.getColumn()});
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Describes the squares and vehicles of a map read with a Scanner, the way the
+     * maps were read before.
+     *
+     * @param theFileName the name of the city map file
+     * @return a line for the size, each row and each vehicle
+     * @throws IOException if the file cannot be read
+     */
+    static List<String> scan(final String theFileName) throws IOException {
+        final List<String> result = new ArrayList<>();
+        try (Scanner input = new Scanner(new File(theFileName))) {
+            final int rows = input.nextInt();
+            final int columns = input.nextInt();
+            input.nextLine();
+            result.add(columns + " x " + rows);
+            for (int row = 0; row < rows; row++) {
+                final String line = input.nextLine();
+                final StringBuilder squares = new StringBuilder();
+                for (int column = 0; column < columns; column++) {
+                    squares.append(Terrain.valueOf(line.charAt(column)));
+                    squares.append(' ');
+                }
+                result.add(squares.toString());
+            }
+            final int vehicles = input.nextInt();
+            input.nextLine();
+            for (int i = 0; i < vehicles; i++) {
+                final VehicleType type = VehicleType.valueOf(input.next().charAt(0));
+                final int x = input.nextInt();
+                final int y = input.nextInt();
+                final Direction dir = Direction.valueOf(input.next().charAt(0));
+                input.nextLine();
+                result.add(type + " " + x + " " + y + " " + dir);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Describes the squares and vehicles of a simulation as it starts.
+     *
+     * @param theRoadRage the simulation
+     * @return a line for the size, each row and each vehicle
+     */
+    static List<String> describe(final RoadRage theRoadRage) {
+        final List<TerrainMap> maps = new ArrayList<>();
+        theRoadRage.addPropertyChangeListener(PropertyChangeEnabledRoadRageControls.PROPERTY_GRID,
+            theEvent -> maps.add((TerrainMap) theEvent.getNewValue()));
+        theRoadRage.start();
+        final TerrainMap map = maps.get(0);
+        final List<String> result = new ArrayList<>();
+        result.add(map.getWidth() + " x " + map.getHeight());
+        for (int y = 0; y < map.getHeight(); y++) {
+            final StringBuilder squares = new StringBuilder();
+            for (int x = 0; x < map.getWidth(); x++) {
+                squares.append(map.get(x, y));
+                squares.append(' ');
+            }
+            result.add(squares.toString());
+        }
+        final WorldState world = theRoadRage.getWorldState();
+        for (int i = 0; i < world.getVehicleCount(); i++) {
+            result.add(world.getType(i) + " " + world.getX(i) + " " + world.getY(i) + " "
+                       + world.getDirection(i));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * TCSS 305 - Road Rage
+ */
+
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import view.util.FileLoader;
+import view.util.MapConverter;
+
+/**
+ * Unit tests for class MapConverter and the binary city map format.
+ */
+public class MapConverterTest {
+
+    /**
+     * The city map converted.
+     */
+    private static final String CITY_FILE = "city_map1.txt";
+
+    /**
+     * The first four bytes of a binary map.
+     */
+    private static final int MAGIC = 0x52524D50;
+
+    /**
+     * A text map converted to binary reads back with the same squares and vehicles,
+     * and converted back to text gives the same file.
+     *
+     * @throws IOException if a map cannot be read or written
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        final Path binary = Files.createTempFile("city", ".rrmp");
+        final Path text = Files.createTempFile("city", ".txt");
+        try {
+            MapConverter.convert(CITY_FILE, binary.toString());
+            assertEquals("The binary map differs from the text map!",
+                         FileLoaderTest.scan(CITY_FILE),
+                         FileLoaderTest.describe(FileLoader.readCity(binary.toString())));
+            MapConverter.convert(binary.toString(), text.toString());
+            assertEquals("The text map written back differs!",
+                         Files.readAllLines(Path.of(CITY_FILE)), Files.readAllLines(text));
+        } finally {
+            Files.deleteIfExists(binary);
+            Files.deleteIfExists(text);
+        }
+    }
+
+    /**
+     * A binary map read a chunk at a time has the same squares and vehicles as the
+     * map read whole.
+     *
+     * @throws IOException if a map cannot be read or written
+     */
+    @Test
+    public void testPagedMatchesWhole() throws IOException {
+        final Path binary = Files.createTempFile("city", ".rrmp");
+        try {
+            MapConverter.convert(CITY_FILE, binary.toString());
+            assertEquals("The paged map differs from the map read whole!",
+                         FileLoaderTest.describe(FileLoader.readCity(binary.toString())),
+                         FileLoaderTest.describe(FileLoader.readPagedCity(binary.toString(),
+                                                                          1)));
+        } finally {
+            Files.deleteIfExists(binary);
+        }
+    }
+
+    /**
+     * Binary maps that are cut short, or have the wrong magic number or version, are
+     * rejected.
+     *
+     * @throws IOException if a map cannot be read or written
+     */
+    @Test
+    public void testBadBinaryMapsRejected() throws IOException {
+        final Path binary = Files.createTempFile("city", ".rrmp");
+        try {
+            MapConverter.convert(CITY_FILE, binary.toString());
+            final byte[] bytes = Files.readAllBytes(binary);
+
+            assertRejected(Arrays.copyOf(bytes, bytes.length - 1), "cut short");
+            assertRejected(Arrays.copyOf(bytes, Integer.BYTES * 2), "Not a binary");
+
+            final byte[] version = bytes.clone();
+            ByteBuffer.wrap(version).putInt(Integer.BYTES, 2);
+            assertRejected(version, "version 2");
+
+            final byte[] magic = bytes.clone();
+            ByteBuffer.wrap(magic).putInt(0, MAGIC + 1);
+            final Path file = Files.createTempFile("city", ".rrmp");
+            try {
+                Files.write(file, magic);
+                final IOException error = assertThrows("A map without the magic number was"
+                                                       + " paged!", IOException.class,
+                    () -> FileLoader.readPagedCity(file.toString(), 1));
+                assertTrue("Wrong error: " + error.getMessage(),
+                           error.getMessage().contains("Only binary maps"));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        } finally {
+            Files.deleteIfExists(binary);
+        }
+    }
+
+    /**
+     * Checks that a binary map is rejected with a message.
+     *
+     * @param theBytes the bytes of the map
+     * @param theMessage part of the message expected
+     * @throws IOException if a temporary file cannot be written
+     */
+    private static void assertRejected(final byte[] theBytes, final String theMessage)
+        throws IOException {
+        final Path file = Files.createTempFile("city", ".rrmp");
+        try {
+            Files.write(file, theBytes);
+            final IOException error = assertThrows("A bad map was read!", IOException.class,
+                () -> FileLoader.readCity(file.toString()));
+            assertTrue("Wrong error: " + error.getMessage(),
+                       error.getMessage().contains(theMessage));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
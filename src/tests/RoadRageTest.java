@@ -0,0 +1,693 @@
+/*
+ * TCSS 305 - Road Rage
+ */
+
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import logic.ArrayRoadRage;
+import logic.PropertyChangeEnabledRoadRageControls;
+import logic.RoadRage;
+import logic.TerrainChunks;
+import logic.TickMode;
+import logic.VehicleDelta;
+import logic.WorldState;
+import model.ATV;
+import model.Bicycle;
+import model.Car;
+import model.Direction;
+import model.Human;
+import model.Light;
+import model.Taxi;
+import model.Terrain;
+import model.Truck;
+import model.Vehicle;
+import model.VehicleType;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the seeded random streams and vehicle events of RoadRage and
+ * ArrayRoadRage.
+ */
+public class RoadRageTest {
+
+    /**
+     * The city map the test maps are built from.
+     */
+    private static final String CITY_FILE = "city_map1.txt";
+
+    /**
+     * The number of copies of the city map across and down.
+     */
+    private static final int TILES = 4;
+
+    /**
+     * The number of vehicles, enough to split the parallel modes into several tasks.
+     */
+    private static final int FLEET = 3000;
+
+    /**
+     * The number of ticks to run.
+     */
+    private static final int TICKS = 300;
+
+    /**
+     * The master seed of the simulations.
+     */
+    private static final long SEED = 305;
+
+    /**
+     * The number of ticks between changes of the lights.
+     */
+    private static final int LIGHT_CHANGE_TICKS = 15;
+
+    /**
+     * The number of vehicle slots of a simulation with sources and sinks.
+     */
+    private static final int SLOTS = 20;
+
+    /**
+     * Two simulations with the same seed run the same way.
+     *
+     * @throws IOException if the city map cannot be read
+     */
+    @Test
+    public void testSameSeedReplays() throws IOException {
+        assertEquals("The same seed gave different runs!",
+                     run(objects(TickMode.SEQUENTIAL, 1, SEED)),
+                     run(objects(TickMode.SEQUENTIAL, 1, SEED)));
+    }
+
+    /**
+     * Two simulations with different seeds run differently.
+     *
+     * @throws IOException if the city map cannot be read
+     */
+    @Test
+    public void testDifferentSeedsDiffer() throws IOException {
+        assertNotEquals("Different seeds gave the same run!",
+                        run(objects(TickMode.SEQUENTIAL, 1, SEED)),
+                        run(objects(TickMode.SEQUENTIAL, 1, SEED + 1)));
+    }
+
+    /**
+     * The parallel tick modes give the same run with any number of threads.
+     *
+     * @throws IOException if the city map cannot be read
+     */
+    @Test
+    public void testParallelModesIgnoreThreadCount() throws IOException {
+        final List<Long> synchronous = run(objects(TickMode.SYNCHRONOUS, 1, SEED));
+        assertEquals("SYNCHRONOUS depends on the number of threads!", synchronous,
+                     run(objects(TickMode.SYNCHRONOUS, 4, SEED)));
+        assertEquals("PARTITIONED differs from SYNCHRONOUS!", synchronous,
+                     run(objects(TickMode.PARTITIONED, 4, SEED)));
+    }
+
+    /**
+     * ArrayRoadRage replays the same run as RoadRage from the same seed.
+     *
+     * @throws IOException if the city map cannot be read
+     */
+    @Test
+    public void testArraysMatchObjects() throws IOException {
+        final ArrayRoadRage arrays = new ArrayRoadRage(grid(), fleet());
+        arrays.setSeed(SEED);
+        assertEquals("ArrayRoadRage differs from RoadRage!",
+                     run(objects(TickMode.SEQUENTIAL, 1, SEED)), run(arrays));
+    }
+
+    /**
+     * Applying every batch of changes to a copy of the fleet keeps it equal to the
+     * full list of vehicles.
+     *
+     * @throws IOException if the city map cannot be read
+     */
+    @Test
+    public void testDeltasRebuildFleet() throws IOException {
+        final RoadRage roadRage = objects(TickMode.SEQUENTIAL, 1, SEED);
+        final List<String> mismatches = mirror(roadRage, FLEET);
+        roadRage.start();
+        for (int i = 0; i < TICKS; i++) {
+            roadRage.advance();
+        }
+        assertEquals("The deltas missed changes!", List.of(), mismatches);
+    }
+
+    /**
+     * The first batch of changes after a reset lists every vehicle, so a copy of the
+     * fleet rebuilt from it matches, in both engines and after vehicles have spawned.
+     *
+     * @throws IOException if the city map cannot be read
+     */
+    @Test
+    public void testDeltasRebuildFleetAfterReset() throws IOException {
+        final List<PropertyChangeEnabledRoadRageControls> engines =
+                        List.of(objects(TickMode.SEQUENTIAL, 1, SEED), sourcesAndSinks());
+        final int[] capacities = {FLEET, SLOTS};
+        for (int e = 0; e < engines.size(); e++) {
+            final PropertyChangeEnabledRoadRageControls roadRage = engines.get(e);
+            final List<String> mismatches = mirror(roadRage, capacities[e]);
+            final VehicleDelta[] last = new VehicleDelta[1];
+            roadRage.addPropertyChangeListener(
+                PropertyChangeEnabledRoadRageControls.PROPERTY_VEHICLE_DELTAS,
+                theEvent -> last[0] = (VehicleDelta) theEvent.getNewValue());
+            roadRage.start();
+            for (int i = 0; i < TICKS / 2; i++) {
+                roadRage.advance();
+            }
+            roadRage.reset();
+            assertTrue("The batch after a reset left vehicles out!",
+                       last[0].isFull() && last[0].size() == last[0].getVehicleCount());
+            for (int i = 0; i < TICKS / 2; i++) {
+                roadRage.advance();
+            }
+            assertEquals("The deltas after a reset missed changes!", List.of(), mismatches);
+        }
+    }
+
+    /**
+     * The published world state matches the fleet after every tick, and the state
+     * published the tick before is left alone while the next one is filled.
+     *
+     * @throws IOException if the city map cannot be read
+     */
+    @Test
+    public void testWorldStateMatchesFleet() throws IOException {
+        final ArrayRoadRage roadRage = new ArrayRoadRage(grid(), fleet());
+        final List<String> mismatches = new ArrayList<>();
+        final WorldState[] last = new WorldState[1];
+        final long[] lastStamp = new long[1];
+        roadRage.setVehicleListEvents(true);
+        roadRage.addPropertyChangeListener(
+            PropertyChangeEnabledRoadRageControls.PROPERTY_VEHICLES, theEvent -> {
+                final List<?> vehicles = (List<?>) theEvent.getNewValue();
+                final WorldState world = roadRage.getWorldState();
+                final long stamp = world.getStamp();
+                for (int i = 0; i < vehicles.size(); i++) {
+                    final Vehicle v = (Vehicle) vehicles.get(i);
+                    if (v.getX() != world.getX(i) || v.getY() != world.getY(i)
+                        || v.getDirection() != world.getDirection(i)
+                        || v.isAlive() != world.isAlive(i)) {
+                        mismatches.add("vehicle " + i + " at " + world.getTimestep());
+                    }
+                }
+                if (world == last[0] || last[0] != null
+                    && !last[0].isUnchangedSince(lastStamp[0])) {
+                    mismatches.add("buffer at " + world.getTimestep());
+                }
+                last[0] = world;
+                lastStamp[0] = stamp;
+            });
+        roadRage.start();
+        for (int i = 0; i < TICKS; i++) {
+            roadRage.advance();
+        }
+        assertEquals("The world state differs from the fleet!", List.of(), mismatches);
+    }
+
+    /**
+     * The live and dead vehicles counted in each block of the world state are the
+     * vehicles of the fleet in that block.
+     *
+     * @throws IOException if the city map cannot be read
+     */
+    @Test
+    public void testDensityCountsFleet() throws IOException {
+        final RoadRage roadRage = objects(TickMode.SEQUENTIAL, 1, SEED);
+        roadRage.start();
+        for (int i = 0; i < TICKS; i++) {
+            roadRage.advance();
+        }
+        final WorldState world = roadRage.getWorldState();
+        final int[][] alive = new int[world.getDensityRows()][world.getDensityColumns()];
+        final int[][] dead = new int[world.getDensityRows()][world.getDensityColumns()];
+        for (int i = 0; i < world.getVehicleCount(); i++) {
+            final int row = world.getY(i) / WorldState.DENSITY_BLOCK;
+            final int col = world.getX(i) / WorldState.DENSITY_BLOCK;
+            if (world.isAlive(i)) {
+                alive[row][col]++;
+            } else {
+                dead[row][col]++;
+            }
+        }
+        for (int row = 0; row < alive.length; row++) {
+            for (int col = 0; col < alive[row].length; col++) {
+                assertEquals("Wrong live count in block " + col + ", " + row + "!",
+                             alive[row][col], world.getAliveCount(col, row));
+                assertEquals("Wrong dead count in block " + col + ", " + row + "!",
+                             dead[row][col], world.getDeadCount(col, row));
+            }
+        }
+    }
+
+    /**
+     * A map kept in chunks, holding as few of them as it may, has the same squares as
+     * the grid it was made from, and its simulation runs the same way.
+     *
+     * @throws IOException if the city map cannot be read
+     */
+    @Test
+    public void testChunksMatchGrid() throws IOException {
+        final Terrain[][] grid = grid();
+        final ByteBuffer letters = ByteBuffer.allocate(grid.length * grid[0].length);
+        for (final Terrain[] row : grid) {
+            for (final Terrain terrain : row) {
+                letters.put((byte) terrain.letter());
+            }
+        }
+        letters.flip();
+        final TerrainChunks chunks = new TerrainChunks(letters, grid[0].length,
+                                                       grid.length, 1);
+        for (int y = -1; y <= grid.length; y++) {
+            for (int x = -1; x <= grid[0].length; x++) {
+                final boolean onMap = 0 <= y && y < grid.length && 0 <= x
+                                      && x < grid[y].length;
+                assertEquals("Wrong square " + x + ", " + y + "!",
+                             onMap ? grid[y][x] : null, chunks.get(x, y));
+            }
+        }
+        final RoadRage paged = new RoadRage(chunks, fleet());
+        paged.setSeed(SEED);
+        assertEquals("The chunked map differs from the grid!",
+                     run(objects(TickMode.SEQUENTIAL, 1, SEED)), run(paged));
+    }
+
+    /**
+     * A map kept in chunks, holding as few of them as it may, runs the same way as
+     * the grid in the parallel tick modes, while several threads read and drop its
+     * chunks at once.
+     *
+     * @throws IOException if the city map cannot be read
+     */
+    @Test
+    public void testChunksMatchGridInParallel() throws IOException {
+        final Terrain[][] grid = grid();
+        final ByteBuffer letters = ByteBuffer.allocate(grid.length * grid[0].length);
+        for (final Terrain[] row : grid) {
+            for (final Terrain terrain : row) {
+                letters.put((byte) terrain.letter());
+            }
+        }
+        letters.flip();
+        final List<Long> expected = run(objects(TickMode.SYNCHRONOUS, 1, SEED));
+        for (final TickMode mode : new TickMode[] {TickMode.SYNCHRONOUS,
+            TickMode.PARTITIONED}) {
+            final RoadRage paged = new RoadRage(new TerrainChunks(letters, grid[0].length,
+                                                                  grid.length, 1), fleet());
+            paged.setSeed(SEED);
+            paged.setTickMode(mode);
+            paged.setPool(new ForkJoinPool(4));
+            assertEquals("The chunked map differs from the grid in " + mode + "!",
+                         expected, run(paged));
+        }
+    }
+
+    /**
+     * Vehicles spawned at a source and retired at sinks reuse the slots of the ones
+     * retired before them, and a reset takes the simulation back to its fleet.
+     *
+     * @throws IOException if the city map cannot be read
+     */
+    @Test
+    public void testSinksFreeSlotsForSources() throws IOException {
+        final ArrayRoadRage roadRage = sourcesAndSinks();
+        roadRage.start();
+        for (int i = 0; i < TICKS; i++) {
+            roadRage.advance();
+        }
+        final WorldState world = roadRage.getWorldState();
+        int active = 0;
+        for (int i = 0; i < world.getVehicleCount(); i++) {
+            if (world.getType(i) != null) {
+                active++;
+            }
+        }
+        assertTrue("Slots were used beyond the capacity!",
+                   roadRage.getVehicleCount() <= SLOTS);
+        assertTrue("No slot was reused!", roadRage.getSpawnCount() > SLOTS);
+        assertEquals("Spawned and retired vehicles do not add up!",
+                     1 + roadRage.getSpawnCount() - roadRage.getRetireCount(), active);
+        assertEquals("A vehicle due was neither spawned nor dropped!", TICKS,
+                     roadRage.getSpawnCount() + roadRage.getDropCount());
+        roadRage.reset();
+        assertEquals("Reset did not bring back the fleet!", 1,
+                     roadRage.getWorldState().getVehicleCount());
+    }
+
+    /**
+     * A source only spawns vehicles at a finite rate that is not negative.
+     *
+     * @throws IOException if the city map cannot be read
+     */
+    @Test
+    public void testSourceRejectsBadRates() throws IOException {
+        final ArrayRoadRage roadRage = new ArrayRoadRage(grid(), SLOTS);
+        for (final double rate : new double[] {-1, Double.NaN, Double.POSITIVE_INFINITY}) {
+            assertThrows("A source accepted the rate " + rate + "!",
+                         IllegalArgumentException.class,
+                         () -> roadRage.addSource(VehicleType.CAR, 1, 1, Direction.EAST, rate));
+        }
+    }
+
+    /**
+     * A published world state keeps the types its vehicles had in its tick while
+     * slots are freed and filled again, and the deltas report every slot whose type
+     * changed.
+     *
+     * @throws IOException if the city map cannot be read
+     */
+    @Test
+    public void testFreedSlotsKeepPublishedTypes() throws IOException {
+        final ArrayRoadRage roadRage = sourcesAndSinks();
+        final VehicleType[] mirror = new VehicleType[SLOTS];
+        roadRage.addPropertyChangeListener(
+            PropertyChangeEnabledRoadRageControls.PROPERTY_VEHICLE_DELTAS, theEvent -> {
+                final VehicleDelta delta = (VehicleDelta) theEvent.getNewValue();
+                for (int k = 0; k < delta.size(); k++) {
+                    mirror[delta.getIndex(k)] = delta.getType(k);
+                }
+            });
+        roadRage.start();
+        for (int t = 0; t < TICKS; t++) {
+            final WorldState last = roadRage.getWorldState();
+            final long stamp = last.getStamp();
+            final VehicleType[] types = new VehicleType[last.getVehicleCount()];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = last.getType(i);
+            }
+            roadRage.advance();
+            for (int i = 0; i < types.length; i++) {
+                assertEquals("Vehicle " + i + " changed type in a published state!",
+                             types[i], last.getType(i));
+            }
+            assertTrue("A published state was filled again!", last.isUnchangedSince(stamp));
+            final WorldState world = roadRage.getWorldState();
+            for (int i = 0; i < world.getVehicleCount(); i++) {
+                assertEquals("The deltas missed the type of vehicle " + i + "!",
+                             world.getType(i), mirror[i]);
+            }
+        }
+    }
+
+    /**
+     * The passability tables of the vehicle types, and the vehicles of ArrayRoadRage
+     * that use them, answer as the canPass methods of the vehicle classes do for every
+     * terrain, off the map too, and every light.
+     *
+     * @throws IOException if the city map cannot be read
+     */
+    @Test
+    public void testPassTablesMatchVehicles() throws IOException {
+        final VehicleType[] types = VehicleType.values();
+        final ArrayRoadRage roadRage = new ArrayRoadRage(grid(), types.length);
+        for (final VehicleType type : types) {
+            roadRage.addVehicle(type, 0, 0, Direction.NORTH);
+        }
+        final List<Vehicle> views = new ArrayList<>();
+        roadRage.setVehicleListEvents(true);
+        roadRage.addPropertyChangeListener(
+            PropertyChangeEnabledRoadRageControls.PROPERTY_VEHICLES, theEvent -> {
+                views.clear();
+                for (final Object o : (List<?>) theEvent.getNewValue()) {
+                    views.add((Vehicle) o);
+                }
+            });
+        roadRage.start();
+        final List<Terrain> terrains = new ArrayList<>(Arrays.asList(Terrain.values()));
+        terrains.add(null);
+        for (final VehicleType type : types) {
+            final Vehicle vehicle = type.create(0, 0, Direction.NORTH);
+            for (final Terrain terrain : terrains) {
+                for (final Light light : Light.values()) {
+                    final String combination = type + " on " + terrain + " at " + light;
+                    assertEquals("Wrong table for " + combination + "!",
+                                 vehicle.canPass(terrain, light), type.canPass(terrain, light));
+                    assertEquals("Wrong kernel for " + combination + "!",
+                                 vehicle.canPass(terrain, light),
+                                 views.get(type.ordinal()).canPass(terrain, light));
+                }
+            }
+        }
+    }
+
+    /**
+     * RoadRage moves vehicles of the model classes by their passability bits, and
+     * vehicles of other classes by their own canPass, the same way in both tick modes
+     * and the same way as ArrayRoadRage, on a map with every terrain while the lights
+     * go through every color.
+     *
+     * @throws IOException if the city map cannot be read
+     */
+    @Test
+    public void testPassTablesMatchInBothEngines() throws IOException {
+        final Terrain[][] grid = grid();
+        for (final Terrain terrain : Terrain.values()) {
+            assertTrue("The map has no " + terrain + "!",
+                       Arrays.stream(grid).anyMatch(theRow -> Arrays.asList(theRow)
+                                                                    .contains(terrain)));
+        }
+        assertTrue("The lights do not go through every color!",
+                   TICKS > Light.values().length * LIGHT_CHANGE_TICKS);
+        final ArrayRoadRage arrays = new ArrayRoadRage(grid, fleet());
+        arrays.setSeed(SEED);
+        final List<Long> expected = run(arrays);
+        for (final TickMode mode : new TickMode[] {TickMode.SEQUENTIAL, TickMode.SYNCHRONOUS}) {
+            final RoadRage objects = objects(mode, 1, SEED);
+            final List<Vehicle> disguised = new ArrayList<>();
+            for (final Vehicle v : fleet()) {
+                disguised.add(disguise(v));
+            }
+            assertEquals("A disguised vehicle has a type!", null,
+                         VehicleType.of(disguised.get(0)));
+            final RoadRage others = new RoadRage(grid, disguised);
+            others.setSeed(SEED);
+            others.setTickMode(mode);
+            if (mode == TickMode.SEQUENTIAL) {
+                assertEquals("RoadRage differs from ArrayRoadRage!", expected, run(objects));
+                assertEquals("Vehicles of other classes move differently!", expected,
+                             run(others));
+            } else {
+                assertEquals("Vehicles of other classes move differently in " + mode + "!",
+                             run(objects), run(others));
+            }
+        }
+    }
+
+    /**
+     * Creates an ArrayRoadRage simulation of one human and a source of cars, with a
+     * sink on every light.
+     *
+     * @return the simulation
+     * @throws IOException if the city map cannot be read
+     */
+    private static ArrayRoadRage sourcesAndSinks() throws IOException {
+        final Terrain[][] grid = grid();
+        final ArrayRoadRage result = new ArrayRoadRage(grid, SLOTS);
+        result.addVehicle(VehicleType.HUMAN, 3, 2, Direction.WEST);
+        result.addSource(VehicleType.CAR, 1, 1, Direction.EAST, 1);
+        for (int y = 0; y < grid.length; y++) {
+            for (int x = 0; x < grid[y].length; x++) {
+                if (grid[y][x] == Terrain.LIGHT) {
+                    result.addSink(x, y);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a RoadRage simulation of the test fleet.
+     *
+     * @param theMode the tick mode
+     * @param theThreads the number of threads of its pool
+     * @param theSeed the master seed
+     * @return the simulation
+     * @throws IOException if the city map cannot be read
+     */
+    private static RoadRage objects(final TickMode theMode, final int theThreads,
+                                    final long theSeed) throws IOException {
+        final RoadRage result = new RoadRage(grid(), fleet());
+        result.setSeed(theSeed);
+        result.setTickMode(theMode);
+        result.setPool(new ForkJoinPool(theThreads));
+        return result;
+    }
+
+    /**
+     * Keeps a copy of the fleet of a simulation from its batches of changes, starting
+     * again at every batch that lists every vehicle, and compares it with the full
+     * list of vehicles after every tick. Changes without a type are free slots, which
+     * the list leaves out.
+     *
+     * @param theRoadRage the simulation
+     * @param theCapacity the most vehicles the simulation can hold
+     * @return the vehicles the copy got wrong, filled in as the simulation runs
+     */
+    private static List<String> mirror(final PropertyChangeEnabledRoadRageControls theRoadRage,
+                                       final int theCapacity) {
+        final int[][] mirror = new int[theCapacity][];
+        final List<String> result = new ArrayList<>();
+        theRoadRage.setVehicleListEvents(true);
+        theRoadRage.addPropertyChangeListener(
+            PropertyChangeEnabledRoadRageControls.PROPERTY_VEHICLE_DELTAS, theEvent -> {
+                final VehicleDelta delta = (VehicleDelta) theEvent.getNewValue();
+                if (delta.isFull()) {
+                    Arrays.fill(mirror, null);
+                }
+                for (int k = 0; k < delta.size(); k++) {
+                    if (delta.getType(k) == null) {
+                        mirror[delta.getIndex(k)] = null;
+                    } else {
+                        mirror[delta.getIndex(k)] = new int[] {delta.getX(k), delta.getY(k),
+                            delta.getDirection(k).ordinal(), delta.isAlive(k) ? 1 : 0};
+                    }
+                }
+            });
+        theRoadRage.addPropertyChangeListener(
+            PropertyChangeEnabledRoadRageControls.PROPERTY_VEHICLES, theEvent -> {
+                final List<int[]> copies = new ArrayList<>();
+                for (final int[] copy : mirror) {
+                    if (copy != null) {
+                        copies.add(copy);
+                    }
+                }
+                final List<?> vehicles = (List<?>) theEvent.getNewValue();
+                for (int i = 0; i < vehicles.size(); i++) {
+                    final Vehicle v = (Vehicle) vehicles.get(i);
+                    final int[] expected = {v.getX(), v.getY(), v.getDirection().ordinal(),
+                        v.isAlive() ? 1 : 0};
+                    if (i >= copies.size() || !Arrays.equals(expected, copies.get(i))) {
+                        result.add("vehicle " + i);
+                    }
+                }
+            });
+        return result;
+    }
+
+    /**
+     * Runs a simulation and records the state of its fleet after every tick.
+     *
+     * @param theRoadRage the simulation
+     * @return a hash of the position, direction and health of the fleet, per tick
+     */
+    private static List<Long> run(final PropertyChangeEnabledRoadRageControls theRoadRage) {
+        final List<Long> result = new ArrayList<>();
+        theRoadRage.setVehicleListEvents(true);
+        theRoadRage.addPropertyChangeListener(
+            PropertyChangeEnabledRoadRageControls.PROPERTY_VEHICLES, theEvent -> {
+                long hash = 0;
+                for (final Object o : (List<?>) theEvent.getNewValue()) {
+                    final Vehicle v = (Vehicle) o;
+                    hash = 31 * hash + v.getX();
+                    hash = 31 * hash + v.getY();
+                    hash = 31 * hash + v.getDirection().ordinal();
+                    hash = 31 * hash + (v.isAlive() ? 1 : 0);
+                }
+                result.add(hash);
+            });
+        theRoadRage.start();
+        for (int i = 0; i < TICKS; i++) {
+            theRoadRage.advance();
+        }
+        return result;
+    }
+
+    /**
+     * Builds the test map from copies of the city map.
+     *
+     * @return the grid
+     * @throws IOException if the city map cannot be read
+     */
+    private static Terrain[][] grid() throws IOException {
+        final List<String> city = Files.readAllLines(Paths.get(CITY_FILE));
+        final String[] size = city.get(0).trim().split("\\s+");
+        final int height = Integer.parseInt(size[0]);
+        final int width = Integer.parseInt(size[1]);
+        final Terrain[][] result = new Terrain[height * TILES][width * TILES];
+        for (int y = 0; y < result.length; y++) {
+            for (int x = 0; x < result[y].length; x++) {
+                result[y][x] = Terrain.valueOf(city.get(1 + y % height).charAt(x % width));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a copy of a vehicle whose class is not one of the model classes, so that
+     * it has no VehicleType, but which behaves the same way.
+     *
+     * @param theVehicle the vehicle
+     * @return the copy
+     */
+    private static Vehicle disguise(final Vehicle theVehicle) {
+        final int x = theVehicle.getX();
+        final int y = theVehicle.getY();
+        final Direction dir = theVehicle.getDirection();
+        final Vehicle result;
+        switch (VehicleType.of(theVehicle)) {
+            case ATV:
+                result = new ATV(x, y, dir) { };
+                break;
+
+            case BICYCLE:
+                result = new Bicycle(x, y, dir) { };
+                break;
+
+            case CAR:
+                result = new Car(x, y, dir) { };
+                break;
+
+            case HUMAN:
+                result = new Human(x, y, dir) { };
+                break;
+
+            case TAXI:
+                result = new Taxi(x, y, dir) { };
+                break;
+
+            default:
+                result = new Truck(x, y, dir) { };
+                break;
+        }
+        return result;
+    }
+
+    /**
+     * Builds the test fleet, a fixed mix of every vehicle type on squares they can
+     * drive on.
+     *
+     * @return the vehicles
+     * @throws IOException if the city map cannot be read
+     */
+    private static List<Vehicle> fleet() throws IOException {
+        final Terrain[][] grid = grid();
+        final Random random = new Random(SEED);
+        final List<Vehicle> result = new ArrayList<>();
+        while (result.size() < FLEET) {
+            final int y = random.nextInt(grid.length);
+            final int x = random.nextInt(grid[y].length);
+            final VehicleType type =
+                            VehicleType.values()[random.nextInt(VehicleType.values().length)];
+            final Vehicle v = type.create(x, y,
+                            Direction.values()[random.nextInt(Direction.values().length)]);
+            if (v.canPass(grid[y][x], Light.GREEN)) {
+                result.add(v);
+            }
+        }
+        return result;
+    }
+}
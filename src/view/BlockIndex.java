@@ -0,0 +1,244 @@
+/*
+ * TCSS 305 - Road Rage
+ */
+
+package view;
+
+import java.util.Arrays;
+import logic.TerrainMap;
+import logic.WorldState;
+import model.Terrain;
+
+/**
+ * Divides a map into square blocks of squares, and lists the light and cross walk
+ * squares and the vehicles in each block, so that drawing an area of the map only
+ * looks at the blocks it covers.
+ */
+final class BlockIndex {
+
+    /**
+     * The number of squares along a side of a block, the same as the blocks whose
+     * vehicles the simulation counts.
+     */
+    static final int BLOCK_SQUARES = WorldState.DENSITY_BLOCK;
+
+    /**
+     * The width of the map in squares.
+     */
+    private final int myWidth;
+
+    /**
+     * The height of the map in squares.
+     */
+    private final int myHeight;
+
+    /**
+     * The number of blocks across the map.
+     */
+    private final int myColumns;
+
+    /**
+     * The number of blocks down the map.
+     */
+    private final int myRows;
+
+    /**
+     * The light and cross walk squares of each block, as y * width + x.
+     */
+    private final int[][] myLights;
+
+    /**
+     * The position in myVehicles of the first vehicle of each block; the last entry
+     * is the number of vehicles indexed.
+     */
+    private final int[] myFirst;
+
+    /**
+     * The vehicles of each block in turn, in index order within a block.
+     */
+    private int[] myVehicles;
+
+    /**
+     * Creates an index of a map, with no vehicles.
+     *
+     * @param theGrid the terrain of the map, with at least one square
+     */
+    BlockIndex(final TerrainMap theGrid) {
+        myHeight = theGrid.getHeight();
+        myWidth = theGrid.getWidth();
+        myColumns = (myWidth + BLOCK_SQUARES - 1) / BLOCK_SQUARES;
+        myRows = (myHeight + BLOCK_SQUARES - 1) / BLOCK_SQUARES;
+        myFirst = new int[myColumns * myRows + 1];
+        myVehicles = new int[0];
+
+        final int[] counts = new int[myColumns * myRows];
+        for (int y = 0; y < myHeight; y++) {
+            for (int x = 0; x < myWidth; x++) {
+                if (isLight(theGrid.get(x, y))) {
+                    counts[blockOf(x, y)]++;
+                }
+            }
+        }
+        myLights = new int[counts.length][];
+        for (int b = 0; b < counts.length; b++) {
+            myLights[b] = new int[counts[b]];
+        }
+        Arrays.fill(counts, 0);
+        for (int y = 0; y < myHeight; y++) {
+            for (int x = 0; x < myWidth; x++) {
+                if (isLight(theGrid.get(x, y))) {
+                    final int block = blockOf(x, y);
+                    myLights[block][counts[block]] = y * myWidth + x;
+                    counts[block]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Files every vehicle of a state under the block it is in, replacing the vehicles
+     * indexed before. Vehicles off the map are left out.
+     *
+     * @param theWorld the state of the simulation
+     */
+    void index(final WorldState theWorld) {
+        final int count = theWorld.getVehicleCount();
+        if (myVehicles.length < count) {
+            myVehicles = new int[count];
+        }
+        // a counting sort keeps the vehicles of a block in index order
+        Arrays.fill(myFirst, 0);
+        for (int i = 0; i < count; i++) {
+            final int block = blockOf(theWorld, i);
+            if (block >= 0) {
+                myFirst[block + 1]++;
+            }
+        }
+        for (int b = 1; b < myFirst.length; b++) {
+            myFirst[b] += myFirst[b - 1];
+        }
+        final int[] next = Arrays.copyOf(myFirst, myFirst.length - 1);
+        for (int i = 0; i < count; i++) {
+            final int block = blockOf(theWorld, i);
+            if (block >= 0) {
+                myVehicles[next[block]] = i;
+                next[block]++;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of blocks across the map.
+     *
+     * @return the number of blocks across
+     */
+    int getColumns() {
+        return myColumns;
+    }
+
+    /**
+     * Returns the number of blocks down the map.
+     *
+     * @return the number of blocks down
+     */
+    int getRows() {
+        return myRows;
+    }
+
+    /**
+     * Returns the width of the map in squares.
+     *
+     * @return the width of the map
+     */
+    int getWidth() {
+        return myWidth;
+    }
+
+    /**
+     * Returns the height of the map in squares.
+     *
+     * @return the height of the map
+     */
+    int getHeight() {
+        return myHeight;
+    }
+
+    /**
+     * Returns the block a square is in.
+     *
+     * @param theX the x-coordinate of the square, on the map
+     * @param theY the y-coordinate of the square, on the map
+     * @return the block, as row * columns + column
+     */
+    int blockOf(final int theX, final int theY) {
+        return theY / BLOCK_SQUARES * myColumns + theX / BLOCK_SQUARES;
+    }
+
+    /**
+     * Returns the light and cross walk squares of a block. The array must not be
+     * changed.
+     *
+     * @param theBlock the block
+     * @return the squares, as y * width + x
+     */
+    int[] getLights(final int theBlock) {
+        return myLights[theBlock];
+    }
+
+    /**
+     * Returns the position in getVehicle of the first vehicle of a block.
+     *
+     * @param theBlock the block
+     * @return the position of its first vehicle
+     */
+    int getFirst(final int theBlock) {
+        return myFirst[theBlock];
+    }
+
+    /**
+     * Returns the position in getVehicle just past the last vehicle of a block.
+     *
+     * @param theBlock the block
+     * @return the position past its last vehicle
+     */
+    int getEnd(final int theBlock) {
+        return myFirst[theBlock + 1];
+    }
+
+    /**
+     * Returns an indexed vehicle.
+     *
+     * @param thePosition the position of the vehicle in the index
+     * @return the index of the vehicle in the simulation
+     */
+    int getVehicle(final int thePosition) {
+        return myVehicles[thePosition];
+    }
+
+    /**
+     * Returns the block a vehicle is in.
+     *
+     * @param theWorld the state of the simulation
+     * @param theVehicle the index of the vehicle
+     * @return the block, or -1 if the vehicle is off the map
+     */
+    private int blockOf(final WorldState theWorld, final int theVehicle) {
+        final int x = theWorld.getX(theVehicle);
+        final int y = theWorld.getY(theVehicle);
+        int result = -1;
+        if (0 <= x && x < myWidth && 0 <= y && y < myHeight) {
+            result = blockOf(x, y);
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether a square is drawn in the color of the lights.
+     *
+     * @param theTerrain the terrain of the square
+     * @return true for light and cross walk squares
+     */
+    private static boolean isLight(final Terrain theTerrain) {
+        return theTerrain == Terrain.LIGHT || theTerrain == Terrain.CROSSWALK;
+    }
+}
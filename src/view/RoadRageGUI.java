@@ -4,10 +4,14 @@
 
 package view;
 
+import static logic.PropertyChangeEnabledRoadRageControls.PROPERTY_GRID;
+
 import java.awt.BorderLayout;
 import java.awt.Container;
 import java.awt.Dimension;
+import java.awt.DisplayMode;
 import java.awt.FlowLayout;
+import java.awt.GraphicsEnvironment;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -16,12 +20,15 @@ import javax.swing.JCheckBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
 import javax.swing.JSlider;
 import javax.swing.SwingConstants;
 import javax.swing.Timer;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import logic.PropertyChangeEnabledRoadRageControls;
+import logic.SimulationThread;
+import logic.SimulationThread.Command;
 import view.util.FileLoader;
 
 /**
@@ -55,6 +62,26 @@ public class RoadRageGUI extends JFrame implements ActionListener {
     /** The Dimension of the screen. */
     private static final Dimension SCREEN_SIZE = KIT.getScreenSize();
 
+    /**
+     * The largest part of the screen the window takes up at first, in tenths.
+     */
+    private static final int SCREEN_TENTHS = 9;
+
+    /**
+     * The number of tenths in a whole.
+     */
+    private static final int TENTHS = 10;
+
+    /**
+     * The Zoom In command.
+     */
+    private static final String ZOOM_IN_COMMAND = "Zoom In";
+
+    /**
+     * The Zoom Out command.
+     */
+    private static final String ZOOM_OUT_COMMAND = "Zoom Out";
+
     /**
      * The Start command.
      */
@@ -81,10 +108,16 @@ public class RoadRageGUI extends JFrame implements ActionListener {
     private static final int INITIAL_FRAMES_PER_SECOND = 10;
 
     /**
-     * The maximum frames per second at which the simulation will run.
+     * The maximum frames per second at which the simulation will run, other than in
+     * turbo mode.
      */
     private static final int MAX_FRAMES_PER_SECOND = 60;
 
+    /**
+     * The refresh rate to assume when the display does not report one.
+     */
+    private static final int DEFAULT_REFRESH_RATE = 60;
+
     /**
      * The numerator for delay calculations.
      */
@@ -104,14 +137,20 @@ public class RoadRageGUI extends JFrame implements ActionListener {
     // Instance Fields
     
     /**
-     * The delay between updates, based on the frames per second setting.
+     * A timer used to show the newest state of the simulation at the display refresh
+     * rate.
      */
-    private int myDelay;
+    private final Timer myTimer;
 
     /**
-     * A timer used to update the state of the simulation.
+     * The thread that advances the simulation.
      */
-    private final Timer myTimer;
+    private final SimulationThread mySimulation;
+
+    /**
+     * The panel that draws the simulation.
+     */
+    private RoadRagePanel myPanel;
 
     /**
      * The slider for "frames per second".
@@ -133,14 +172,17 @@ public class RoadRageGUI extends JFrame implements ActionListener {
         super(TITLE);
         // initialize instance fields
         
-        myDelay = MY_DELAY_NUMERATOR / INITIAL_FRAMES_PER_SECOND;
-        myTimer = new Timer(myDelay, this);        
+        myTimer = new Timer(MY_DELAY_NUMERATOR / refreshRate(), this);        
 
         myRoadRage = FileLoader.readCity(this);
+        mySimulation = new SimulationThread(myRoadRage, INITIAL_FRAMES_PER_SECOND);
         
         initGUI();
         
+        // the simulation belongs to its own thread once that is started
         myRoadRage.start();
+        mySimulation.start();
+        myTimer.start();
         setVisible(true);
     }
     
@@ -155,7 +197,8 @@ public class RoadRageGUI extends JFrame implements ActionListener {
         
         final RoadRagePanel panel = 
                         new RoadRagePanel(myRoadRage.getWidth(), myRoadRage.getHeight()); 
-        myRoadRage.addPropertyChangeListener(panel);
+        myRoadRage.addPropertyChangeListener(PROPERTY_GRID, panel);
+        myPanel = panel;
   
         mySlider = new JSlider(SwingConstants.HORIZONTAL, 0, MAX_FRAMES_PER_SECOND,
                                INITIAL_FRAMES_PER_SECOND);
@@ -168,9 +211,23 @@ public class RoadRageGUI extends JFrame implements ActionListener {
             @Override
             public void stateChanged(final ChangeEvent theEvent) {
                 final int value = mySlider.getValue();
-                if (value > 0) {
-                    myDelay = MY_DELAY_NUMERATOR / value;
-                    myTimer.setDelay(myDelay);
+                if (value > 0 && mySlider.isEnabled()) {
+                    mySimulation.setTicksPerSecond(value);
+                }
+            }
+        });
+
+        final JCheckBox turbo = new JCheckBox("Turbo");
+        turbo.addActionListener(new ActionListener() {
+            /** Called in response to turbo box events in this window. */
+            @Override
+            public void actionPerformed(final ActionEvent theEvent) {
+                // as fast as the simulation can go, showing only some of the ticks
+                mySlider.setEnabled(!turbo.isSelected());
+                if (turbo.isSelected()) {
+                    mySimulation.setTicksPerSecond(SimulationThread.TURBO);
+                } else if (mySlider.getValue() > 0) {
+                    mySimulation.setTicksPerSecond(mySlider.getValue());
                 }
             }
         });
@@ -184,21 +241,26 @@ public class RoadRageGUI extends JFrame implements ActionListener {
         northPanel.add(makeButton(STOP_COMMAND));
         northPanel.add(makeButton(STEP_COMMAND));
         northPanel.add(makeButton(RESET_COMMAND));
+        northPanel.add(makeButton(ZOOM_IN_COMMAND));
+        northPanel.add(makeButton(ZOOM_OUT_COMMAND));
 
         final Container southPanel = new JPanel(new FlowLayout());
         southPanel.add(new JLabel("FPS: "));
         southPanel.add(mySlider);
+        southPanel.add(turbo);
         southPanel.add(box);
 
         final Container masterPanel = new JPanel(new BorderLayout());
-        masterPanel.add(panel, BorderLayout.CENTER);
+        // the map scrolls when it is larger than the window
+        masterPanel.add(new JScrollPane(panel), BorderLayout.CENTER);
         masterPanel.add(northPanel, BorderLayout.NORTH);
         masterPanel.add(southPanel, BorderLayout.SOUTH);
 
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        setResizable(false);
         add(masterPanel);
         pack();
+        setSize(Math.min(getWidth(), SCREEN_SIZE.width * SCREEN_TENTHS / TENTHS),
+                Math.min(getHeight(), SCREEN_SIZE.height * SCREEN_TENTHS / TENTHS));
         // position the frame in the center of the screen
         setLocation(SCREEN_SIZE.width / 2 - getWidth() / 2,
                     SCREEN_SIZE.height / 2 - getHeight() / 2);
@@ -225,19 +287,23 @@ public class RoadRageGUI extends JFrame implements ActionListener {
     public void actionPerformed(final ActionEvent theEvent) {
         final Object source = theEvent.getSource();
         if (source.equals(myTimer)) {
-            // event came from the timer
-            myRoadRage.advance();
+            // event came from the timer, show the newest tick
+            myPanel.showWorld(myRoadRage.getWorldState());
         } else {
             // event came from one of the buttons
             final String command = theEvent.getActionCommand().intern();
             if (command.equals(START_COMMAND)) {
-                myTimer.start();
+                mySimulation.send(Command.START);
             } else if (command.equals(STOP_COMMAND)) {
-                myTimer.stop();
+                mySimulation.send(Command.STOP);
             } else if (command.equals(STEP_COMMAND)) {
-                myRoadRage.advance();
+                mySimulation.send(Command.STEP);
             } else if (command.equals(RESET_COMMAND)) {
                 reset();
+            } else if (command.equals(ZOOM_IN_COMMAND)) {
+                myPanel.zoom(1);
+            } else if (command.equals(ZOOM_OUT_COMMAND)) {
+                myPanel.zoom(-1);
             }
         }
     }
@@ -247,8 +313,22 @@ public class RoadRageGUI extends JFrame implements ActionListener {
      * counter, and stops the simulation.
      */
     private void reset() {
-        myTimer.stop();
-        myRoadRage.reset();
+        mySimulation.send(Command.RESET);
+    }
+
+    /**
+     * Returns the refresh rate of the screen.
+     * 
+     * @return the refresh rate in frames per second
+     */
+    private static int refreshRate() {
+        final int rate = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                        .getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+        int result = DEFAULT_REFRESH_RATE;
+        if (rate != DisplayMode.REFRESH_RATE_UNKNOWN) {
+            result = rate;
+        }
+        return result;
     }
         
  // end class RoadRageGUI
@@ -5,9 +5,7 @@
 package view;
 
 import static logic.PropertyChangeEnabledRoadRageControls.PROPERTY_GRID;
-import static logic.PropertyChangeEnabledRoadRageControls.PROPERTY_LIGHT;
-import static logic.PropertyChangeEnabledRoadRageControls.PROPERTY_VEHICLES;
-import static logic.PropertyChangeEnabledRoadRageControls.PROPERTY_TIME;
+import static logic.PropertyChangeEnabledRoadRageControls.PROPERTY_TICK;
 
 import java.awt.BasicStroke;
 import java.awt.Color;
@@ -15,23 +13,39 @@ import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Image;
-import java.awt.MediaTracker;
 import java.awt.Paint;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import javax.swing.ImageIcon;
+import java.util.Map;
 import javax.swing.JPanel;
 import javax.swing.JToggleButton;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
+import logic.TerrainMap;
+import logic.TickSnapshot;
+import logic.WorldState;
 import model.Direction;
 import model.Light;
 import model.Terrain;
-import model.Vehicle;
 
 /**
  * A drawing panel for the map.
@@ -43,7 +57,8 @@ import model.Vehicle;
  * @author Charles Bryan
  * 
  */
-public class RoadRagePanel extends JPanel implements PropertyChangeListener, ChangeListener {
+public class RoadRagePanel extends JPanel
+    implements PropertyChangeListener, ChangeListener, Scrollable {
 
     /**
      * The UID of this class (to avoid warnings).
@@ -79,37 +94,205 @@ public class RoadRagePanel extends JPanel implements PropertyChangeListener, Cha
     private static final int DEBUG_OFFSET = 10;
     
     /**
-     * The size in pixels of a side of one "square" on the grid.
+     * The size in pixels of a side of one "square" on the grid, before zooming.
      */
     private static final int SQUARE_SIZE = 40;
     
+    /**
+     * The sizes in pixels of a side of one square at each zoom level.
+     */
+    private static final int[] ZOOM_SIZES = {2, 3, 4, 6, 8, 10, 13, 16, 20, 25, 32, 40, 50,
+        64, 80};
+    
+    /**
+     * The largest size in pixels of a square at which vehicles are shown as a density
+     * map rather than one by one, and terrain tiles are scaled down from the next zoom
+     * level rather than drawn.
+     */
+    private static final int DENSITY_SIZE = 6;
+    
+    /**
+     * The color of a block of live vehicles in the density map.
+     */
+    private static final Color ALIVE_DENSITY = Color.BLUE;
+    
+    /**
+     * The color of a block of dead vehicles in the density map.
+     */
+    private static final Color DEAD_DENSITY = Color.RED;
+    
+    /**
+     * The opacity each vehicle in a block adds to the density map.
+     */
+    private static final int DENSITY_ALPHA_STEP = 24;
+    
+    /**
+     * The opacity of the busiest blocks of the density map.
+     */
+    private static final int MAX_DENSITY_ALPHA = 208;
+    
+    /**
+     * The most pixels of terrain kept drawn in tiles; beyond this the tiles used least
+     * recently are dropped.
+     */
+    private static final long MAX_TILE_PIXELS = 1L << 23;
+    
+    /**
+     * The largest number of regions repainted separately after a tick; beyond this
+     * the whole panel is repainted.
+     */
+    private static final int MAX_DIRTY_REGIONS = 64;
+    
 
     // Instance Fields
     
     /**
-     * The terrain grid for the simulation.
+     * The terrain map for the simulation, or null until the simulation sends it. It is
+     * replaced from whatever thread runs the simulation.
      */
-    private Terrain[][] myGrid;
+    private volatile TerrainMap myGrid;
     
     /**
      * A flag indicating whether or not we are running in debug mode.
      */
     private boolean myDebugFlag;
 
-    /**
-     * The current timestep of the simulation.
-     */
-    private long myTimestep;
-    
     /**
      * The current color of lights.
      */
     private Color myLightColor;
         
     /**
-     * The vehicles to move and display. 
+     * The state of the simulation to display, or null before the first tick. It is
+     * replaced from whatever thread runs the simulation.
+     */
+    private volatile WorldState myWorld;
+    
+    /**
+     * The stamp of the state last passed to showWorld.
+     */
+    private long myShownStamp;
+    
+    /**
+     * The x position of each vehicle as last shown, or null if the whole panel must be
+     * repainted next.
+     */
+    private int[] myShownX;
+    
+    /**
+     * The y position of each vehicle as last shown.
+     */
+    private int[] myShownY;
+    
+    /**
+     * Whether each vehicle was alive as last shown.
+     */
+    private boolean[] myShownAlive;
+    
+    /**
+     * The color of lights as last shown.
+     */
+    private Light myShownLight;
+    
+    /**
+     * The squares to repaint after a tick, as y * width + x.
+     */
+    private int[] myDirtySquares;
+    
+    /**
+     * The number of squares to repaint after a tick.
+     */
+    private int myDirtyCount;
+    
+    /**
+     * The regions to repaint after a tick.
+     */
+    private final List<Rectangle> myDirtyRegions;
+    
+    /**
+     * The vehicle images, scaled to the size of a square.
+     */
+    private final transient SpriteCache mySprites;
+    
+    /**
+     * The current zoom level, an index into ZOOM_SIZES.
+     */
+    private int myZoomLevel;
+    
+    /**
+     * The size in pixels of a side of one square at the current zoom level, or while
+     * a tile is drawn, at the zoom level of the tile.
      */
-    private List<Vehicle> myVehicles;
+    private int mySquareSize;
+    
+    /**
+     * The width of the map in squares.
+     */
+    private final int myMapWidth;
+    
+    /**
+     * The height of the map in squares.
+     */
+    private final int myMapHeight;
+    
+    /**
+     * The terrain map the block index and terrain tiles were made for, and the tiles
+     * are drawn from.
+     */
+    private transient TerrainMap myTerrain;
+    
+    /**
+     * The blocks of the map, with their lights and vehicles, or null before the grid
+     * is known.
+     */
+    private transient BlockIndex myBlocks;
+    
+    /**
+     * The state whose vehicles are in the block index.
+     */
+    private WorldState myIndexedWorld;
+    
+    /**
+     * The stamp of the state whose vehicles are in the block index.
+     */
+    private long myIndexedStamp;
+    
+    /**
+     * The terrain of each block drawn so far at each zoom level, by tileKey, least
+     * recently used first.
+     */
+    private final transient Map<Long, Tile> myTiles;
+    
+    /**
+     * The number of pixels in all the terrain tiles.
+     */
+    private long myTilePixels;
+    
+    /**
+     * The density map, one pixel per block of WorldState.DENSITY_BLOCK squares, or
+     * null before it is needed.
+     */
+    private transient BufferedImage myDensity;
+    
+    /**
+     * The state whose vehicles are in the density map.
+     */
+    private WorldState myDensityWorld;
+    
+    /**
+     * The stamp of the state whose vehicles are in the density map.
+     */
+    private long myDensityStamp;
+    
+    /**
+     * The squares the viewport shows, kept up to date by findDirtySquares.
+     */
+    private final Rectangle myVisibleSquares;
+    
+    /**
+     * The point on the screen where the mouse was last dragged from.
+     */
+    private Point myDragPoint;
 
     // Constructor
 
@@ -121,13 +304,18 @@ public class RoadRagePanel extends JPanel implements PropertyChangeListener, Cha
     public RoadRagePanel(final int theWidth, final int theHeight) {
         super();
 
-        myVehicles = new ArrayList<Vehicle>();
-        myGrid = new Terrain[0][0];
+        myMapWidth = theWidth;
+        myMapHeight = theHeight;
+        mySprites = new SpriteCache(this::repaint);
+        myDirtySquares = new int[0];
+        myDirtyRegions = new ArrayList<>();
+        myTiles = new LinkedHashMap<>(16, 0.75f, true);
+        myVisibleSquares = new Rectangle();
         setLightColor(Light.GREEN);
-        setPreferredSize(new Dimension(theWidth * SQUARE_SIZE,
-                                       theHeight * SQUARE_SIZE));
+        setZoomLevel(Arrays.binarySearch(ZOOM_SIZES, SQUARE_SIZE));
         setBackground(Color.GREEN);
         setFont(FONT);
+        addMouseHandlers();
     }
 
     // Instance Methods
@@ -146,92 +334,419 @@ public class RoadRagePanel extends JPanel implements PropertyChangeListener, Cha
 
         g2.setStroke(STROKE);
 
-        // draw city map
-
-        drawMap(g2);
+        final WorldState world = myWorld;
+        long stamp = 0;
+        if (world != null) {
+            stamp = world.getStamp();
+            setLightColor(world.getLight());
+        }
 
-        // draw vehicles
-        for (final Vehicle v : myVehicles) {
-            final String imageFilename = "icons//" + v.getImageFileName();
-            //final String imageFilename = v.getImageFileName();
-            ImageIcon imgIcon = new ImageIcon(imageFilename);
+        final TerrainMap grid = myGrid;
+        if (grid == null) {
+            return;
+        }
+        if (myBlocks == null || grid != myTerrain) {
+            setTerrain(grid);
+        }
+        final Rectangle blocks = blocksIn(theGraphics.getClipBounds());
 
-            if (imgIcon.getImageLoadStatus() != MediaTracker.COMPLETE) {
-                imgIcon = new ImageIcon(getClass().getResource(imageFilename));
-            }
+        // draw city map
 
-            final Image img = imgIcon.getImage();
-            g2.drawImage(img, v.getX() * SQUARE_SIZE, v.getY() * SQUARE_SIZE,
-                         SQUARE_SIZE, SQUARE_SIZE, this);
+        drawMap(g2, blocks);
 
+        if (world != null) {
+            if (isDensityShown()) {
+                drawDensity(g2, world, stamp, blocks);
+            } else {
+                if (world != myIndexedWorld || stamp != myIndexedStamp) {
+                    myBlocks.index(world);
+                    myIndexedWorld = world;
+                    myIndexedStamp = stamp;
+                }
+                drawVehicles(g2, world, blocks);
+            }
             if (myDebugFlag) {
-                drawDebugInfo(g2, v);
+                final Rectangle visible = getVisibleRect();
+                g2.setColor(Color.WHITE);
+                g2.drawString("Update # " + world.getTimestep(), visible.x + DEBUG_OFFSET / 2,
+                              visible.y + FONT.getSize() + DEBUG_OFFSET / 2);
+            }
+            if (!world.isUnchangedSince(stamp)) {
+                // the simulation got two ticks ahead while drawing, draw the newest tick
+                myShownX = null;
+                myIndexedWorld = null;
+                myDensityWorld = null;
+                repaint();
             }
         }
+    }
+    
+    /**
+     * Draws the vehicles of one tick in some blocks with the specified Graphics2D
+     * object. Vehicles outside the area being painted are skipped.
+     * 
+     * @param theGraphics The Graphics2D object.
+     * @param theWorld The state of the simulation.
+     * @param theBlocks The blocks to draw, in blocks.
+     */
+    private void drawVehicles(final Graphics2D theGraphics, final WorldState theWorld,
+                              final Rectangle theBlocks) {
+        final Rectangle clip = theGraphics.getClipBounds();
+        for (int row = theBlocks.y; row < theBlocks.y + theBlocks.height; row++) {
+            for (int col = theBlocks.x; col < theBlocks.x + theBlocks.width; col++) {
+                final int block = row * myBlocks.getColumns() + col;
+                for (int k = myBlocks.getFirst(block); k < myBlocks.getEnd(block); k++) {
+                    final int i = myBlocks.getVehicle(k);
+                    if (theWorld.getType(i) == null
+                        || clip != null
+                            && !clip.intersects(theWorld.getX(i) * mySquareSize,
+                                                theWorld.getY(i) * mySquareSize,
+                                                mySquareSize, mySquareSize)) {
+                        continue;
+                    }
+                    final Image img = mySprites.get(theWorld.getType(i), theWorld.isAlive(i),
+                                                    mySquareSize);
+                    if (img != null) {
+                        theGraphics.drawImage(img, theWorld.getX(i) * mySquareSize,
+                                              theWorld.getY(i) * mySquareSize, null);
+                    }
 
-        if (myDebugFlag) {
-            g2.setColor(Color.WHITE);
-            g2.drawString("Update # " + myTimestep, DEBUG_OFFSET / 2,
-                          FONT.getSize() + DEBUG_OFFSET / 2);
+                    if (myDebugFlag) {
+                        drawDebugInfo(theGraphics, theWorld, i);
+                    }
+                }
+            }
         }
     }
     
-
     /**
-     * Draws the city map with the specified Graphics2D object.
+     * Draws the vehicles of one tick in some blocks as a density map with the
+     * specified Graphics2D object: each block is tinted by how many vehicles are in
+     * it, from the color of live vehicles to the color of dead ones.
      * 
      * @param theGraphics The Graphics2D object.
+     * @param theWorld The state of the simulation.
+     * @param theStamp The stamp of the state, taken before reading it.
+     * @param theBlocks The blocks to draw, in blocks.
      */
-    private void drawMap(final Graphics2D theGraphics) {
-        for (int y = 0; y < myGrid.length; y++) {
-            final int topy = y * SQUARE_SIZE;
-
-            for (int x = 0; x < myGrid[y].length; x++) {
-                final int leftx = x * SQUARE_SIZE;
-
-                switch (myGrid[y][x]) {
-                    case STREET:
-                        theGraphics.setPaint(Color.LIGHT_GRAY);
-                        theGraphics.fillRect(leftx, topy, SQUARE_SIZE, SQUARE_SIZE);
-                        drawStreetLines(theGraphics, x, y);
-                        break;
-
-                    case WALL:
-                        theGraphics.setPaint(Color.BLACK);
-                        theGraphics.fillRect(leftx, topy, SQUARE_SIZE, SQUARE_SIZE);
-                        break;
-
-                    case TRAIL:
-                        theGraphics.setPaint(Color.YELLOW.darker().darker());
-                        theGraphics.fillRect(leftx, topy, SQUARE_SIZE, SQUARE_SIZE);
-                        break;
-
-                    case LIGHT:
-                        // draw a circle of appropriate color
-                        theGraphics.setPaint(Color.LIGHT_GRAY);
-                        theGraphics.fillRect(leftx, topy, SQUARE_SIZE, SQUARE_SIZE);
-                        theGraphics.setPaint(myLightColor);
-                        theGraphics.fillOval(leftx, topy, SQUARE_SIZE, SQUARE_SIZE);
-                        break;
-                        
-                    case CROSSWALK:
-                        theGraphics.setPaint(Color.LIGHT_GRAY);
-                        theGraphics.fillRect(leftx, topy, SQUARE_SIZE, SQUARE_SIZE);
-                        
-                        drawCrossWalkLines(theGraphics, x, y);
-                        
-                        // draw a small circle of appropriate color centered in the square
-                        theGraphics.setPaint(myLightColor);
-                        theGraphics.fillOval(leftx + (int)  (SQUARE_SIZE * CROSSWALK_SCALE),
-                                             topy  + (int) (SQUARE_SIZE * CROSSWALK_SCALE),
-                                             SQUARE_SIZE / 2, SQUARE_SIZE / 2);
-                        break;
-
-                    default:
+    private void drawDensity(final Graphics2D theGraphics, final WorldState theWorld,
+                             final long theStamp, final Rectangle theBlocks) {
+        final int columns = theWorld.getDensityColumns();
+        final int rows = theWorld.getDensityRows();
+        if (myDensity == null || myDensity.getWidth() != columns
+            || myDensity.getHeight() != rows) {
+            myDensity = new BufferedImage(columns, rows, BufferedImage.TYPE_INT_ARGB);
+            myDensityWorld = null;
+        }
+        if (theWorld != myDensityWorld || theStamp != myDensityStamp) {
+            // one pixel per block, written straight into the raster
+            final int[] pixels = ((DataBufferInt) myDensity.getRaster().getDataBuffer())
+                            .getData();
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < columns; col++) {
+                    pixels[row * columns + col] =
+                        densityColor(theWorld.getAliveCount(col, row),
+                                     theWorld.getDeadCount(col, row));
                 }
+            }
+            myDensityWorld = theWorld;
+            myDensityStamp = theStamp;
+        }
+        final int blockSize = BlockIndex.BLOCK_SQUARES * mySquareSize;
+        final int left = theBlocks.x * blockSize;
+        final int top = theBlocks.y * blockSize;
+        theGraphics.drawImage(myDensity, left, top, left + theBlocks.width * blockSize,
+                              top + theBlocks.height * blockSize, theBlocks.x,
+                              theBlocks.y, theBlocks.x + theBlocks.width,
+                              theBlocks.y + theBlocks.height, null);
+    }
+    
+    /**
+     * Returns the color of a block in the density map.
+     * 
+     * @param theAlive The number of live vehicles in the block.
+     * @param theDead The number of dead vehicles in the block.
+     * @return the color, as ARGB
+     */
+    private static int densityColor(final int theAlive, final int theDead) {
+        final int total = theAlive + theDead;
+        int result = 0;
+        if (total > 0) {
+            final int alpha = Math.min(MAX_DENSITY_ALPHA, total * DENSITY_ALPHA_STEP);
+            final int red = (ALIVE_DENSITY.getRed() * theAlive
+                            + DEAD_DENSITY.getRed() * theDead) / total;
+            final int green = (ALIVE_DENSITY.getGreen() * theAlive
+                            + DEAD_DENSITY.getGreen() * theDead) / total;
+            final int blue = (ALIVE_DENSITY.getBlue() * theAlive
+                            + DEAD_DENSITY.getBlue() * theDead) / total;
+            result = alpha << 24 | red << 16 | green << 8 | blue;
+        }
+        return result;
+    }
+    
+    /**
+     * Returns whether vehicles are shown as a density map at the current zoom level.
+     * 
+     * @return true if the squares are too small to show each vehicle
+     */
+    private boolean isDensityShown() {
+        return mySquareSize <= DENSITY_SIZE;
+    }
 
-                drawDebugInfo(theGraphics, x, y);
+    /**
+     * Draws the city map in some blocks with the specified Graphics2D object. The
+     * terrain of each block is drawn once into a tile, and afterwards only its lights
+     * are redrawn, when they change color.
+     * 
+     * @param theGraphics The Graphics2D object.
+     * @param theBlocks The blocks to draw, in blocks.
+     */
+    private void drawMap(final Graphics2D theGraphics, final Rectangle theBlocks) {
+        final int blockSize = BlockIndex.BLOCK_SQUARES * mySquareSize;
+        for (int row = theBlocks.y; row < theBlocks.y + theBlocks.height; row++) {
+            for (int col = theBlocks.x; col < theBlocks.x + theBlocks.width; col++) {
+                theGraphics.drawImage(tileOf(myZoomLevel, col, row), col * blockSize,
+                                      row * blockSize, null);
+            }
+        }
+
+        if (myDebugFlag) {
+            final Rectangle squares = squaresIn(theGraphics.getClipBounds());
+            for (int y = squares.y; y < squares.y + squares.height; y++) {
+                for (int x = squares.x; x < squares.x + squares.width; x++) {
+                    drawDebugInfo(theGraphics, x, y);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Starts drawing a new map: indexes its blocks and drops the tiles of the old
+     * one.
+     * 
+     * @param theGrid The terrain map.
+     */
+    private void setTerrain(final TerrainMap theGrid) {
+        myBlocks = new BlockIndex(theGrid);
+        myTerrain = theGrid;
+        myIndexedWorld = null;
+        clearTiles();
+    }
+    
+    /**
+     * Returns the terrain tile of a block at a zoom level in the current color of
+     * lights, drawing it or its lights as needed.
+     * 
+     * @param theLevel The zoom level.
+     * @param theColumn The column of the block.
+     * @param theRow The row of the block.
+     * @return the image of the block
+     */
+    private BufferedImage tileOf(final int theLevel, final int theColumn, final int theRow) {
+        final int block = theRow * myBlocks.getColumns() + theColumn;
+        final long key = (long) block * ZOOM_SIZES.length + theLevel;
+        final int squareSize = mySquareSize;
+        // the squares of the tile are drawn at the size of its own zoom level
+        mySquareSize = ZOOM_SIZES[theLevel];
+        try {
+            Tile tile = myTiles.get(key);
+            if (tile == null) {
+                tile = drawTile(theLevel, theColumn, theRow);
+                myTiles.put(key, tile);
+                myTilePixels += tile.myImage.getWidth() * tile.myImage.getHeight();
+                final Iterator<Tile> eldest = myTiles.values().iterator();
+                while (myTilePixels > MAX_TILE_PIXELS && myTiles.size() > 1) {
+                    final BufferedImage image = eldest.next().myImage;
+                    myTilePixels -= image.getWidth() * image.getHeight();
+                    eldest.remove();
+                }
+            } else if (!myLightColor.equals(tile.myLightColor)) {
+                final Graphics2D g2 = createTileGraphics(tile.myImage, theColumn, theRow);
+                final int width = myBlocks.getWidth();
+                for (final int square : myBlocks.getLights(block)) {
+                    final int x = square % width;
+                    final int y = square / width;
+                    drawSquare(g2, myTerrain.get(x, y), x, y);
+                }
+                g2.dispose();
+                tile.myLightColor = myLightColor;
+            }
+            return tile.myImage;
+        } finally {
+            mySquareSize = squareSize;
+        }
+    }
+    
+    /**
+     * Draws the terrain of a block into a new tile at the size of squares of a zoom
+     * level. Where the squares are too small to draw in detail, the tile is instead
+     * scaled down smoothly from the tile of the next zoom level, so that the levels
+     * form a mipmap pyramid.
+     * 
+     * @param theLevel The zoom level, whose size mySquareSize is set to.
+     * @param theColumn The column of the block.
+     * @param theRow The row of the block.
+     * @return the tile
+     */
+    private Tile drawTile(final int theLevel, final int theColumn, final int theRow) {
+        final int left = theColumn * BlockIndex.BLOCK_SQUARES;
+        final int top = theRow * BlockIndex.BLOCK_SQUARES;
+        final int right = Math.min(left + BlockIndex.BLOCK_SQUARES, myBlocks.getWidth());
+        final int bottom = Math.min(top + BlockIndex.BLOCK_SQUARES, myBlocks.getHeight());
+        final int width = (right - left) * mySquareSize;
+        final int height = (bottom - top) * mySquareSize;
+        final GraphicsConfiguration config = getGraphicsConfiguration();
+        final BufferedImage image;
+        if (config == null) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        } else {
+            image = config.createCompatibleImage(width, height);
+        }
+        if (mySquareSize <= DENSITY_SIZE) {
+            final BufferedImage finer = tileOf(theLevel + 1, theColumn, theRow);
+            final Graphics2D g2 = image.createGraphics();
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                                RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.drawImage(finer, 0, 0, width, height, null);
+            g2.dispose();
+        } else {
+            final Graphics2D g2 = createTileGraphics(image, theColumn, theRow);
+            g2.setPaint(getBackground());
+            g2.fillRect(left * mySquareSize, top * mySquareSize, width, height);
+            for (int y = top; y < bottom; y++) {
+                for (int x = left; x < right; x++) {
+                    drawSquare(g2, myTerrain.get(x, y), x, y);
+                }
             }
+            g2.dispose();
+        }
+        return new Tile(image, myLightColor);
+    }
+    
+    /**
+     * Returns a Graphics2D object for drawing into the tile of a block, set up the way
+     * paintComponent sets up the screen and moved so that squares are drawn at their
+     * place on the map.
+     * 
+     * @param theImage The image of the tile.
+     * @param theColumn The column of the block.
+     * @param theRow The row of the block.
+     * @return the Graphics2D object
+     */
+    private Graphics2D createTileGraphics(final BufferedImage theImage, final int theColumn,
+                                          final int theRow) {
+        final Graphics2D result = theImage.createGraphics();
+        result.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                                RenderingHints.VALUE_ANTIALIAS_ON);
+        result.setStroke(STROKE);
+        final int blockSize = BlockIndex.BLOCK_SQUARES * mySquareSize;
+        result.translate(-theColumn * blockSize, -theRow * blockSize);
+        return result;
+    }
+    
+    /**
+     * Drops every terrain tile.
+     */
+    private void clearTiles() {
+        myTiles.clear();
+        myTilePixels = 0;
+    }
+    
+    /**
+     * Returns the squares of the map that an area of this panel covers.
+     * 
+     * @param theArea The area in pixels, or null for the whole panel.
+     * @return the squares, in squares, clipped to the map
+     */
+    private Rectangle squaresIn(final Rectangle theArea) {
+        final Rectangle result = new Rectangle(0, 0, myBlocks.getWidth(),
+                                               myBlocks.getHeight());
+        if (theArea != null) {
+            final int left = Math.max(0, theArea.x / mySquareSize);
+            final int top = Math.max(0, theArea.y / mySquareSize);
+            final int right = Math.min(myBlocks.getWidth(),
+                                       (theArea.x + theArea.width + mySquareSize - 1)
+                                           / mySquareSize);
+            final int bottom = Math.min(myBlocks.getHeight(),
+                                        (theArea.y + theArea.height + mySquareSize - 1)
+                                            / mySquareSize);
+            result.setBounds(left, top, Math.max(0, right - left),
+                             Math.max(0, bottom - top));
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the blocks of the map that an area of this panel covers.
+     * 
+     * @param theArea The area in pixels, or null for the whole panel.
+     * @return the blocks, in blocks
+     */
+    private Rectangle blocksIn(final Rectangle theArea) {
+        final Rectangle squares = squaresIn(theArea);
+        final Rectangle result = new Rectangle();
+        if (!squares.isEmpty()) {
+            final int left = squares.x / BlockIndex.BLOCK_SQUARES;
+            final int top = squares.y / BlockIndex.BLOCK_SQUARES;
+            final int right = (squares.x + squares.width - 1) / BlockIndex.BLOCK_SQUARES;
+            final int bottom = (squares.y + squares.height - 1) / BlockIndex.BLOCK_SQUARES;
+            result.setBounds(left, top, right - left + 1, bottom - top + 1);
+        }
+        return result;
+    }
+    
+    /**
+     * Draws one square of the city map with the specified Graphics2D object.
+     * 
+     * @param theGraphics The Graphics2D object.
+     * @param theTerrain The terrain of the square.
+     * @param theX The x-coordinate of the square.
+     * @param theY The y-coordinate of the square.
+     */
+    private void drawSquare(final Graphics2D theGraphics, final Terrain theTerrain,
+                            final int theX, final int theY) {
+        final int leftx = theX * mySquareSize;
+        final int topy = theY * mySquareSize;
+
+        switch (theTerrain) {
+            case STREET:
+                theGraphics.setPaint(Color.LIGHT_GRAY);
+                theGraphics.fillRect(leftx, topy, mySquareSize, mySquareSize);
+                drawStreetLines(theGraphics, theX, theY);
+                break;
+
+            case WALL:
+                theGraphics.setPaint(Color.BLACK);
+                theGraphics.fillRect(leftx, topy, mySquareSize, mySquareSize);
+                break;
+
+            case TRAIL:
+                theGraphics.setPaint(Color.YELLOW.darker().darker());
+                theGraphics.fillRect(leftx, topy, mySquareSize, mySquareSize);
+                break;
+
+            case LIGHT:
+                // draw a circle of appropriate color
+                theGraphics.setPaint(Color.LIGHT_GRAY);
+                theGraphics.fillRect(leftx, topy, mySquareSize, mySquareSize);
+                theGraphics.setPaint(myLightColor);
+                theGraphics.fillOval(leftx, topy, mySquareSize, mySquareSize);
+                break;
+                
+            case CROSSWALK:
+                theGraphics.setPaint(Color.LIGHT_GRAY);
+                theGraphics.fillRect(leftx, topy, mySquareSize, mySquareSize);
+                
+                drawCrossWalkLines(theGraphics, theX, theY);
+                
+                // draw a small circle of appropriate color centered in the square
+                theGraphics.setPaint(myLightColor);
+                theGraphics.fillOval(leftx + (int)  (mySquareSize * CROSSWALK_SCALE),
+                                     topy  + (int) (mySquareSize * CROSSWALK_SCALE),
+                                     mySquareSize / 2, mySquareSize / 2);
+                break;
+
+            default:
         }
     }
     
@@ -249,8 +764,8 @@ public class RoadRagePanel extends JPanel implements PropertyChangeListener, Cha
             final Paint oldPaint = theGraphics.getPaint();
             theGraphics.setPaint(Color.BLACK);
 
-            final int leftx = theX * SQUARE_SIZE;
-            final int topy = theY * SQUARE_SIZE;
+            final int leftx = theX * mySquareSize;
+            final int topy = theY * mySquareSize;
             theGraphics.drawString("(" + theX + ", " + theY + ")", leftx, topy + DEBUG_OFFSET);
             theGraphics.setPaint(oldPaint);
         }
@@ -260,21 +775,24 @@ public class RoadRagePanel extends JPanel implements PropertyChangeListener, Cha
      * Draws the debug information for a single Vehicle.
      * 
      * @param theGraphics The graphic context.
-     * @param theVehicle The Vehicle being drawn.
+     * @param theWorld The state of the simulation.
+     * @param theVehicle The index of the Vehicle being drawn.
      */
-    private void drawDebugInfo(final Graphics2D theGraphics, final Vehicle theVehicle) {
-        int x = theVehicle.getX() * SQUARE_SIZE;
-        int y = theVehicle.getY() * SQUARE_SIZE;
+    private void drawDebugInfo(final Graphics2D theGraphics, final WorldState theWorld,
+                               final int theVehicle) {
+        int x = theWorld.getX(theVehicle) * mySquareSize;
+        int y = theWorld.getY(theVehicle) * mySquareSize;
 
         // draw numbers on each vehicle
+        final String name = theWorld.getType(theVehicle).getImageName() + ".gif";
         theGraphics.setColor(Color.WHITE);
-        theGraphics.drawString(theVehicle.toString(), x, y + SQUARE_SIZE - 1);
+        theGraphics.drawString(name, x, y + mySquareSize - 1);
         theGraphics.setColor(Color.BLACK);
-        theGraphics.drawString(theVehicle.toString(), x + 1, y + SQUARE_SIZE);
+        theGraphics.drawString(name, x + 1, y + mySquareSize);
 
         // draw arrow on vehicle for its direction
-        final Direction dir = theVehicle.getDirection();
-        int dx = (SQUARE_SIZE - MARKER_SIZE) / 2;
+        final Direction dir = theWorld.getDirection(theVehicle);
+        int dx = (mySquareSize - MARKER_SIZE) / 2;
         int dy = dx;
 
         switch (dir) {
@@ -283,7 +801,7 @@ public class RoadRagePanel extends JPanel implements PropertyChangeListener, Cha
                 break;
 
             case EAST:
-                dx = SQUARE_SIZE - MARKER_SIZE;
+                dx = mySquareSize - MARKER_SIZE;
                 break;
 
             case NORTH:
@@ -291,7 +809,7 @@ public class RoadRagePanel extends JPanel implements PropertyChangeListener, Cha
                 break;
 
             case SOUTH:
-                dy = SQUARE_SIZE - MARKER_SIZE;
+                dy = mySquareSize - MARKER_SIZE;
                 break;
 
             default:
@@ -304,6 +822,302 @@ public class RoadRagePanel extends JPanel implements PropertyChangeListener, Cha
         theGraphics.fillOval(x, y, MARKER_SIZE, MARKER_SIZE);
     }
 
+    /**
+     * Shows a state of the simulation, repainting only the squares that differ from
+     * the state shown last. Call this on the event dispatch thread at the display 
+     * refresh rate, to show the newest tick and skip the ticks in between.
+     * 
+     * @param theWorld The state of the simulation.
+     */
+    public void showWorld(final WorldState theWorld) {
+        final long stamp = theWorld.getStamp();
+        if (theWorld != myWorld || stamp != myShownStamp) {
+            myWorld = theWorld;
+            myShownStamp = stamp;
+            if (findDirtySquares(theWorld) && theWorld.isUnchangedSince(stamp)
+                && mergeDirtySquares()) {
+                for (final Rectangle region : myDirtyRegions) {
+                    paintImmediately(region);
+                }
+            } else {
+                rememberShown(theWorld);
+                if (!theWorld.isUnchangedSince(stamp)) {
+                    myShownX = null;
+                }
+                repaint();
+            }
+        }
+    }
+    
+    /**
+     * Collects the visible squares whose vehicles or lights differ from the state 
+     * shown last, and remembers the new state as shown.
+     * 
+     * @param theWorld The state of the simulation.
+     * @return false if the whole panel should be repainted instead
+     */
+    private boolean findDirtySquares(final WorldState theWorld) {
+        final int count = theWorld.getVehicleCount();
+        final boolean result = !myDebugFlag && !isDensityShown() && myShownX != null
+                        && myShownX.length == count
+                        && myBlocks != null && myGrid == myTerrain;
+        if (result) {
+            myVisibleSquares.setBounds(squaresIn(getVisibleRect()));
+            myDirtyCount = 0;
+            for (int i = 0; i < count; i++) {
+                final int x = theWorld.getX(i);
+                final int y = theWorld.getY(i);
+                final boolean alive = theWorld.isAlive(i);
+                if (x != myShownX[i] || y != myShownY[i] || alive != myShownAlive[i]) {
+                    addDirtySquare(myShownX[i], myShownY[i]);
+                    addDirtySquare(x, y);
+                    myShownX[i] = x;
+                    myShownY[i] = y;
+                    myShownAlive[i] = alive;
+                }
+            }
+            if (theWorld.getLight() != myShownLight) {
+                final Rectangle blocks = blocksIn(getVisibleRect());
+                final int width = myBlocks.getWidth();
+                for (int row = blocks.y; row < blocks.y + blocks.height; row++) {
+                    for (int col = blocks.x; col < blocks.x + blocks.width; col++) {
+                        for (final int square
+                            : myBlocks.getLights(row * myBlocks.getColumns() + col)) {
+                            addDirtySquare(square % width, square / width);
+                        }
+                    }
+                }
+                myShownLight = theWorld.getLight();
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Adds a square to the squares to repaint, if it is visible.
+     * 
+     * @param theX The x-coordinate of the square.
+     * @param theY The y-coordinate of the square.
+     */
+    private void addDirtySquare(final int theX, final int theY) {
+        if (myVisibleSquares.contains(theX, theY)) {
+            if (myDirtyCount == myDirtySquares.length) {
+                myDirtySquares = Arrays.copyOf(myDirtySquares, myDirtyCount * 2 + 2);
+            }
+            myDirtySquares[myDirtyCount] = theY * myBlocks.getWidth() + theX;
+            myDirtyCount++;
+        }
+    }
+    
+    /**
+     * Merges the squares to repaint into regions: squares next to each other in a row
+     * join into one region, and regions of the same width in rows next to each other
+     * join too.
+     * 
+     * @return false if there are too many regions, and the whole panel should be
+     *         repainted instead
+     */
+    private boolean mergeDirtySquares() {
+        final int width = myBlocks.getWidth();
+        Arrays.sort(myDirtySquares, 0, myDirtyCount);
+        myDirtyRegions.clear();
+        int k = 0;
+        while (k < myDirtyCount && myDirtyRegions.size() <= MAX_DIRTY_REGIONS) {
+            // one run of squares in a row, skipping repeats
+            final int first = myDirtySquares[k];
+            int last = first;
+            while (k < myDirtyCount && myDirtySquares[k] <= last + 1
+                   && myDirtySquares[k] / width == first / width) {
+                last = myDirtySquares[k];
+                k++;
+            }
+            final int x = first % width * mySquareSize;
+            final int y = first / width * mySquareSize;
+            final int runWidth = (last - first + 1) * mySquareSize;
+            boolean joined = false;
+            for (final Rectangle region : myDirtyRegions) {
+                if (region.x == x && region.width == runWidth
+                    && region.y + region.height == y) {
+                    region.height += mySquareSize;
+                    joined = true;
+                    break;
+                }
+            }
+            if (!joined) {
+                myDirtyRegions.add(new Rectangle(x, y, runWidth, mySquareSize));
+            }
+        }
+        return myDirtyRegions.size() <= MAX_DIRTY_REGIONS;
+    }
+    
+    /**
+     * Remembers a state as shown, so that the next state is compared with it.
+     * 
+     * @param theWorld The state of the simulation.
+     */
+    private void rememberShown(final WorldState theWorld) {
+        final int count = theWorld.getVehicleCount();
+        if (myShownX == null || myShownX.length != count) {
+            myShownX = new int[count];
+            myShownY = new int[count];
+            myShownAlive = new boolean[count];
+        }
+        for (int i = 0; i < count; i++) {
+            myShownX[i] = theWorld.getX(i);
+            myShownY[i] = theWorld.getY(i);
+            myShownAlive[i] = theWorld.isAlive(i);
+        }
+        myShownLight = theWorld.getLight();
+    }
+    
+    /**
+     * Zooms in or out by some steps, keeping the same point of the map under a point
+     * of the viewport.
+     * 
+     * @param theSteps The number of zoom levels to zoom in, or out if negative.
+     * @param thePoint The point to keep in place, in pixels of this panel.
+     */
+    public void zoom(final int theSteps, final Point thePoint) {
+        final int level = Math.max(0, Math.min(ZOOM_SIZES.length - 1,
+                                               myZoomLevel + theSteps));
+        final int oldSize = mySquareSize;
+        if (level != myZoomLevel) {
+            final JViewport viewport = getViewport();
+            setZoomLevel(level);
+            if (viewport != null) {
+                final Point view = viewport.getViewPosition();
+                viewport.setViewSize(getPreferredSize());
+                moveViewport(viewport,
+                             thePoint.x * mySquareSize / oldSize - (thePoint.x - view.x),
+                             thePoint.y * mySquareSize / oldSize - (thePoint.y - view.y));
+            }
+        }
+    }
+    
+    /**
+     * Zooms in or out by some steps, keeping the middle of the viewport in place.
+     * 
+     * @param theSteps The number of zoom levels to zoom in, or out if negative.
+     */
+    public void zoom(final int theSteps) {
+        final Rectangle visible = getVisibleRect();
+        zoom(theSteps, new Point((int) visible.getCenterX(), (int) visible.getCenterY()));
+    }
+    
+    /**
+     * Sets the zoom level and resizes this panel to fit the map. The tiles of the
+     * other zoom levels are kept, so that zooming back is quick.
+     * 
+     * @param theLevel The zoom level, an index into ZOOM_SIZES.
+     */
+    private void setZoomLevel(final int theLevel) {
+        myZoomLevel = theLevel;
+        mySquareSize = ZOOM_SIZES[theLevel];
+        myShownX = null;
+        setPreferredSize(new Dimension(myMapWidth * mySquareSize,
+                                       myMapHeight * mySquareSize));
+        revalidate();
+        repaint();
+    }
+    
+    /**
+     * Returns the viewport this panel is shown in.
+     * 
+     * @return the viewport, or null if it is not in one
+     */
+    private JViewport getViewport() {
+        return (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, this);
+    }
+    
+    /**
+     * Scrolls a viewport to a position, as far as the panel allows.
+     * 
+     * @param theViewport The viewport.
+     * @param theX The x-coordinate of the top left corner to show.
+     * @param theY The y-coordinate of the top left corner to show.
+     */
+    private void moveViewport(final JViewport theViewport, final int theX, final int theY) {
+        final Dimension view = theViewport.getViewSize();
+        final Dimension extent = theViewport.getExtentSize();
+        theViewport.setViewPosition(
+            new Point(Math.max(0, Math.min(theX, view.width - extent.width)),
+                      Math.max(0, Math.min(theY, view.height - extent.height))));
+    }
+    
+    /**
+     * Lets the mouse pan the map by dragging and zoom it with the wheel while the
+     * control key is down. The wheel alone still scrolls.
+     */
+    private void addMouseHandlers() {
+        final MouseAdapter handler = new MouseAdapter() {
+            @Override
+            public void mousePressed(final MouseEvent theEvent) {
+                myDragPoint = theEvent.getLocationOnScreen();
+            }
+
+            @Override
+            public void mouseDragged(final MouseEvent theEvent) {
+                final JViewport viewport = getViewport();
+                final Point point = theEvent.getLocationOnScreen();
+                if (viewport != null && myDragPoint != null) {
+                    final Point view = viewport.getViewPosition();
+                    moveViewport(viewport, view.x - (point.x - myDragPoint.x),
+                                 view.y - (point.y - myDragPoint.y));
+                }
+                myDragPoint = point;
+            }
+
+            @Override
+            public void mouseWheelMoved(final MouseWheelEvent theEvent) {
+                if (theEvent.isControlDown()) {
+                    zoom(-theEvent.getWheelRotation(), theEvent.getPoint());
+                } else {
+                    // pass the event on, so that the scroll pane scrolls
+                    getParent().dispatchEvent(SwingUtilities.convertMouseEvent(
+                        RoadRagePanel.this, theEvent, getParent()));
+                }
+            }
+        };
+        addMouseListener(handler);
+        addMouseMotionListener(handler);
+        addMouseWheelListener(handler);
+    }
+    
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(final Rectangle theVisible, final int theOrientation,
+                                          final int theDirection) {
+        return mySquareSize;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(final Rectangle theVisible,
+                                           final int theOrientation,
+                                           final int theDirection) {
+        int result = theVisible.height;
+        if (theOrientation == SwingConstants.HORIZONTAL) {
+            result = theVisible.width;
+        }
+        return Math.max(mySquareSize, result - mySquareSize);
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        // fill a viewport wider than the map, rather than leave a gap
+        return getParent() instanceof JViewport
+            && getParent().getWidth() > getPreferredSize().width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() instanceof JViewport
+            && getParent().getHeight() > getPreferredSize().height;
+    }
+    
     /**
      * Sets the paint color appropriately for the current lights.
      * 
@@ -340,29 +1154,29 @@ public class RoadRagePanel extends JPanel implements PropertyChangeListener, Cha
         final Paint oldPaint = theGraphics.getPaint();
         theGraphics.setPaint(Color.WHITE);
 
-        final int leftx = theX * SQUARE_SIZE;
-        final int topy = theY * SQUARE_SIZE;
+        final int leftx = theX * mySquareSize;
+        final int topy = theY * mySquareSize;
 
-        final int rightx = leftx + SQUARE_SIZE;
-        final int bottomy = topy + SQUARE_SIZE;
+        final int rightx = leftx + mySquareSize;
+        final int bottomy = topy + mySquareSize;
 
-        if (isValidIndex(theY - 1, theX) && myGrid[theY - 1][theX] == Terrain.GRASS) {
+        if (neighborOf(theX, theY, Direction.NORTH) == Terrain.GRASS) {
             // GRASS is above. Let's assume GRASS is also below.
             // DRAW lines on left and right of light
-            theGraphics.drawLine(leftx  + (int) (SQUARE_SIZE * CROSSWALK_SCALE), topy,
-                                 leftx  + (int) (SQUARE_SIZE * CROSSWALK_SCALE), bottomy);
-            theGraphics.drawLine(rightx - (int) (SQUARE_SIZE * CROSSWALK_SCALE), topy,
-                                 rightx - (int) (SQUARE_SIZE * CROSSWALK_SCALE), bottomy);
+            theGraphics.drawLine(leftx  + (int) (mySquareSize * CROSSWALK_SCALE), topy,
+                                 leftx  + (int) (mySquareSize * CROSSWALK_SCALE), bottomy);
+            theGraphics.drawLine(rightx - (int) (mySquareSize * CROSSWALK_SCALE), topy,
+                                 rightx - (int) (mySquareSize * CROSSWALK_SCALE), bottomy);
         }
         
 
-        if (isValidIndex(theY, theX - 1) && myGrid[theY][theX - 1] == Terrain.GRASS) {
+        if (neighborOf(theX, theY, Direction.WEST) == Terrain.GRASS) {
             // GRASS is left. Let's assume GRASS is also right.
             // DRAW lines above and below light
-            theGraphics.drawLine(leftx, topy + (int) (SQUARE_SIZE * CROSSWALK_SCALE),
-                                 rightx, topy + (int) (SQUARE_SIZE * CROSSWALK_SCALE));
-            theGraphics.drawLine(leftx, bottomy - (int) (SQUARE_SIZE * CROSSWALK_SCALE),
-                                 rightx, bottomy - (int) (SQUARE_SIZE * CROSSWALK_SCALE));
+            theGraphics.drawLine(leftx, topy + (int) (mySquareSize * CROSSWALK_SCALE),
+                                 rightx, topy + (int) (mySquareSize * CROSSWALK_SCALE));
+            theGraphics.drawLine(leftx, bottomy - (int) (mySquareSize * CROSSWALK_SCALE),
+                                 rightx, bottomy - (int) (mySquareSize * CROSSWALK_SCALE));
         }
 
         theGraphics.setPaint(oldPaint);
@@ -381,23 +1195,23 @@ public class RoadRagePanel extends JPanel implements PropertyChangeListener, Cha
         final Paint oldPaint = theGraphics.getPaint();
         theGraphics.setPaint(Color.YELLOW);
 
-        final int leftx = theX * SQUARE_SIZE;
-        final int topy = theY * SQUARE_SIZE;
-        final int centerx = leftx + SQUARE_SIZE / 2;
-        final int centery = topy + SQUARE_SIZE / 2;
-        final int rightx = leftx + SQUARE_SIZE;
-        final int bottomy = topy + SQUARE_SIZE;
+        final int leftx = theX * mySquareSize;
+        final int topy = theY * mySquareSize;
+        final int centerx = leftx + mySquareSize / 2;
+        final int centery = topy + mySquareSize / 2;
+        final int rightx = leftx + mySquareSize;
+        final int bottomy = topy + mySquareSize;
 
-        if (isValidIndex(theY - 1, theX) && myGrid[theY - 1][theX] == Terrain.STREET) {
+        if (neighborOf(theX, theY, Direction.NORTH) == Terrain.STREET) {
             theGraphics.drawLine(centerx, centery, centerx, topy); // above
         }
-        if (isValidIndex(theY + 1, theX) && myGrid[theY + 1][theX] == Terrain.STREET) {
+        if (neighborOf(theX, theY, Direction.SOUTH) == Terrain.STREET) {
             theGraphics.drawLine(centerx, centery, centerx, bottomy); // below
         }
-        if (isValidIndex(theY, theX - 1) && myGrid[theY][theX - 1] == Terrain.STREET) {
+        if (neighborOf(theX, theY, Direction.WEST) == Terrain.STREET) {
             theGraphics.drawLine(centerx, centery, leftx, centery); // left
         }
-        if (isValidIndex(theY, theX + 1) && myGrid[theY][theX + 1] == Terrain.STREET) {
+        if (neighborOf(theX, theY, Direction.EAST) == Terrain.STREET) {
             theGraphics.drawLine(centerx, centery, rightx, centery); // right
         }
 
@@ -405,37 +1219,29 @@ public class RoadRagePanel extends JPanel implements PropertyChangeListener, Cha
     }
     
     /**
-     * Tests whether the square at the given x/y position exists on the map.
+     * Returns the terrain of the neighbor of a square.
      * 
-     * @param theX The x position.
-     * @param theY The y position.
-     * @return true if the position exists on the map, false otherwise.
+     * @param theX The x-coordinate of the square.
+     * @param theY The y-coordinate of the square.
+     * @param theDirection The direction of the neighbor.
+     * @return the terrain of the neighbor, or null if it is off the map.
      */
-    private boolean isValidIndex(final int theY, final int theX) {
-        return 0 <= theY && theY < myGrid.length
-            && 0 <= theX && theX < myGrid[theY].length;
+    private Terrain neighborOf(final int theX, final int theY,
+                               final Direction theDirection) {
+        return myTerrain.get(theX + theDirection.dx(), theY + theDirection.dy());
     }
 
     @Override
     public void propertyChange(final PropertyChangeEvent theEvent) {
         switch (theEvent.getPropertyName()) {
             case PROPERTY_GRID:
-                myGrid = (Terrain[][]) theEvent.getNewValue();
+                myGrid = (TerrainMap) theEvent.getNewValue();
                 repaint();
                 break;
-            case PROPERTY_LIGHT:
-                setLightColor((Light) theEvent.getNewValue());
-                repaint();
-                break;
-            case PROPERTY_VEHICLES:
-                @SuppressWarnings("unchecked") 
-                final List<Vehicle> list = (List<Vehicle>) theEvent.getNewValue();
-                myVehicles = new ArrayList<>(list);
-                repaint();
-                break;
-            case PROPERTY_TIME:
-                myTimestep = (Long) theEvent.getNewValue();
-                repaint();
+            case PROPERTY_TICK:
+                // everything that changed in one tick, so repaint once
+                final WorldState world = ((TickSnapshot) theEvent.getNewValue()).getWorld();
+                SwingUtilities.invokeLater(() -> showWorld(world));
                 break;
             default:
                 break;  
@@ -449,5 +1255,32 @@ public class RoadRagePanel extends JPanel implements PropertyChangeListener, Cha
         repaint();
     }
     
+    /**
+     * The terrain of one block, drawn once at one zoom level.
+     */
+    private static final class Tile {
+
+        /**
+         * The image of the block.
+         */
+        private final BufferedImage myImage;
+
+        /**
+         * The color of the lights in the image.
+         */
+        private Color myLightColor;
+
+        /**
+         * Creates a tile.
+         * 
+         * @param theImage The image of the block.
+         * @param theLightColor The color of the lights in the image.
+         */
+        Tile(final BufferedImage theImage, final Color theLightColor) {
+            myImage = theImage;
+            myLightColor = theLightColor;
+        }
+    }
+    
 } // end class RoadRagePanel
 
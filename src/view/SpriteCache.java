@@ -0,0 +1,173 @@
+/*
+ * TCSS 305 - Road Rage
+ */
+
+package view;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import javax.imageio.ImageIO;
+import model.VehicleType;
+
+/**
+ * The vehicle images, loaded once in the background and kept scaled to the size of a
+ * square, so that drawing a vehicle needs no file access, scaling or allocation. The
+ * images are scaled again only when the size of a square changes.
+ */
+final class SpriteCache {
+
+    /**
+     * The folder holding the vehicle images.
+     */
+    private static final String ICON_FOLDER = "icons/";
+
+    /**
+     * All vehicle types, indexed by ordinal.
+     */
+    private static final VehicleType[] TYPES = VehicleType.values();
+
+    /**
+     * The image of each vehicle type, alive and dead, as read, indexed by
+     * spriteIndex; null until every image is loaded.
+     */
+    private volatile BufferedImage[] myImages;
+
+    /**
+     * The images scaled to mySize, or null before they are first needed.
+     */
+    private BufferedImage[] mySprites;
+
+    /**
+     * The size in pixels of a side of each scaled image.
+     */
+    private int mySize;
+
+    /**
+     * Creates a cache and starts loading the images in the background.
+     *
+     * @param theLoaded called on the loading thread once the images are ready
+     */
+    SpriteCache(final Runnable theLoaded) {
+        CompletableFuture.runAsync(() -> {
+            myImages = load();
+            theLoaded.run();
+        });
+    }
+
+    /**
+     * Returns the image of a vehicle at a size. Only call this from one thread.
+     *
+     * @param theType the type of the vehicle
+     * @param theAlive whether the vehicle is alive
+     * @param theSize the size in pixels of a side of the image
+     * @return the image, or null if it is not loaded yet or could not be read
+     */
+    BufferedImage get(final VehicleType theType, final boolean theAlive,
+                      final int theSize) {
+        if (mySprites == null || mySize != theSize) {
+            final BufferedImage[] images = myImages;
+            if (images != null) {
+                mySprites = new BufferedImage[images.length];
+                mySize = theSize;
+                for (int i = 0; i < images.length; i++) {
+                    if (images[i] != null) {
+                        mySprites[i] = scale(images[i], theSize);
+                    }
+                }
+            }
+        }
+        BufferedImage result = null;
+        if (mySprites != null) {
+            result = mySprites[spriteIndex(theType, theAlive)];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the position of an image in the cache.
+     *
+     * @param theType the type of the vehicle
+     * @param theAlive whether the vehicle is alive
+     * @return the position of the image
+     */
+    private static int spriteIndex(final VehicleType theType, final boolean theAlive) {
+        int result = theType.ordinal() * 2;
+        if (!theAlive) {
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * Reads every image.
+     *
+     * @return the images, indexed by spriteIndex
+     */
+    private BufferedImage[] load() {
+        final BufferedImage[] result = new BufferedImage[TYPES.length * 2];
+        for (final VehicleType type : TYPES) {
+            result[spriteIndex(type, true)] = load(type.getImageName() + ".gif");
+            result[spriteIndex(type, false)] = load(type.getImageName() + "_dead.gif");
+        }
+        return result;
+    }
+
+    /**
+     * Reads one image, from the icons folder or else from the class path.
+     *
+     * @param theFileName the name of the image file
+     * @return the image, or null if it could not be read
+     */
+    private BufferedImage load(final String theFileName) {
+        BufferedImage result = null;
+        try {
+            final File file = new File(ICON_FOLDER + theFileName);
+            if (file.isFile()) {
+                result = ImageIO.read(file);
+            } else {
+                final URL url = getClass().getResource(ICON_FOLDER + theFileName);
+                if (url != null) {
+                    result = ImageIO.read(url);
+                }
+            }
+            if (result == null) {
+                System.err.println("Could not find image file " + theFileName);
+            }
+        } catch (final IOException ioe) {
+            System.err.println("Could not read image file " + theFileName + ": "
+                               + ioe.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Scales an image, in a format the screen draws quickly.
+     *
+     * @param theImage the image
+     * @param theSize the size in pixels of a side of the scaled image
+     * @return the scaled image
+     */
+    private static BufferedImage scale(final BufferedImage theImage, final int theSize) {
+        final BufferedImage result;
+        if (GraphicsEnvironment.isHeadless()) {
+            result = new BufferedImage(theSize, theSize, BufferedImage.TYPE_INT_ARGB);
+        } else {
+            result = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                            .getDefaultScreenDevice().getDefaultConfiguration()
+                            .createCompatibleImage(theSize, theSize, Transparency.TRANSLUCENT);
+        }
+        final Graphics2D g2 = result.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                            RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g2.drawImage(theImage, 0, 0, theSize, theSize, null);
+        g2.dispose();
+        return result;
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * TCSS 305 - Road Rage
+ */
+
+package view.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import model.Direction;
+import model.Terrain;
+import model.Vehicle;
+import model.VehicleType;
+
+/**
+ * Reads and writes city maps in a compact binary format, which loads with almost no
+ * parsing. All numbers are big-endian. Version 1 of the format is:
+ *
+ * <pre>
+ * header    int magic 0x52524D50 ("RRMP"), int version, int height, int width,
+ *           int number of vehicles
+ * terrain   height * width bytes, row by row, each the letter of a Terrain
+ * vehicles  12 bytes per vehicle: byte VehicleType letter, byte Direction letter,
+ *           2 bytes of zero, int x, int y
+ * </pre>
+ *
+ * The letters are the ones of the text format, so that the format does not depend on
+ * the order of the enumerations.
+ */
+final class BinaryMap {
+
+    /**
+     * The first four bytes of every binary map, "RRMP".
+     */
+    static final int MAGIC = 0x52524D50;
+
+    /**
+     * The version of the format written.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The number of bytes in the header.
+     */
+    private static final int HEADER_BYTES = 20;
+
+    /**
+     * The number of bytes for each vehicle.
+     */
+    private static final int VEHICLE_BYTES = 12;
+
+    /**
+     * The number of zero bytes after the letters of a vehicle.
+     */
+    private static final int VEHICLE_PADDING = 2;
+
+    /**
+     * The bytes of the map, or null if only its header and vehicles are mapped.
+     */
+    private final ByteBuffer myBytes;
+
+    /**
+     * The bytes of the vehicles of the map.
+     */
+    private final ByteBuffer myVehicles;
+
+    /**
+     * The height of the map.
+     */
+    private final int myHeight;
+
+    /**
+     * The width of the map.
+     */
+    private final int myWidth;
+
+    /**
+     * The number of vehicles on the map.
+     */
+    private final int myVehicleCount;
+
+    /**
+     * Starts reading a binary map, checking its header.
+     *
+     * @param theBytes the bytes of the map, from the current position on
+     * @throws IOException if the header is not one of a binary map this class reads,
+     *             or the map is shorter than the header says
+     */
+    BinaryMap(final ByteBuffer theBytes) throws IOException {
+        myBytes = theBytes.slice();
+        checkHeader(myBytes, myBytes.limit());
+        myHeight = myBytes.getInt(8);
+        myWidth = myBytes.getInt(12);
+        myVehicleCount = myBytes.getInt(16);
+        myVehicles = myBytes.slice((int) terrainEnd(), myVehicleCount * VEHICLE_BYTES);
+    }
+
+    /**
+     * Starts reading a binary map in a file, checking its header and mapping only its
+     * header and vehicles, so that the terrain may be larger than one buffer can hold.
+     * The grid cannot be read whole from such a map; its letters are read with
+     * TerrainChunks instead, from terrainOffset on.
+     *
+     * @param theChannel the file of the map
+     * @throws IOException if the file cannot be read, its header is not one of a
+     *             binary map this class reads, or the map is shorter than the header
+     *             says
+     */
+    BinaryMap(final FileChannel theChannel) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        int read = 0;
+        while (header.hasRemaining() && read >= 0) {
+            read = theChannel.read(header, header.position());
+        }
+        header.flip();
+        checkHeader(header, theChannel.size());
+        myBytes = null;
+        myHeight = header.getInt(8);
+        myWidth = header.getInt(12);
+        myVehicleCount = header.getInt(16);
+        myVehicles = theChannel.map(FileChannel.MapMode.READ_ONLY, terrainEnd(),
+                                    (long) myVehicleCount * VEHICLE_BYTES);
+    }
+
+    /**
+     * Returns whether some bytes start with the magic number of a binary map.
+     *
+     * @param theBytes the bytes, from the current position on
+     * @return true if the bytes look like a binary map
+     */
+    static boolean isBinary(final ByteBuffer theBytes) {
+        return theBytes.remaining() >= Integer.BYTES
+            && theBytes.getInt(theBytes.position()) == MAGIC;
+    }
+
+    /**
+     * Returns the width of the map.
+     *
+     * @return the number of columns
+     */
+    int getWidth() {
+        return myWidth;
+    }
+
+    /**
+     * Returns the height of the map.
+     *
+     * @return the number of rows
+     */
+    int getHeight() {
+        return myHeight;
+    }
+
+    /**
+     * Returns the position in the file of the letter of the first square of the map.
+     *
+     * @return the number of bytes before the terrain
+     */
+    static long terrainOffset() {
+        return HEADER_BYTES;
+    }
+
+    /**
+     * Reads the grid of the map, which must have been read whole.
+     *
+     * @return the map of the terrains
+     * @throws IOException if a square holds a letter that is not a Terrain
+     */
+    Terrain[][] readGrid() throws IOException {
+        final Terrain[][] result = new Terrain[myHeight][myWidth];
+        final byte[] row = new byte[myWidth];
+        for (int y = 0; y < myHeight; y++) {
+            myBytes.get(HEADER_BYTES + y * myWidth, row);
+            for (int x = 0; x < myWidth; x++) {
+                result[y][x] = Terrain.forLetter(row[x] & 0xFF);
+                if (result[y][x] == null) {
+                    throw new IOException("Unknown terrain " + (row[x] & 0xFF)
+                                          + " at " + x + ", " + y);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the vehicles of the map.
+     *
+     * @return the list of Vehicles
+     * @throws IOException if a vehicle has an unknown type or direction
+     */
+    List<Vehicle> readVehicles() throws IOException {
+        final List<Vehicle> result = new ArrayList<>(myVehicleCount);
+        int offset = 0;
+        for (int i = 0; i < myVehicleCount; i++) {
+            final VehicleType type = VehicleType.valueOf((char) myVehicles.get(offset));
+            final Direction direction =
+                Direction.valueOf((char) myVehicles.get(offset + 1));
+            if (type == null || direction == null) {
+                throw new IOException("Unknown type or direction of vehicle " + i);
+            }
+            result.add(type.create(myVehicles.getInt(offset + 4),
+                                   myVehicles.getInt(offset + 8), direction));
+            offset += VEHICLE_BYTES;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the position in the file just after the terrain of the map.
+     *
+     * @return the position of the first vehicle
+     */
+    private long terrainEnd() {
+        return HEADER_BYTES + (long) myHeight * myWidth;
+    }
+
+    /**
+     * Checks the header of a binary map.
+     *
+     * @param theHeader the bytes of the map, at least as far as the header goes
+     * @param theLength the length of the whole map in bytes
+     * @throws IOException if the header is not one of a binary map this class reads,
+     *             or the map is shorter than the header says
+     */
+    private static void checkHeader(final ByteBuffer theHeader, final long theLength)
+        throws IOException {
+        if (theHeader.limit() < HEADER_BYTES || theHeader.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary city map");
+        }
+        final int version = theHeader.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary city map version " + version);
+        }
+        final int height = theHeader.getInt(8);
+        final int width = theHeader.getInt(12);
+        final int vehicles = theHeader.getInt(16);
+        if (height <= 0 || width <= 0 || vehicles < 0) {
+            throw new IOException("Bad binary city map size " + height + " x " + width
+                                  + " with " + vehicles + " vehicles");
+        }
+        final long length = HEADER_BYTES + (long) height * width
+                        + (long) vehicles * VEHICLE_BYTES;
+        if (theLength < length) {
+            throw new IOException("The binary city map is cut short: " + theLength
+                                  + " bytes of " + length);
+        }
+    }
+
+    /**
+     * Writes a city map in the binary format.
+     *
+     * @param theGrid the map of the terrains, with at least one square
+     * @param theVehicles the Vehicles on the map
+     * @param theFileName the name of the file to write
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if a vehicle is not one of the model classes,
+     *             in which case the file is left alone
+     */
+    static void write(final Terrain[][] theGrid, final List<Vehicle> theVehicles,
+                      final String theFileName) throws IOException {
+        final VehicleType[] types = typesOf(theVehicles);
+        final int height = theGrid.length;
+        final int width = theGrid[0].length;
+        final long length = HEADER_BYTES + (long) height * width
+                        + (long) theVehicles.size() * VEHICLE_BYTES;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("The map is too large: " + height + " x " + width);
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(theFileName),
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING,
+                                                    StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE)) {
+            final ByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            out.putInt(MAGIC).putInt(VERSION).putInt(height).putInt(width)
+                .putInt(theVehicles.size());
+            for (final Terrain[] row : theGrid) {
+                for (final Terrain terrain : row) {
+                    out.put((byte) terrain.letter());
+                }
+            }
+            for (int i = 0; i < types.length; i++) {
+                final Vehicle v = theVehicles.get(i);
+                out.put((byte) types[i].letter()).put((byte) v.getDirection().letter());
+                out.put(new byte[VEHICLE_PADDING]);
+                out.putInt(v.getX()).putInt(v.getY());
+            }
+        }
+    }
+
+    /**
+     * Returns the type of every vehicle, so that a map is only written once all of its
+     * vehicles are known to have one.
+     *
+     * @param theVehicles the Vehicles
+     * @return the VehicleType of each vehicle
+     * @throws IllegalArgumentException if a vehicle is not one of the model classes
+     */
+    static VehicleType[] typesOf(final List<Vehicle> theVehicles) {
+        final VehicleType[] result = new VehicleType[theVehicles.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = VehicleType.of(theVehicles.get(i));
+            if (result[i] == null) {
+                throw new IllegalArgumentException("Unknown vehicle type: "
+                                                   + theVehicles.get(i));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,723 @@
+/*
+ * TCSS 305 - Road Rage
+ */
+
+package view.util;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import model.Direction;
+import model.Light;
+import model.Terrain;
+import model.VehicleType;
+
+/**
+ * Generates city maps of any size in the text format of the city_map files, for
+ * scale and stress testing. The same seed and settings always give the same map.
+ *
+ * The map is a WALL border around a grid of streets with blocks of grass between
+ * them. Some street crossings are LIGHTs, some streets have a CROSSWALK half way
+ * along each block, and some blocks have a TRAIL across them, which line up from
+ * block to block into a network crossing the streets. Vehicles are then placed
+ * square by square, each only where its type can start under a green light, with
+ * chances worked out so that over the whole map the number of vehicles comes to the
+ * density times the number of squares, and each type to its share of the mix. A
+ * density and mix that would need more vehicles on some terrain than it has squares
+ * are rejected.
+ *
+ * The terrain of each square is worked out from its position and the seed alone, so
+ * the map is written a row at a time and never held in memory, and maps larger than
+ * the simulation can load are no harder to write than small ones. Use MapConverter
+ * to turn a generated map into the binary format.
+ *
+ * Usage: CityGenerator --width=N --height=N --out=FILE [--seed=N] [--block=N]
+ * [--density=D] [--mix=A:W,B:W,...]
+ */
+public final class CityGenerator {
+
+    /**
+     * The default number of squares across a block of grass.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 8;
+
+    /**
+     * The default number of vehicles for each square of the map.
+     */
+    public static final double DEFAULT_DENSITY = 0.05;
+
+    /**
+     * The smallest width or height of a map, enough for a border around a street.
+     */
+    private static final int MIN_SIZE = 3;
+
+    /**
+     * The smallest block size.
+     */
+    private static final int MIN_BLOCK_SIZE = 2;
+
+    /**
+     * The chance of a street crossing being a LIGHT.
+     */
+    private static final double LIGHT_CHANCE = 0.5;
+
+    /**
+     * The chance of a street having a CROSSWALK along a block.
+     */
+    private static final double CROSSWALK_CHANCE = 0.5;
+
+    /**
+     * The chance of a block having a TRAIL across it.
+     */
+    private static final double TRAIL_CHANCE = 0.3;
+
+    /**
+     * Salt of the chance of a street crossing being a LIGHT.
+     */
+    private static final int LIGHT_SALT = 1;
+
+    /**
+     * Salt of the chance of a north-south street having a CROSSWALK.
+     */
+    private static final int VERTICAL_CROSSWALK_SALT = 2;
+
+    /**
+     * Salt of the chance of an east-west street having a CROSSWALK.
+     */
+    private static final int HORIZONTAL_CROSSWALK_SALT = 3;
+
+    /**
+     * Salt of the chance of a block having a TRAIL.
+     */
+    private static final int TRAIL_SALT = 4;
+
+    /**
+     * Salt of the chance of the TRAIL of a block running east-west.
+     */
+    private static final int TRAIL_DIRECTION_SALT = 5;
+
+    /**
+     * The most times the vehicles of the types are fitted to the terrains.
+     */
+    private static final int MAX_FITS = 10_000;
+
+    /**
+     * The number of vehicles a type may fall short by once fitted.
+     */
+    private static final double FIT_TOLERANCE = 1e-6;
+
+    /**
+     * The number of vehicles a type may fall short by on a map it does not fit.
+     */
+    private static final double MAX_SHORTFALL = 0.5;
+
+    /**
+     * The usage message.
+     */
+    private static final String USAGE = "Usage: CityGenerator --width=N --height=N "
+        + "--out=FILE [--seed=N] [--block=N] [--density=D] [--mix=A:W,B:W,...]";
+
+    /**
+     * Whether each VehicleType can start on each Terrain, by their ordinals.
+     */
+    private static final boolean[][] CAN_START = canStart();
+
+    /**
+     * The width of the map.
+     */
+    private final int myWidth;
+
+    /**
+     * The height of the map.
+     */
+    private final int myHeight;
+
+    /**
+     * The seed of everything random about the map.
+     */
+    private final long mySeed;
+
+    /**
+     * The number of squares across a block of grass.
+     */
+    private int myBlockSize;
+
+    /**
+     * The number of vehicles for each square of the map.
+     */
+    private double myDensity;
+
+    /**
+     * The weight of each VehicleType in the mix, by ordinal.
+     */
+    private final double[] myWeights;
+
+    /**
+     * Creates a generator of maps with every vehicle type equally likely.
+     *
+     * @param theWidth the width of the map, at least 3
+     * @param theHeight the height of the map, at least 3
+     * @param theSeed the seed
+     * @throws IllegalArgumentException if the map is too small
+     */
+    public CityGenerator(final int theWidth, final int theHeight, final long theSeed) {
+        if (theWidth < MIN_SIZE || theHeight < MIN_SIZE) {
+            throw new IllegalArgumentException("The map must be at least " + MIN_SIZE
+                                               + " x " + MIN_SIZE);
+        }
+        myWidth = theWidth;
+        myHeight = theHeight;
+        mySeed = theSeed;
+        myBlockSize = DEFAULT_BLOCK_SIZE;
+        myDensity = DEFAULT_DENSITY;
+        myWeights = new double[VehicleType.values().length];
+        Arrays.fill(myWeights, 1);
+    }
+
+    /**
+     * Generates a city map.
+     *
+     * @param theArgs the command line options, see the class comment
+     */
+    public static void main(final String... theArgs) {
+        int width = 0;
+        int height = 0;
+        String out = null;
+        long seed = 0;
+        int block = DEFAULT_BLOCK_SIZE;
+        double density = DEFAULT_DENSITY;
+        String mix = null;
+
+        final CityGenerator generator;
+        try {
+            for (final String arg : theArgs) {
+                final String value = arg.substring(arg.indexOf('=') + 1);
+                if (arg.startsWith("--width=")) {
+                    width = Integer.parseInt(value);
+                } else if (arg.startsWith("--height=")) {
+                    height = Integer.parseInt(value);
+                } else if (arg.startsWith("--out=")) {
+                    out = value;
+                } else if (arg.startsWith("--seed=")) {
+                    seed = Long.parseLong(value);
+                } else if (arg.startsWith("--block=")) {
+                    block = Integer.parseInt(value);
+                } else if (arg.startsWith("--density=")) {
+                    density = Double.parseDouble(value);
+                } else if (arg.startsWith("--mix=")) {
+                    mix = value;
+                } else {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+            if (out == null) {
+                throw new IllegalArgumentException("No output file given");
+            }
+            generator = new CityGenerator(width, height, seed);
+            generator.setBlockSize(block);
+            generator.setDensity(density);
+            if (mix != null) {
+                generator.setMix(mix);
+            }
+        } catch (final IllegalArgumentException iae) {
+            System.err.println(iae.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+            return;
+        }
+
+        try {
+            final int vehicles = generator.write(out);
+            System.out.printf("wrote %s (%d x %d), %d vehicles, seed %d%n", out, width,
+                              height, vehicles, seed);
+        } catch (final IOException ioe) {
+            System.err.println("Could not write " + out + ": " + ioe.getMessage());
+            System.exit(1);
+        } catch (final IllegalArgumentException iae) {
+            System.err.println(iae.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Sets the number of squares across each block of grass between the streets.
+     *
+     * @param theBlockSize the block size, at least 2
+     * @throws IllegalArgumentException if the block size is too small
+     */
+    public void setBlockSize(final int theBlockSize) {
+        if (theBlockSize < MIN_BLOCK_SIZE) {
+            throw new IllegalArgumentException("The block size must be at least "
+                                               + MIN_BLOCK_SIZE);
+        }
+        myBlockSize = theBlockSize;
+    }
+
+    /**
+     * Sets the number of vehicles for each square of the map, counting every square.
+     *
+     * @param theDensity the vehicles per square, from 0 to 1
+     * @throws IllegalArgumentException if the density is not from 0 to 1
+     */
+    public void setDensity(final double theDensity) {
+        if (!(0 <= theDensity && theDensity <= 1)) {
+            throw new IllegalArgumentException("The density must be from 0 to 1");
+        }
+        myDensity = theDensity;
+    }
+
+    /**
+     * Sets how likely a vehicle is to be of a type, relative to the other types.
+     *
+     * @param theType the vehicle type
+     * @param theWeight the weight, with 0 leaving the type out
+     * @throws IllegalArgumentException if the weight is negative
+     */
+    public void setWeight(final VehicleType theType, final double theWeight) {
+        if (!(theWeight >= 0)) {
+            throw new IllegalArgumentException("The weight of " + theType
+                                               + " must not be negative");
+        }
+        myWeights[theType.ordinal()] = theWeight;
+    }
+
+    /**
+     * Sets the mix of vehicle types from a list such as "C:4,H:2,B:1", pairing the
+     * letter of each type with its weight. Types left out of the list are left out of
+     * the mix.
+     *
+     * @param theMix the list of letters and weights
+     * @throws IllegalArgumentException if the list is malformed
+     */
+    public void setMix(final String theMix) {
+        final double[] weights = new double[myWeights.length];
+        for (final String entry : theMix.split(",")) {
+            final int colon = entry.indexOf(':');
+            final VehicleType type;
+            if (colon == 1) {
+                type = VehicleType.valueOf(entry.charAt(0));
+            } else {
+                type = null;
+            }
+            if (type == null) {
+                throw new IllegalArgumentException("Bad vehicle mix entry " + entry);
+            }
+            weights[type.ordinal()] = Double.parseDouble(entry.substring(colon + 1));
+        }
+        for (final VehicleType type : VehicleType.values()) {
+            setWeight(type, weights[type.ordinal()]);
+        }
+    }
+
+    /**
+     * Returns the Terrain of a square of the map.
+     *
+     * @param theX the x position, from 0 to the width - 1
+     * @param theY the y position, from 0 to the height - 1
+     * @return the Terrain
+     */
+    public Terrain terrainAt(final int theX, final int theY) {
+        final Terrain result;
+        if (theX == 0 || theY == 0 || theX == myWidth - 1 || theY == myHeight - 1) {
+            result = Terrain.WALL;
+        } else if (isStreet(theX) && isStreet(theY)) {
+            result = chance(lineOf(theX), lineOf(theY), LIGHT_SALT) < LIGHT_CHANCE
+                ? Terrain.LIGHT : Terrain.STREET;
+        } else if (isStreet(theX)) {
+            result = streetTerrainAt(theX, theY, lineOf(theX), lineOf(theY),
+                                     offsetOf(theY), VERTICAL_CROSSWALK_SALT, 1, 0);
+        } else if (isStreet(theY)) {
+            result = streetTerrainAt(theX, theY, lineOf(theX), lineOf(theY),
+                                     offsetOf(theX), HORIZONTAL_CROSSWALK_SALT, 0, 1);
+        } else {
+            result = blockTerrainAt(theX, theY);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the map in the text format, a row at a time. The terrain is gone over
+     * three times: to count the squares of each terrain, to count the vehicles for the
+     * line before them, and to write the grid and then the vehicles, placed twice over
+     * with the same random numbers.
+     *
+     * @param theFileName the name of the file to write
+     * @return the number of vehicles written
+     * @throws IOException if the file cannot be written, or there are too many
+     *             vehicles for the simulation to load
+     * @throws IllegalArgumentException if the density and mix cannot be met on this
+     *             map, in which case nothing is written
+     */
+    public int write(final String theFileName) throws IOException {
+        final double[][] chances = vehicleChances();
+        final long vehicles = placeVehicles(chances, null);
+        if (vehicles > Integer.MAX_VALUE) {
+            throw new IOException("Too many vehicles: " + vehicles);
+        }
+        try (OutputStream out = new BufferedOutputStream(
+                        Files.newOutputStream(Paths.get(theFileName)))) {
+            writeLine(out, myHeight + " " + myWidth);
+            final Terrain[] row = new Terrain[myWidth];
+            final byte[] letters = new byte[myWidth + 1];
+            letters[myWidth] = '\n';
+            for (int y = 0; y < myHeight; y++) {
+                fillRow(y, row);
+                for (int x = 0; x < myWidth; x++) {
+                    letters[x] = (byte) row[x].letter();
+                }
+                out.write(letters);
+            }
+            writeLine(out, Long.toString(vehicles));
+            placeVehicles(chances, out);
+        }
+        return (int) vehicles;
+    }
+
+    /**
+     * Works out the chance of a square of each terrain getting a vehicle of each type,
+     * so that over the whole map the vehicles come to the density and each type to its
+     * share of the mix. Each type starts spread evenly over the squares it can start
+     * on. Where that asks for more vehicles than a terrain has squares, the types on
+     * it are scaled down to fit and each type makes up the difference on its other
+     * terrains, repeatedly, until every type has its share and no square is asked for
+     * more than one vehicle.
+     *
+     * @return the running total of the chances of the types on each terrain, by their
+     *         ordinals
+     * @throws IllegalArgumentException if a type's share of the vehicles cannot be
+     *             placed on this map, to within half a vehicle
+     */
+    private double[][] vehicleChances() {
+        final VehicleType[] types = VehicleType.values();
+        final Terrain[] terrains = Terrain.values();
+        final long[] squares = new long[terrains.length];
+        final Terrain[] row = new Terrain[myWidth];
+        for (int y = 0; y < myHeight; y++) {
+            fillRow(y, row);
+            for (final Terrain terrain : row) {
+                squares[terrain.ordinal()]++;
+            }
+        }
+
+        double weights = 0;
+        for (final double weight : myWeights) {
+            weights += weight;
+        }
+        // the number of vehicles of each type wanted, and placed on each terrain
+        final double[] wanted = new double[types.length];
+        final double[][] placed = new double[types.length][terrains.length];
+        for (final VehicleType type : types) {
+            long starts = 0;
+            for (final Terrain terrain : terrains) {
+                if (CAN_START[type.ordinal()][terrain.ordinal()]) {
+                    starts += squares[terrain.ordinal()];
+                }
+            }
+            if (weights > 0) {
+                wanted[type.ordinal()] = myDensity * myWidth * myHeight
+                                         * myWeights[type.ordinal()] / weights;
+            }
+            for (final Terrain terrain : terrains) {
+                if (starts > 0 && CAN_START[type.ordinal()][terrain.ordinal()]) {
+                    placed[type.ordinal()][terrain.ordinal()] =
+                        wanted[type.ordinal()] * squares[terrain.ordinal()] / starts;
+                }
+            }
+        }
+
+        double[] shortfall = fitTerrains(placed, squares, wanted);
+        for (int fit = 1; fit < MAX_FITS && max(shortfall) > FIT_TOLERANCE; fit++) {
+            for (final VehicleType type : types) {
+                final double[] onTerrain = placed[type.ordinal()];
+                final double total = wanted[type.ordinal()] - shortfall[type.ordinal()];
+                for (final Terrain terrain : terrains) {
+                    if (total > 0) {
+                        onTerrain[terrain.ordinal()] *= wanted[type.ordinal()] / total;
+                    }
+                }
+            }
+            shortfall = fitTerrains(placed, squares, wanted);
+        }
+        for (final VehicleType type : types) {
+            if (shortfall[type.ordinal()] > MAX_SHORTFALL) {
+                throw new IllegalArgumentException(String.format(
+                    "Only %.0f of the %.0f vehicles of type %s fit on this map; lower"
+                    + " the density or change the mix", wanted[type.ordinal()]
+                    - shortfall[type.ordinal()], wanted[type.ordinal()], type));
+            }
+        }
+
+        final double[][] result = new double[terrains.length][types.length];
+        for (final Terrain terrain : terrains) {
+            double total = 0;
+            for (final VehicleType type : types) {
+                if (squares[terrain.ordinal()] > 0) {
+                    total += placed[type.ordinal()][terrain.ordinal()]
+                             / squares[terrain.ordinal()];
+                }
+                result[terrain.ordinal()][type.ordinal()] = Math.min(total, 1);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Scales down the vehicles placed on every terrain asked for more vehicles than it
+     * has squares, so that it has one per square, and works out how far each type
+     * then falls short of the vehicles wanted.
+     *
+     * @param thePlaced the vehicles of each type placed on each terrain, by their
+     *            ordinals, scaled in place
+     * @param theSquares the number of squares of each terrain
+     * @param theWanted the number of vehicles of each type wanted
+     * @return the number of vehicles each type falls short by
+     */
+    private static double[] fitTerrains(final double[][] thePlaced, final long[] theSquares,
+                                        final double[] theWanted) {
+        for (int terrain = 0; terrain < theSquares.length; terrain++) {
+            double total = 0;
+            for (final double[] onTerrain : thePlaced) {
+                total += onTerrain[terrain];
+            }
+            if (total > theSquares[terrain]) {
+                for (final double[] onTerrain : thePlaced) {
+                    onTerrain[terrain] *= theSquares[terrain] / total;
+                }
+            }
+        }
+        final double[] result = new double[theWanted.length];
+        for (int type = 0; type < theWanted.length; type++) {
+            double total = 0;
+            for (final double onTerrain : thePlaced[type]) {
+                total += onTerrain;
+            }
+            result[type] = Math.max(0, theWanted[type] - total);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the largest of some numbers.
+     *
+     * @param theNumbers the numbers
+     * @return the largest, or 0 if there are none larger
+     */
+    private static double max(final double[] theNumbers) {
+        double result = 0;
+        for (final double number : theNumbers) {
+            result = Math.max(result, number);
+        }
+        return result;
+    }
+
+    /**
+     * Places the vehicles square by square, writing a line for each if there is
+     * somewhere to write to. The same settings always place the same vehicles.
+     *
+     * @param theChances the running total of the chances of the types on each terrain
+     * @param theOut where to write the vehicle lines, or null to only count them
+     * @return the number of vehicles placed
+     * @throws IOException if a line cannot be written
+     */
+    private long placeVehicles(final double[][] theChances, final OutputStream theOut)
+        throws IOException {
+        final VehicleType[] types = VehicleType.values();
+        final Direction[] directions = Direction.values();
+        final SplittableRandom random = new SplittableRandom(mySeed);
+        final Terrain[] row = new Terrain[myWidth];
+        long result = 0;
+        for (int y = 0; y < myHeight; y++) {
+            fillRow(y, row);
+            for (int x = 0; x < myWidth; x++) {
+                final double[] chances = theChances[row[x].ordinal()];
+                final double pick = random.nextDouble();
+                if (pick < chances[types.length - 1]) {
+                    int type = 0;
+                    while (chances[type] <= pick) {
+                        type++;
+                    }
+                    final Direction direction =
+                        directions[random.nextInt(directions.length)];
+                    if (theOut != null) {
+                        writeLine(theOut, types[type].letter() + " " + x + " " + y + " "
+                                          + direction.letter() + " " + row[x].letter());
+                    }
+                    result++;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Fills in the terrain of a row of the map.
+     *
+     * @param theY the y position of the row
+     * @param theRow the row to fill, as long as the map is wide
+     */
+    private void fillRow(final int theY, final Terrain[] theRow) {
+        for (int x = 0; x < myWidth; x++) {
+            theRow[x] = terrainAt(x, theY);
+        }
+    }
+
+    /**
+     * Returns the terrain of a square along a street between two crossings, which is
+     * a CROSSWALK half way along if the street has one there and has grass on both
+     * sides, and STREET otherwise.
+     *
+     * @param theX the x position
+     * @param theY the y position
+     * @param theColumn the block column or street line of the square
+     * @param theRow the block row or street line of the square
+     * @param theOffset how far along the block the square is
+     * @param theSalt the salt of the chance of a crosswalk
+     * @param theDx the x step to the sides of the street
+     * @param theDy the y step to the sides of the street
+     * @return CROSSWALK or STREET
+     */
+    private Terrain streetTerrainAt(final int theX, final int theY, final int theColumn,
+                                    final int theRow, final int theOffset,
+                                    final int theSalt, final int theDx, final int theDy) {
+        Terrain result = Terrain.STREET;
+        if (theOffset == crosswalkOffset()
+            && chance(theColumn, theRow, theSalt) < CROSSWALK_CHANCE
+            && isGrass(theX - theDx, theY - theDy) && isGrass(theX + theDx, theY + theDy)) {
+            result = Terrain.CROSSWALK;
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether a square is grass inside a block.
+     *
+     * @param theX the x position
+     * @param theY the y position
+     * @return true if the square is inside the border, not a street and GRASS
+     */
+    private boolean isGrass(final int theX, final int theY) {
+        return 0 < theX && theX < myWidth - 1 && 0 < theY && theY < myHeight - 1
+            && !isStreet(theX) && !isStreet(theY)
+            && blockTerrainAt(theX, theY) == Terrain.GRASS;
+    }
+
+    /**
+     * Returns the terrain of a square inside a block, which is TRAIL if the block has a
+     * trail through the square and GRASS otherwise.
+     *
+     * @param theX the x position, not on a street
+     * @param theY the y position, not on a street
+     * @return TRAIL or GRASS
+     */
+    private Terrain blockTerrainAt(final int theX, final int theY) {
+        final int column = lineOf(theX);
+        final int row = lineOf(theY);
+        Terrain result = Terrain.GRASS;
+        if (chance(column, row, TRAIL_SALT) < TRAIL_CHANCE) {
+            final int offset;
+            if (chance(column, row, TRAIL_DIRECTION_SALT) < 0.5) {
+                offset = offsetOf(theY);
+            } else {
+                offset = offsetOf(theX);
+            }
+            if (offset == crosswalkOffset() + 1) {
+                result = Terrain.TRAIL;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether a position inside the border is on a street line.
+     *
+     * @param thePosition the x or y position
+     * @return true if the position is on a street
+     */
+    private boolean isStreet(final int thePosition) {
+        return offsetOf(thePosition) == 0;
+    }
+
+    /**
+     * Returns the street line at or before a position inside the border, which is also
+     * the block column or row after it.
+     *
+     * @param thePosition the x or y position
+     * @return the number of the line
+     */
+    private int lineOf(final int thePosition) {
+        return (thePosition - 1) / (myBlockSize + 1);
+    }
+
+    /**
+     * Returns how far a position inside the border is past the street line before it.
+     *
+     * @param thePosition the x or y position
+     * @return 0 on a street line, or from 1 to the block size inside a block
+     */
+    private int offsetOf(final int thePosition) {
+        return (thePosition - 1) % (myBlockSize + 1);
+    }
+
+    /**
+     * Returns how far along a block a crosswalk is, which is half way. A trail is one
+     * square further on, so that a crosswalk never leads onto a trail.
+     *
+     * @return the offset of the crosswalks
+     */
+    private int crosswalkOffset() {
+        return (myBlockSize + 1) / 2;
+    }
+
+    /**
+     * Returns a random number that depends only on the seed and its arguments, so
+     * that any square of the map can be worked out on its own.
+     *
+     * @param theColumn the block column or street line
+     * @param theRow the block row or street line
+     * @param theSalt what the number is for
+     * @return a number from 0 up to but not including 1
+     */
+    private double chance(final int theColumn, final int theRow, final int theSalt) {
+        long hash = mySeed + theColumn * 0x9E3779B97F4A7C15L
+                    + theRow * 0xC2B2AE3D27D4EB4FL + theSalt * 0x165667B19E3779F9L;
+        hash = (hash ^ hash >>> 30) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ hash >>> 27) * 0x94D049BB133111EBL;
+        hash ^= hash >>> 31;
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Writes a line of text.
+     *
+     * @param theOut where to write
+     * @param theLine the line, without its line end
+     * @throws IOException if the line cannot be written
+     */
+    private static void writeLine(final OutputStream theOut, final String theLine)
+        throws IOException {
+        theOut.write(theLine.getBytes(StandardCharsets.US_ASCII));
+        theOut.write('\n');
+    }
+
+    /**
+     * Works out which vehicle types can start on which terrain, under a green light.
+     *
+     * @return whether each type can start on each terrain, by their ordinals
+     */
+    private static boolean[][] canStart() {
+        final VehicleType[] types = VehicleType.values();
+        final Terrain[] terrains = Terrain.values();
+        final boolean[][] result = new boolean[types.length][terrains.length];
+        for (final VehicleType type : types) {
+            for (final Terrain terrain : terrains) {
+                result[type.ordinal()][terrain.ordinal()] = type.canPass(terrain, Light.GREEN);
+            }
+        }
+        return result;
+    }
+}
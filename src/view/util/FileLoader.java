@@ -4,16 +4,21 @@
  
 package view.util;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 
+import logic.ArrayRoadRage;
+import logic.CityMap;
 import logic.PropertyChangeEnabledRoadRageControls;
 import logic.RoadRage;
+import logic.TerrainChunks;
 //import model.Atv;
 //import model.Bicycle;
 //import model.Car;
@@ -35,6 +40,11 @@ public final class FileLoader {
      */
     private static final String CITY_FILE = "city_map1.txt";
     
+    /**
+     * The letters of the vehicle types in the city map file.
+     */
+    private static final String VEHICLE_LETTERS = "ABCHTX";
+    
     /**
      * A private constructor, to prevent external instantiation.
      */
@@ -48,15 +58,7 @@ public final class FileLoader {
     public static PropertyChangeEnabledRoadRageControls readCity(final JFrame theFrame) {
         PropertyChangeEnabledRoadRageControls result = null;
         try {
-            final Scanner input;
-
-            input = new Scanner(new File(CITY_FILE));
-
-            // First, we read the map description
-            // Then, we read where the initial vehicles are
-           
-            result = new RoadRage(readGrid(input), readVehicles(input));        
- 
+            result = readCity(CITY_FILE);
         } catch (final IOException ioe) {
             JOptionPane.showMessageDialog(theFrame, "Could not read city map file " + CITY_FILE
                                           + ":\n\n" + ioe.getMessage(), "I/O Error",
@@ -65,23 +67,127 @@ public final class FileLoader {
         return result;
     }
     
+    /**
+     * Read a city file and build a RoadRage simulation based on the file. Errors 
+     * are reported to the caller, so no window is needed.
+     * 
+     * @param theFileName the name of the city text or binary file
+     * @return the RoadRage simulation based on the city file
+     * @throws IOException if the file cannot be read, or a MapFormatException if it
+     *             is malformed
+     */
+    public static RoadRage readCity(final String theFileName) throws IOException {
+        return readMap(theFileName, RoadRage::new);
+    }
+    
+    /**
+     * Read a city file and build an ArrayRoadRage simulation based on the file.
+     * 
+     * @param theFileName the name of the city text or binary file
+     * @return the ArrayRoadRage simulation based on the city file
+     * @throws IOException if the file cannot be read, or a MapFormatException if it
+     *             is malformed
+     */
+    public static ArrayRoadRage readArrayCity(final String theFileName) throws IOException {
+        return readMap(theFileName, ArrayRoadRage::new);
+    }
+    
+    /**
+     * Read a city file into a CityMap, which can create any number of
+     * simulations of the city without reading the file again.
+     * 
+     * @param theFileName the name of the city text or binary file
+     * @return the CityMap based on the city file
+     * @throws IOException if the file cannot be read, or a MapFormatException if it
+     *             is malformed
+     */
+    public static CityMap readCityMap(final String theFileName) throws IOException {
+        return readMap(theFileName, CityMap::new);
+    }
+    
+    /**
+     * Read a binary city file and build a RoadRage simulation that keeps the terrain
+     * in chunks, read from the file as they are needed, for maps too large to hold
+     * whole. The file is mapped a band of rows at a time, so it may be larger than
+     * one buffer can hold. Text maps must be converted with MapConverter first.
+     * 
+     * @param theFileName the name of the binary city file
+     * @param theCapacity the largest number of chunks without vehicles to hold
+     * @return the RoadRage simulation based on the city file
+     * @throws IOException if the file cannot be read, is not a binary map or is
+     *             malformed
+     */
+    public static RoadRage readPagedCity(final String theFileName, final int theCapacity)
+        throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(theFileName),
+                                                    StandardOpenOption.READ)) {
+            final ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(magic, 0);
+            if (!BinaryMap.isBinary(magic.flip())) {
+                throw new IOException("Only binary maps can be paged; convert "
+                                      + theFileName + " with MapConverter");
+            }
+            final BinaryMap input = new BinaryMap(channel);
+            final TerrainChunks terrain;
+            try {
+                terrain = new TerrainChunks(channel, BinaryMap.terrainOffset(),
+                                            input.getWidth(), input.getHeight(),
+                                            theCapacity);
+            } catch (final IllegalArgumentException iae) {
+                throw new IOException(iae.getMessage(), iae);
+            }
+            return new RoadRage(terrain, input.readVehicles());
+        }
+    }
+    
+    /**
+     * Reads a city file in either format, telling a binary map from a text one by its
+     * first bytes, and builds something from its grid and vehicles.
+     * 
+     * @param <T> the type of what is built
+     * @param theFileName the name of the city text or binary file
+     * @param theBuilder builds the result from the grid and the vehicles
+     * @return what the builder built
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    static <T> T readMap(final String theFileName,
+                         final MapBuilder<T> theBuilder)
+        throws IOException {
+        final ByteBuffer bytes = MapParser.map(theFileName);
+        final Terrain[][] grid;
+        final List<Vehicle> vehicles;
+        if (BinaryMap.isBinary(bytes)) {
+            final BinaryMap input = new BinaryMap(bytes);
+            grid = input.readGrid();
+            vehicles = input.readVehicles();
+        } else {
+            final MapParser input = new MapParser(bytes);
+            // First, we read the map description
+            // Then, we read where the initial vehicles are
+            grid = readGrid(input);
+            vehicles = readVehicles(input);
+        }
+        return theBuilder.build(grid, vehicles);
+    }
     
     /**
      * Reads the grid portion of the map file.
      * 
-     * @param theInput The input scanner.
+     * @param theInput The input parser.
      * @return the map of the terrains.
+     * @throws MapFormatException if the grid is malformed.
      */
-    private static Terrain[][] readGrid(final Scanner theInput) {
+    private static Terrain[][] readGrid(final MapParser theInput)
+        throws MapFormatException {
         final int numRows = theInput.nextInt();
         final int numColumns = theInput.nextInt();
+        if (numRows <= 0 || numColumns <= 0) {
+            throw theInput.error("The map must have at least one square");
+        }
         theInput.nextLine();
         final Terrain[][] grid = new Terrain[numRows][numColumns];
         for (int row = 0; row < numRows; row++) {
-            final String line = theInput.nextLine();
-            for (int column = 0; column < numColumns; column++) {
-                grid[row][column] = Terrain.valueOf(line.charAt(column));
-            }
+            theInput.nextRow(grid[row]);
         }
         return grid;
     }
@@ -89,18 +195,29 @@ public final class FileLoader {
     /**
      * Reads the vehicle portion of the map file.
      * 
-     * @param theInput The input scanner.
+     * @param theInput The input parser.
      * @return the list of Vehicles
+     * @throws MapFormatException if the vehicles are malformed.
      */
-    private static List<Vehicle> readVehicles(final Scanner theInput) {
+    private static List<Vehicle> readVehicles(final MapParser theInput)
+        throws MapFormatException {
         final List<Vehicle> vehicles = new ArrayList<Vehicle>();
         final int numVehicles = theInput.nextInt();
+        if (numVehicles < 0) {
+            throw theInput.error("The number of vehicles must not be negative");
+        }
         theInput.nextLine();
         for (int lineCount = 0; lineCount < numVehicles; lineCount++) {
-            final char vehicleType = theInput.next().charAt(0);
+            final char vehicleType = theInput.nextLetter();
+            if (VEHICLE_LETTERS.indexOf(vehicleType) < 0) {
+                throw theInput.error("Unknown vehicle type '" + vehicleType + "'");
+            }
             final int vehicleX = theInput.nextInt();
             final int vehicleY = theInput.nextInt();
-            final char vehicleDirection = theInput.next().charAt(0);
+            final char vehicleDirection = theInput.nextLetter();
+            if (Direction.valueOf(vehicleDirection) == null) {
+                throw theInput.error("Unknown direction '" + vehicleDirection + "'");
+            }
 
             switch (vehicleType) {
               case 'B': // Bicycle
@@ -142,5 +259,23 @@ public final class FileLoader {
         }
         return vehicles;
     }
-    
+
+    /**
+     * Builds something from the grid and vehicles of a city map.
+     * 
+     * @param <T> the type of what is built
+     */
+    @FunctionalInterface
+    interface MapBuilder<T> {
+
+        /**
+         * Builds something from the grid and vehicles of a city map.
+         * 
+         * @param theGrid the map of the terrains
+         * @param theVehicles the list of Vehicles
+         * @return what was built
+         * @throws IOException if building needs input or output that fails
+         */
+        T build(Terrain[][] theGrid, List<Vehicle> theVehicles) throws IOException;
+    }
 }
@@ -0,0 +1,118 @@
+/*
+ * TCSS 305 - Road Rage
+ */
+
+package view.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import model.Terrain;
+import model.Vehicle;
+import model.VehicleType;
+
+/**
+ * Converts city maps between the text format of the city_map files and the binary
+ * format, which loads faster. Run it with the name of the map to read, in either
+ * format, and the name of the map to write: a name ending in .txt is written as
+ * text, and any other name as binary.
+ */
+public final class MapConverter {
+
+    /**
+     * The ending of the names of text maps.
+     */
+    private static final String TEXT_SUFFIX = ".txt";
+
+    /**
+     * The letter written after a vehicle whose square is off the map.
+     */
+    private static final char NO_TERRAIN = '-';
+
+    /**
+     * A private constructor, to prevent external instantiation.
+     */
+    private MapConverter() { }
+
+    /**
+     * Converts a city map.
+     *
+     * @param theArgs the name of the map to read and the name of the map to write
+     */
+    public static void main(final String... theArgs) {
+        if (theArgs.length != 2) {
+            System.err.println("Usage: MapConverter <map to read> <map to write>");
+            return;
+        }
+        try {
+            convert(theArgs[0], theArgs[1]);
+        } catch (final IOException ioe) {
+            System.err.println("Could not convert " + theArgs[0] + ": " + ioe.getMessage());
+        }
+    }
+
+    /**
+     * Converts a city map, writing text if the name of the map to write ends in .txt
+     * and binary otherwise.
+     *
+     * @param theInput the name of the map to read, in either format
+     * @param theOutput the name of the map to write
+     * @throws IOException if a map cannot be read or written
+     */
+    public static void convert(final String theInput, final String theOutput)
+        throws IOException {
+        FileLoader.readMap(theInput, (theGrid, theVehicles) -> {
+            if (theOutput.endsWith(TEXT_SUFFIX)) {
+                writeText(theGrid, theVehicles, theOutput);
+            } else {
+                BinaryMap.write(theGrid, theVehicles, theOutput);
+            }
+            return theOutput;
+        });
+    }
+
+    /**
+     * Writes a city map in the text format. Each vehicle line ends with the letter of
+     * the terrain the vehicle starts on, as in the city_map files.
+     *
+     * @param theGrid the map of the terrains
+     * @param theVehicles the Vehicles on the map
+     * @param theFileName the name of the file to write
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if a vehicle is not one of the model classes,
+     *             in which case the file is left alone
+     */
+    static void writeText(final Terrain[][] theGrid, final List<Vehicle> theVehicles,
+                          final String theFileName) throws IOException {
+        final VehicleType[] types = BinaryMap.typesOf(theVehicles);
+        try (BufferedWriter out = Files.newBufferedWriter(Paths.get(theFileName),
+                                                          StandardCharsets.US_ASCII)) {
+            out.write(theGrid.length + " " + theGrid[0].length);
+            out.newLine();
+            final char[] line = new char[theGrid[0].length];
+            for (final Terrain[] row : theGrid) {
+                for (int x = 0; x < row.length; x++) {
+                    line[x] = row[x].letter();
+                }
+                out.write(line);
+                out.newLine();
+            }
+            out.write(Integer.toString(theVehicles.size()));
+            out.newLine();
+            for (int i = 0; i < types.length; i++) {
+                final Vehicle v = theVehicles.get(i);
+                char terrain = NO_TERRAIN;
+                if (0 <= v.getY() && v.getY() < theGrid.length
+                    && 0 <= v.getX() && v.getX() < theGrid[v.getY()].length) {
+                    terrain = theGrid[v.getY()][v.getX()].letter();
+                }
+                out.write(types[i].letter() + " " + v.getX() + " " + v.getY() + " "
+                          + v.getDirection().letter() + " " + terrain);
+                out.newLine();
+            }
+        }
+    }
+}
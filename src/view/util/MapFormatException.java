@@ -0,0 +1,60 @@
+/*
+ * TCSS 305 - Road Rage
+ */
+
+package view.util;
+
+import java.io.IOException;
+
+/**
+ * Signals that a city map file is malformed, and where.
+ */
+public class MapFormatException extends IOException {
+
+    /**
+     * The serial version UID.
+     */
+    private static final long serialVersionUID = 0;
+
+    /**
+     * The line the problem was found on, counting from 1.
+     */
+    private final int myLine;
+
+    /**
+     * The column the problem was found at, counting from 1.
+     */
+    private final int myColumn;
+
+    /**
+     * Constructs an exception for a problem at a place in a map file.
+     *
+     * @param theMessage what is wrong
+     * @param theLine the line the problem was found on, counting from 1
+     * @param theColumn the column the problem was found at, counting from 1
+     */
+    public MapFormatException(final String theMessage, final int theLine,
+                              final int theColumn) {
+        super("line " + theLine + ", column " + theColumn + ": " + theMessage);
+        myLine = theLine;
+        myColumn = theColumn;
+    }
+
+    /**
+     * Returns the line the problem was found on.
+     *
+     * @return the line, counting from 1
+     */
+    public int getLine() {
+        return myLine;
+    }
+
+    /**
+     * Returns the column the problem was found at.
+     *
+     * @return the column, counting from 1
+     */
+    public int getColumn() {
+        return myColumn;
+    }
+}
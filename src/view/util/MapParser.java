@@ -0,0 +1,252 @@
+/*
+ * TCSS 305 - Road Rage
+ */
+
+package view.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import model.Terrain;
+
+/**
+ * Reads the tokens of a city map text file straight from its bytes, without decoding
+ * them into characters first. The file is memory mapped, terrain letters are decoded
+ * with a table lookup each, and every problem is reported as a MapFormatException
+ * giving the line and column it was found at.
+ */
+final class MapParser {
+
+    /**
+     * The byte that ends a line.
+     */
+    private static final byte NEWLINE = '\n';
+
+    /**
+     * The largest number of digits read in one number, more than any int needs.
+     */
+    private static final int MAX_DIGITS = 10;
+
+    /**
+     * The bytes of the file.
+     */
+    private final ByteBuffer myBytes;
+
+    /**
+     * The position of the next byte to read.
+     */
+    private int myPosition;
+
+    /**
+     * The line of the next byte to read, counting from 1.
+     */
+    private int myLine;
+
+    /**
+     * The position of the first byte of the line being read.
+     */
+    private int myLineStart;
+
+    /**
+     * The line of the last token read.
+     */
+    private int myTokenLine;
+
+    /**
+     * The column of the last token read, counting from 1.
+     */
+    private int myTokenColumn;
+
+    /**
+     * Creates a parser of some bytes, starting at their current position.
+     *
+     * @param theBytes the bytes of a city map text file
+     */
+    MapParser(final ByteBuffer theBytes) {
+        myBytes = theBytes;
+        myPosition = theBytes.position();
+        myLine = 1;
+        myLineStart = myPosition;
+        myTokenLine = 1;
+        myTokenColumn = 1;
+    }
+
+    /**
+     * Maps a file into memory, to be read without copying it.
+     *
+     * @param theFileName the name of the file
+     * @return the bytes of the file
+     * @throws IOException if the file cannot be read, or is too large to map at once
+     */
+    static ByteBuffer map(final String theFileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(theFileName),
+                                                    StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The file is too large: " + theFileName);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Reads a whole number, after any white space including line ends.
+     *
+     * @return the number
+     * @throws MapFormatException if the next token is not a whole number
+     */
+    int nextInt() throws MapFormatException {
+        skipWhitespace();
+        startToken();
+        boolean negative = false;
+        if (myPosition < myBytes.limit() && myBytes.get(myPosition) == '-') {
+            negative = true;
+            myPosition++;
+        }
+        final int first = myPosition;
+        long result = 0;
+        while (myPosition < myBytes.limit() && isDigit(myBytes.get(myPosition))) {
+            if (myPosition - first == MAX_DIGITS) {
+                throw error("The number is too large");
+            }
+            result = result * 10 + myBytes.get(myPosition) - '0';
+            myPosition++;
+        }
+        if (myPosition == first || !isTokenEnd()) {
+            throw error("Expected a number");
+        }
+        if (negative) {
+            result = -result;
+        }
+        if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE) {
+            throw error("The number is too large");
+        }
+        return (int) result;
+    }
+
+    /**
+     * Reads the first letter of the next token, after any white space including line
+     * ends, and skips the rest of the token.
+     *
+     * @return the letter
+     * @throws MapFormatException if the file ends first
+     */
+    char nextLetter() throws MapFormatException {
+        skipWhitespace();
+        startToken();
+        if (myPosition == myBytes.limit()) {
+            throw error("Unexpected end of file");
+        }
+        final char result = (char) (myBytes.get(myPosition) & 0xFF);
+        while (!isTokenEnd()) {
+            myPosition++;
+        }
+        return result;
+    }
+
+    /**
+     * Skips the rest of the line being read, including its line end.
+     */
+    void nextLine() {
+        while (myPosition < myBytes.limit() && myBytes.get(myPosition) != NEWLINE) {
+            myPosition++;
+        }
+        if (myPosition < myBytes.limit()) {
+            myPosition++;
+            myLine++;
+            myLineStart = myPosition;
+        }
+    }
+
+    /**
+     * Reads a row of the grid from the next line, ignoring anything after the row.
+     *
+     * @param theRow the row to fill, as long as the grid is wide
+     * @throws MapFormatException if the line is too short or holds a letter that is
+     *             not a Terrain
+     */
+    void nextRow(final Terrain[] theRow) throws MapFormatException {
+        final int start = myPosition;
+        if (myBytes.limit() - start < theRow.length) {
+            myPosition = myBytes.limit();
+            startToken();
+            throw error("Expected " + theRow.length + " squares in the row");
+        }
+        for (int column = 0; column < theRow.length; column++) {
+            final Terrain terrain = Terrain.forLetter(myBytes.get(start + column) & 0xFF);
+            if (terrain == null) {
+                myPosition = start + column;
+                startToken();
+                if (myBytes.get(myPosition) == NEWLINE || myBytes.get(myPosition) == '\r') {
+                    throw error("Expected " + theRow.length + " squares in the row");
+                }
+                throw error("Unknown terrain '" + (char) (myBytes.get(myPosition) & 0xFF)
+                            + "'");
+            }
+            theRow[column] = terrain;
+        }
+        myPosition = start + theRow.length;
+        nextLine();
+    }
+
+    /**
+     * Returns an exception for a problem with the last token read.
+     *
+     * @param theMessage what is wrong
+     * @return the exception, giving the place of the token
+     */
+    MapFormatException error(final String theMessage) {
+        return new MapFormatException(theMessage, myTokenLine, myTokenColumn);
+    }
+
+    /**
+     * Skips spaces, tabs and line ends.
+     */
+    private void skipWhitespace() {
+        while (myPosition < myBytes.limit() && isWhitespace(myBytes.get(myPosition))) {
+            if (myBytes.get(myPosition) == NEWLINE) {
+                myLine++;
+                myLineStart = myPosition + 1;
+            }
+            myPosition++;
+        }
+    }
+
+    /**
+     * Remembers the place of the next byte as the place of a token.
+     */
+    private void startToken() {
+        myTokenLine = myLine;
+        myTokenColumn = myPosition - myLineStart + 1;
+    }
+
+    /**
+     * Returns whether the next byte ends a token.
+     *
+     * @return true at white space or the end of the file
+     */
+    private boolean isTokenEnd() {
+        return myPosition == myBytes.limit() || isWhitespace(myBytes.get(myPosition));
+    }
+
+    /**
+     * Returns whether a byte is white space.
+     *
+     * @param theByte the byte
+     * @return true for spaces, tabs and line ends
+     */
+    private static boolean isWhitespace(final byte theByte) {
+        return theByte == ' ' || theByte == '\t' || theByte == '\r' || theByte == NEWLINE;
+    }
+
+    /**
+     * Returns whether a byte is a decimal digit.
+     *
+     * @param theByte the byte
+     * @return true for 0 to 9
+     */
+    private static boolean isDigit(final byte theByte) {
+        return '0' <= theByte && theByte <= '9';
+    }
+}